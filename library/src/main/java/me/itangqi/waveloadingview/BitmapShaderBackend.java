@@ -0,0 +1,64 @@
+package me.itangqi.waveloadingview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+/**
+ * The original backend, draws one wave period into a bitmap with vertical Canvas lines.
+ */
+final class BitmapShaderBackend extends BitmapWaveBackend {
+
+    @Override
+    public Type getType() {
+        return Type.BITMAP_SHADER;
+    }
+
+    @Override
+    Bitmap createWaveBitmap(int waveLength, int height, int waveColor, float[] layers) {
+        return drawWaveBitmap(waveLength, height, waveColor, layers);
+    }
+
+    /**
+     * Draw one period of the wave layers into a new bitmap, each layer in the wave color with its
+     * alpha factor. Only depends on its arguments, so it may be called from any thread.
+     *
+     * @param waveLength Width of the bitmap, one wave period.
+     * @param height     Height of the bitmap, the default water level is at its middle.
+     * @param waveColor  Color of the front wave.
+     * @param layers     Phase and alpha factor of each layer, see {@link WaveRenderBackend#update}.
+     * @return Bitmap
+     */
+    static Bitmap drawWaveBitmap(int waveLength, int height, int waveColor, float[] layers) {
+        double defaultAngularFrequency = 2.0f * Math.PI / waveLength;
+        float defaultAmplitude = height * DEFAULT_AMPLITUDE_RATIO;
+        float defaultWaterLevel = height * DEFAULT_WATER_LEVEL_RATIO;
+
+        Bitmap bitmap = Bitmap.createBitmap(waveLength, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+
+        Paint wavePaint = new Paint();
+        wavePaint.setStrokeWidth(2);
+        wavePaint.setAntiAlias(true);
+
+        // Draw default waves into the bitmap.
+        // y=Asin(ωx+φ)+h
+        final int endX = waveLength;
+        final int endY = height + 1;
+
+        // One period of the sine, each layer reads it at its own phase.
+        float[] waveY = new float[endX];
+        for (int x = 0; x < endX; x++) {
+            waveY[x] = (float) (defaultWaterLevel + defaultAmplitude * Math.sin(x * defaultAngularFrequency));
+        }
+
+        for (int i = 0; i < layers.length; i += 2) {
+            final int shift = (int) (layers[i] * waveLength);
+            wavePaint.setColor(adjustAlpha(waveColor, layers[i + 1]));
+            for (int beginX = 0; beginX < endX; beginX++) {
+                canvas.drawLine(beginX, waveY[(beginX + shift) % endX], beginX, endY, wavePaint);
+            }
+        }
+        return bitmap;
+    }
+}
@@ -0,0 +1,198 @@
+package me.itangqi.waveloadingview;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Shader;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Backends that tile a bitmap of one wave period, only differing in how the bitmap is made.
+ */
+abstract class BitmapWaveBackend implements WaveRenderBackend {
+    static final float DEFAULT_AMPLITUDE_RATIO = WaveStyle.DEFAULT_AMPLITUDE_RATIO;
+    static final float DEFAULT_WATER_LEVEL_RATIO = 0.5f;
+
+    // Width of the area drawn, the pivot of the tilt is at its middle.
+    private int mWidth;
+    private Bitmap mBitmap;
+    // False if mBitmap is shared with other renderers and must not be recycled.
+    private boolean mOwnsBitmap;
+    // Inputs baked into mBitmap.
+    private int mWaveLength;
+    private int mHeight;
+    private int mWaveColor;
+    private float[] mLayers;
+    private float mBitmapResolution;
+    // Requested resolution, relative to the size drawn.
+    private float mResolution = 1f;
+    private BitmapShader mShader;
+    private final Matrix mShaderMatrix = new Matrix();
+    // Alpha of mBitmap, drawn with the paint's shader by drawCoverage.
+    private final WaveCoverageMask mCoverageMask = new WaveCoverageMask();
+    // Bitmaps shared with other backends by their owner, see setSharedBitmaps.
+    private Map<WaveShaderCache.Key, Bitmap> mSharedBitmaps;
+
+    /**
+     * Create a bitmap of one wave period, with the default amplitude and the still water level
+     * at its middle. Only depends on its arguments, so it may be called from any thread.
+     */
+    abstract Bitmap createWaveBitmap(int waveLength, int height, int waveColor, float[] layers);
+
+    @Override
+    public void update(int width, int height, int waveLength, int waveColor, float[] layers) {
+        mWidth = width;
+        if (mBitmap != null && mWaveLength == waveLength && mHeight == height && mWaveColor == waveColor
+                && mBitmapResolution == mResolution && Arrays.equals(mLayers, layers)) {
+            return;
+        }
+        if (waveLength <= 0 || height <= 0) {
+            return;
+        }
+        int bitmapWidth = Math.max(1, Math.round(waveLength * mResolution));
+        int bitmapHeight = Math.max(1, Math.round(height * mResolution));
+        int type = getType().ordinal();
+        WaveShaderCache.Key key = null;
+        Bitmap shared = null;
+        if (mSharedBitmaps != null) {
+            key = new WaveShaderCache.Key(type, bitmapWidth, bitmapHeight, waveColor, layers);
+            shared = mSharedBitmaps.get(key);
+        }
+        if (shared == null) {
+            // Prewarmed ahead of time, see WaveLoadingView#prewarm.
+            shared = WaveShaderCache.get(type, bitmapWidth, bitmapHeight, waveColor, layers);
+        }
+        if (shared != null) {
+            setBitmap(shared, false, waveColor, layers);
+        } else if (mSharedBitmaps != null) {
+            Bitmap bitmap = createWaveBitmap(bitmapWidth, bitmapHeight, waveColor, layers);
+            mSharedBitmaps.put(key, bitmap);
+            setBitmap(bitmap, false, waveColor, layers);
+        } else {
+            setBitmap(createWaveBitmap(bitmapWidth, bitmapHeight, waveColor, layers), true, waveColor, layers);
+        }
+        mWaveLength = waveLength;
+        mHeight = height;
+        mBitmapResolution = mResolution;
+    }
+
+    /**
+     * Generate the bitmap {@link #update} would need for these inputs into the shared
+     * {@link WaveShaderCache}, unless it is there already. May be called from any thread.
+     */
+    void prewarm(int waveLength, int height, int waveColor, float[] layers) {
+        if (waveLength <= 0 || height <= 0) {
+            return;
+        }
+        int bitmapWidth = Math.max(1, Math.round(waveLength * mResolution));
+        int bitmapHeight = Math.max(1, Math.round(height * mResolution));
+        int type = getType().ordinal();
+        if (WaveShaderCache.get(type, bitmapWidth, bitmapHeight, waveColor, layers) == null) {
+            WaveShaderCache.put(type, bitmapWidth, bitmapHeight, waveColor, layers,
+                    createWaveBitmap(bitmapWidth, bitmapHeight, waveColor, layers));
+        }
+    }
+
+    @Override
+    public void setResolution(float scale) {
+        if (scale <= 0 || scale > 1) {
+            throw new IllegalArgumentException("scale must be > 0 and <= 1");
+        }
+        mResolution = scale;
+    }
+
+    /**
+     * Look up wave bitmaps in, and add new ones to, a map shared with other backends, e.g. by
+     * all renderers of one {@link WaveRenderer#render(Bitmap[], WaveState[])} call. The owner of
+     * the map recycles its bitmaps, this backend never does.
+     *
+     * @param bitmaps Keyed by every input of the bitmap, null to stop sharing.
+     */
+    void setSharedBitmaps(Map<WaveShaderCache.Key, Bitmap> bitmaps) {
+        mSharedBitmaps = bitmaps;
+    }
+
+    private void setBitmap(Bitmap bitmap, boolean owned, int waveColor, float[] layers) {
+        // The replaced bitmap is left to the GC rather than recycled: a display list recorded
+        // with the old shader may still draw it in the next frame.
+        mBitmap = bitmap;
+        mOwnsBitmap = owned;
+        mWaveColor = waveColor;
+        mLayers = layers;
+        // REPEAT tiles the single period across the view, CLAMP fills below the bitmap.
+        mShader = new BitmapShader(bitmap, Shader.TileMode.REPEAT, Shader.TileMode.CLAMP);
+    }
+
+    @Override
+    public void setPosition(float shift, float waterLine, float amplitudeScale, float tilt) {
+        if (mShader == null) {
+            return;
+        }
+        float defaultWaterLevel = mHeight * DEFAULT_WATER_LEVEL_RATIO;
+        // Stretch a reduced resolution bitmap to the full size.
+        mShaderMatrix.setScale((float) mWaveLength / mBitmap.getWidth(), (float) mHeight / mBitmap.getHeight());
+        // Sacle shader according to amplitudeRatio, around the default water level.
+        mShaderMatrix.postScale(1, amplitudeScale, 0, defaultWaterLevel);
+        // Translate shader according to waveShiftRatio and waterLevelRatio.
+        mShaderMatrix.postTranslate(shift, waterLine - defaultWaterLevel);
+        if (tilt != 0) {
+            // REPEAT and CLAMP keep the rotated wave covering the whole area.
+            mShaderMatrix.postRotate(tilt, mWidth / 2f, waterLine);
+        }
+        // Assign matrix to invalidate the shader.
+        mShader.setLocalMatrix(mShaderMatrix);
+    }
+
+    @Override
+    public Shader getShader() {
+        return mShader;
+    }
+
+    @Override
+    public void drawWave(Canvas canvas, Paint paint) {
+        if (mShader == null) {
+            return;
+        }
+        Shader shader = paint.getShader();
+        paint.setShader(mShader);
+        canvas.drawPaint(paint);
+        paint.setShader(shader);
+    }
+
+    @Override
+    public void drawCoverage(Canvas canvas, Paint paint) {
+        if (mShader != null) {
+            mCoverageMask.draw(canvas, paint, mBitmap, mShaderMatrix);
+        }
+    }
+
+    @Override
+    public void release() {
+        if (mBitmap != null && mOwnsBitmap)
+            mBitmap.recycle();
+        mBitmap = null;
+        mCoverageMask.recycle();
+        mShader = null;
+    }
+
+    /**
+     * Transparent the given color by the factor
+     * The more the factor closer to zero the more the color gets transparent
+     *
+     * @param color  The color to transparent
+     * @param factor 1.0f to 0.0f
+     * @return int - A transplanted color
+     */
+    static int adjustAlpha(int color, float factor) {
+        int alpha = Math.round(Color.alpha(color) * factor);
+        int red = Color.red(color);
+        int green = Color.green(color);
+        int blue = Color.blue(color);
+        return Color.argb(alpha, red, green, blue);
+    }
+}
@@ -0,0 +1,333 @@
+package me.itangqi.waveloadingview;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Canvas;
+import android.graphics.ComposeShader;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.Shader;
+import android.os.Build;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Draws a list of {@link WaveLayer}s, each with its own size, phase and speed.
+ * <p>
+ * Consecutive layers that move at the same speed in pixels keep their distance, so they are
+ * baked, in their own colors, into one bitmap spanning a common period of their wave lengths.
+ * Layers at the default speed and size all share a single bitmap, drawn as a single shader at
+ * any API level. Layers moving at different speeds get a bitmap per run: from API 28 these are
+ * chained into one shader, built once, earlier each run is drawn on its own.
+ * <p>
+ * Fills per frame: one when all layers share a run, or from API 28. Below API 28 each run takes
+ * its own full view drawPaint, one per distinct speed, and shapes drawn by the renderer take one
+ * drawWaveArea per run.
+ */
+final class LayeredWaveBackend implements WaveRenderBackend {
+    private static final float DEFAULT_AMPLITUDE_RATIO = BitmapWaveBackend.DEFAULT_AMPLITUDE_RATIO;
+    private static final float DEFAULT_WATER_LEVEL_RATIO = BitmapWaveBackend.DEFAULT_WATER_LEVEL_RATIO;
+    // Widest bitmap baked for a run, in wave lengths of the view.
+    private static final int MAX_PERIOD = 4;
+    private static final float EPSILON = 1e-3f;
+    // Build.VERSION_CODES.P, newer than the compile SDK.
+    private static final boolean SINGLE_SHADER = Build.VERSION.SDK_INT >= 28;
+
+    /**
+     * Consecutive layers baked into one bitmap.
+     */
+    private static final class Run {
+        final WaveLayer[] layers;
+        // Wave lengths of the view moved per wave animation cycle, the same for every layer.
+        final float speed;
+        // Width of the bitmap in wave lengths of the view, a whole number of each layer's waves.
+        final float period;
+        Bitmap bitmap;
+        BitmapShader shader;
+
+        Run(WaveLayer[] layers, float speed, float period) {
+            this.layers = layers;
+            this.speed = speed;
+            this.period = period;
+        }
+    }
+
+    private final Run[] mRuns;
+    // The front layer alone, drawn from WaveLoadingView.DetailLevel.SMALL on.
+    private final Run mFrontRun;
+    private final Run[] mFrontRuns;
+    private boolean mFrontOnly;
+    // All runs drawn in one, null while they take a draw each.
+    private Shader mShader;
+    private final Matrix mMatrix = new Matrix();
+
+    private int mWidth;
+    private int mHeight;
+    private int mWaveLength;
+    // Inputs baked into the bitmaps.
+    private int mBakedWaveLength;
+    private int mBakedHeight;
+    private float mBakedResolution;
+    private boolean mBakedFrontOnly;
+    private float mResolution = 1f;
+
+    // Wave animation cycles since the first frame, unbounded so layers at any speed loop smoothly.
+    private double mCycles;
+    private float mLastShiftRatio = Float.NaN;
+
+    LayeredWaveBackend(WaveLayer[] layers) {
+        mRuns = split(layers);
+        WaveLayer front = layers[layers.length - 1];
+        mFrontRun = new Run(new WaveLayer[]{front}, front.speed * front.waveLengthScale, front.waveLengthScale);
+        mFrontRuns = new Run[]{mFrontRun};
+    }
+
+    /**
+     * Group consecutive layers with the same speed in pixels and a common period of at most
+     * {@link #MAX_PERIOD} wave lengths, so the order back to front is kept.
+     */
+    private static Run[] split(WaveLayer[] layers) {
+        List<Run> runs = new ArrayList<>();
+        int start = 0;
+        while (start < layers.length) {
+            WaveLayer first = layers[start];
+            float speed = first.speed * first.waveLengthScale;
+            float period = first.waveLengthScale;
+            int end = start + 1;
+            while (end < layers.length) {
+                WaveLayer layer = layers[end];
+                if (Math.abs(layer.speed * layer.waveLengthScale - speed) > EPSILON) {
+                    break;
+                }
+                float common = commonPeriod(layers, start, end + 1);
+                if (common <= 0) {
+                    break;
+                }
+                period = common;
+                end++;
+            }
+            WaveLayer[] run = new WaveLayer[end - start];
+            System.arraycopy(layers, start, run, 0, run.length);
+            runs.add(new Run(run, speed, period));
+            start = end;
+        }
+        return runs.toArray(new Run[runs.size()]);
+    }
+
+    /**
+     * @return The shortest width, in wave lengths of the view, holding a whole number of waves of
+     * every layer from start to end, or 0 if it is wider than {@link #MAX_PERIOD}.
+     */
+    private static float commonPeriod(WaveLayer[] layers, int start, int end) {
+        float base = layers[start].waveLengthScale;
+        for (int multiple = 1; multiple * base <= MAX_PERIOD + EPSILON; multiple++) {
+            float period = multiple * base;
+            boolean whole = true;
+            for (int i = start + 1; i < end && whole; i++) {
+                float waves = period / layers[i].waveLengthScale;
+                whole = Math.abs(waves - Math.round(waves)) < EPSILON;
+            }
+            if (whole) {
+                return period;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public Type getType() {
+        return Type.LAYERED;
+    }
+
+    /**
+     * @param frontOnly True to draw only the front layer, for small sizes.
+     */
+    void setFrontLayerOnly(boolean frontOnly) {
+        mFrontOnly = frontOnly;
+    }
+
+    @Override
+    public void update(int width, int height, int waveLength, int waveColor, float[] layers) {
+        mWidth = width;
+        if (waveLength <= 0 || height <= 0) {
+            return;
+        }
+        mWaveLength = waveLength;
+        mHeight = height;
+        if (mBakedWaveLength == waveLength && mBakedHeight == height && mBakedResolution == mResolution
+                && mBakedFrontOnly == mFrontOnly) {
+            return;
+        }
+        // Old bitmaps are left to the GC, a recorded display list may still draw them.
+        for (Run run : mRuns) {
+            drop(run);
+        }
+        drop(mFrontRun);
+        mBakedFrontOnly = mFrontOnly;
+        Run[] runs = runs();
+        for (Run run : runs) {
+            bake(run, waveLength, height);
+        }
+        if (runs.length == 1) {
+            mShader = runs[0].shader;
+        } else if (SINGLE_SHADER) {
+            // Back to front, each run over the ones before. From API 28 the chain follows the
+            // local matrices of the run shaders, so it is built once.
+            Shader shader = runs[0].shader;
+            for (int i = 1; i < runs.length; i++) {
+                shader = new ComposeShader(shader, runs[i].shader, PorterDuff.Mode.SRC_OVER);
+            }
+            mShader = shader;
+        } else {
+            mShader = null;
+        }
+        mBakedWaveLength = waveLength;
+        mBakedHeight = height;
+        mBakedResolution = mResolution;
+    }
+
+    /**
+     * @return The runs baked by the last update.
+     */
+    private Run[] runs() {
+        return mBakedFrontOnly ? mFrontRuns : mRuns;
+    }
+
+    /**
+     * Draw the layers of a run, back to front in their colors, into a new bitmap of its period.
+     */
+    private void bake(Run run, int waveLength, int height) {
+        int bitmapWidth = Math.max(1, Math.round(run.period * waveLength * mResolution));
+        int bitmapHeight = Math.max(1, Math.round(height * mResolution));
+        float defaultAmplitude = bitmapHeight * DEFAULT_AMPLITUDE_RATIO;
+        float defaultWaterLevel = bitmapHeight * DEFAULT_WATER_LEVEL_RATIO;
+
+        Bitmap bitmap = Bitmap.createBitmap(bitmapWidth, bitmapHeight, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        Paint paint = new Paint();
+        paint.setStrokeWidth(2);
+        paint.setAntiAlias(true);
+
+        for (WaveLayer layer : run.layers) {
+            // A whole number of waves, so the bitmap repeats without a seam.
+            int waves = Math.max(1, Math.round(run.period / layer.waveLengthScale));
+            double angularFrequency = 2.0 * Math.PI * waves / bitmapWidth;
+            double phase = 2.0 * Math.PI * layer.phase;
+            float amplitude = defaultAmplitude * layer.amplitudeScale;
+            paint.setColor(layer.color);
+            // y=Asin(ωx-φ)+h, moved right by the phase as the layer's own matrix did.
+            for (int x = 0; x < bitmapWidth; x++) {
+                float y = (float) (defaultWaterLevel + amplitude * Math.sin(x * angularFrequency - phase));
+                canvas.drawLine(x, y, x, bitmapHeight + 1, paint);
+            }
+        }
+        run.bitmap = bitmap;
+        run.shader = new BitmapShader(bitmap, Shader.TileMode.REPEAT, Shader.TileMode.CLAMP);
+    }
+
+    @Override
+    public void setResolution(float scale) {
+        if (scale <= 0 || scale > 1) {
+            throw new IllegalArgumentException("scale must be > 0 and <= 1");
+        }
+        mResolution = scale;
+    }
+
+    @Override
+    public void setPosition(float shift, float waterLine, float amplitudeScale, float tilt) {
+        if (mWaveLength <= 0) {
+            return;
+        }
+        float shiftRatio = shift / mWaveLength;
+        if (Float.isNaN(mLastShiftRatio)) {
+            mCycles = shiftRatio;
+        } else {
+            // The animation wraps from 1 to 0, only the step since the last frame counts.
+            float step = shiftRatio - mLastShiftRatio;
+            mCycles += step - Math.round(step);
+        }
+        mLastShiftRatio = shiftRatio;
+
+        float defaultWaterLevel = mHeight * DEFAULT_WATER_LEVEL_RATIO;
+        for (Run run : runs()) {
+            if (run.shader == null) {
+                continue;
+            }
+            double offset = run.speed * mCycles / run.period;
+            offset -= Math.floor(offset);
+            float width = run.period * mWaveLength;
+            mMatrix.setScale(width / run.bitmap.getWidth(), (float) mHeight / run.bitmap.getHeight());
+            mMatrix.postScale(1, amplitudeScale, 0, defaultWaterLevel);
+            mMatrix.postTranslate((float) offset * width, waterLine - defaultWaterLevel);
+            if (tilt != 0) {
+                mMatrix.postRotate(tilt, mWidth / 2f, waterLine);
+            }
+            run.shader.setLocalMatrix(mMatrix);
+        }
+    }
+
+    @Override
+    public Shader getShader() {
+        return mShader;
+    }
+
+    /**
+     * @return Number of runs drawn one after the other while {@link #getShader()} is null.
+     */
+    int getRunCount() {
+        return runs().length;
+    }
+
+    /**
+     * @return Shader of a run, back to front, null before the first update.
+     */
+    Shader getRunShader(int index) {
+        return runs()[index].shader;
+    }
+
+    @Override
+    public void drawWave(Canvas canvas, Paint paint) {
+        Shader shader = paint.getShader();
+        if (mShader != null) {
+            paint.setShader(mShader);
+            canvas.drawPaint(paint);
+        } else {
+            for (Run run : runs()) {
+                if (run.shader != null) {
+                    paint.setShader(run.shader);
+                    canvas.drawPaint(paint);
+                }
+            }
+        }
+        paint.setShader(shader);
+    }
+
+    @Override
+    public void drawCoverage(Canvas canvas, Paint paint) {
+        // Custom layers keep their own colors.
+        drawWave(canvas, paint);
+    }
+
+    @Override
+    public void release() {
+        for (Run run : mRuns) {
+            release(run);
+        }
+        release(mFrontRun);
+        mShader = null;
+        mBakedWaveLength = 0;
+    }
+
+    private static void release(Run run) {
+        if (run.bitmap != null)
+            run.bitmap.recycle();
+        drop(run);
+    }
+
+    private static void drop(Run run) {
+        run.bitmap = null;
+        run.shader = null;
+    }
+}
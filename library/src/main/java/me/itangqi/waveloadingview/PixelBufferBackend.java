@@ -0,0 +1,225 @@
+package me.itangqi.waveloadingview;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Computes the wave bitmap directly in an int[], without Canvas or Paint.
+ * <p>
+ * All layers share the wave color, so a pixel only needs its alpha: the product of what each layer
+ * lets through. Each layer covers a pixel by the fraction of the pixel that lies below its curve,
+ * which anti-aliases the edge. Rows above the highest crest are transparent and rows below the
+ * lowest trough are opaque, only the rows in between are computed per layer.
+ * <p>
+ * Every pixel only depends on its column, so large bitmaps, like a full screen rectangle on a TV,
+ * are split into bands of rows filled in parallel on a small shared pool, then uploaded once.
+ */
+final class PixelBufferBackend extends BitmapWaveBackend {
+    // Below this many pixels, handing bands to other threads costs more than it saves.
+    static final int PARALLEL_MIN_PIXELS = 512 * 512;
+    private static final int MAX_WORKERS = 7;
+
+    // Workers besides the calling thread, which always fills a band itself.
+    private static ExecutorService sWorkers;
+
+    // Reused between regenerations of the same size.
+    private int[] mPixels;
+
+    @Override
+    public Type getType() {
+        return Type.PIXEL_BUFFER;
+    }
+
+    @Override
+    Bitmap createWaveBitmap(int waveLength, int height, int waveColor, float[] layers) {
+        int[] pixels = mPixels;
+        if (pixels == null || pixels.length != waveLength * height) {
+            pixels = new int[waveLength * height];
+            mPixels = pixels;
+        }
+        rasterize(pixels, waveLength, height, waveColor, layers, bandCount(waveLength * height));
+        Bitmap bitmap = Bitmap.createBitmap(waveLength, height, Bitmap.Config.ARGB_8888);
+        bitmap.setPixels(pixels, 0, waveLength, 0, 0, waveLength, height);
+        return bitmap;
+    }
+
+    /**
+     * @return One band per core for large bitmaps, a single band otherwise.
+     */
+    static int bandCount(int pixelCount) {
+        if (pixelCount < PARALLEL_MIN_PIXELS) {
+            return 1;
+        }
+        return Math.min(workerCount() + 1, pixelCount / (PARALLEL_MIN_PIXELS / 2));
+    }
+
+    private static int workerCount() {
+        return Math.max(0, Math.min(MAX_WORKERS, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    /**
+     * Fill pixels, row by row with a stride of waveLength, with one period of the wave layers.
+     * Pure Java, so it also runs in plain JVM tests and benchmarks.
+     *
+     * @param bands Number of row bands, filled in parallel on the shared pool if more than one.
+     */
+    static void rasterize(int[] pixels, int waveLength, int height, int waveColor, float[] layers, int bands) {
+        rasterize(pixels, waveLength, height, waveColor, layers, bands, workerCount() == 0 ? null : workers());
+    }
+
+    /**
+     * @param workers Fill all bands but the first, null to fill everything on the calling thread.
+     */
+    static void rasterize(final int[] pixels, final int waveLength, final int height, int waveColor,
+                          float[] layers, int bands, ExecutorService workers) {
+        final Columns columns = new Columns(waveLength, height, waveColor, layers);
+        bands = Math.max(1, Math.min(bands, height));
+        if (bands == 1 || workers == null) {
+            columns.fillRows(pixels, 0, height);
+            return;
+        }
+
+        List<Future<?>> futures = new ArrayList<>(bands - 1);
+        for (int band = 1; band < bands; band++) {
+            final int from = height * band / bands;
+            final int to = height * (band + 1) / bands;
+            futures.add(workers.submit(new Runnable() {
+                @Override
+                public void run() {
+                    columns.fillRows(pixels, from, to);
+                }
+            }));
+        }
+        columns.fillRows(pixels, 0, height / bands);
+
+        boolean interrupted = false;
+        try {
+            for (Future<?> future : futures) {
+                while (true) {
+                    try {
+                        future.get();
+                        break;
+                    } catch (InterruptedException e) {
+                        // The pixels are only complete once every band is done.
+                        interrupted = true;
+                    }
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static synchronized ExecutorService workers() {
+        if (sWorkers == null) {
+            final AtomicInteger count = new AtomicInteger();
+            sWorkers = Executors.newFixedThreadPool(workerCount(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "WaveRaster-" + count.incrementAndGet());
+                    // Never keep the process alive for a shader.
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sWorkers;
+    }
+
+    @Override
+    public void release() {
+        super.release();
+        mPixels = null;
+    }
+
+    /**
+     * Wave heights and opacities of every column, computed once and shared by all bands.
+     */
+    private static final class Columns {
+        final int waveLength;
+        final int layerCount;
+        // Height of layer l at column x, at [l * waveLength + x].
+        final float[] waveY;
+        final float[] opacity;
+        // Rows before firstRow[x] are transparent, rows from solidRow[x] on are solid.
+        final int[] firstRow;
+        final int[] solidRow;
+        final int rgb;
+        final int solid;
+
+        Columns(int waveLength, int height, int waveColor, float[] layers) {
+            this.waveLength = waveLength;
+            layerCount = layers.length / 2;
+            rgb = waveColor & 0x00ffffff;
+
+            double defaultAngularFrequency = 2.0f * Math.PI / waveLength;
+            float defaultAmplitude = height * DEFAULT_AMPLITUDE_RATIO;
+            float defaultWaterLevel = height * DEFAULT_WATER_LEVEL_RATIO;
+
+            // Opacity of each layer, and of the water below all of them.
+            opacity = new float[layerCount];
+            float transmittance = 1f;
+            for (int l = 0; l < layerCount; l++) {
+                opacity[l] = (waveColor >>> 24) / 255f * layers[2 * l + 1];
+                transmittance *= 1f - opacity[l];
+            }
+            solid = (Math.round((1f - transmittance) * 255) << 24) | rgb;
+
+            float[] sine = new float[waveLength];
+            for (int x = 0; x < waveLength; x++) {
+                sine[x] = (float) (defaultWaterLevel + defaultAmplitude * Math.sin(x * defaultAngularFrequency));
+            }
+
+            waveY = new float[layerCount * waveLength];
+            firstRow = new int[waveLength];
+            solidRow = new int[waveLength];
+            for (int x = 0; x < waveLength; x++) {
+                float top = height;
+                float bottom = 0;
+                for (int l = 0; l < layerCount; l++) {
+                    float y = sine[(x + (int) (layers[2 * l] * waveLength)) % waveLength];
+                    waveY[l * waveLength + x] = y;
+                    top = Math.min(top, y);
+                    bottom = Math.max(bottom, y);
+                }
+                firstRow[x] = Math.max(0, (int) top);
+                solidRow[x] = Math.min(height, (int) Math.ceil(bottom));
+            }
+        }
+
+        void fillRows(int[] pixels, int fromRow, int toRow) {
+            for (int row = fromRow; row < toRow; row++) {
+                int offset = row * waveLength;
+                for (int x = 0; x < waveLength; x++) {
+                    int pixel;
+                    if (row < firstRow[x]) {
+                        pixel = 0;
+                    } else if (row >= solidRow[x]) {
+                        pixel = solid;
+                    } else {
+                        float through = 1f;
+                        for (int l = 0; l < layerCount; l++) {
+                            // Part of the pixel row, from row to row + 1, below the curve.
+                            float coverage = Math.max(0f, Math.min(1f, row + 1 - waveY[l * waveLength + x]));
+                            through *= 1f - coverage * opacity[l];
+                        }
+                        pixel = (Math.round((1f - through) * 255) << 24) | rgb;
+                    }
+                    pixels[offset + x] = pixel;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package me.itangqi.waveloadingview;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Shader;
+
+import java.util.Arrays;
+
+/**
+ * Fills the wave as Paths, without any bitmap. The hosts clip it to their shape.
+ * <p>
+ * The layer paths span one extra wave length to the left of the view, so shifting by less than a
+ * wave length is a plain canvas translation. They are only rebuilt when the size, wave length or
+ * amplitude changes, or when the wave starts or stops tilting: tilted paths extend far enough
+ * beyond the view to cover it at any angle.
+ */
+final class VectorPathBackend implements WaveRenderBackend {
+    private static final float DEFAULT_AMPLITUDE_RATIO = WaveStyle.DEFAULT_AMPLITUDE_RATIO;
+    // Line segments per wave period, more than enough for a sine at any size.
+    private static final int SEGMENTS_PER_WAVE = 48;
+
+    private int mWidth;
+    private int mHeight;
+    private int mWaveLength;
+    private int mWaveColor;
+    private float[] mLayers;
+    private Path[] mPaths;
+    private float mPathAmplitudeScale;
+    private boolean mPathsTilted;
+
+    private float mShift;
+    private float mWaterLine;
+    private float mAmplitudeScale = 1f;
+    private float mTilt;
+
+    @Override
+    public Type getType() {
+        return Type.VECTOR_PATH;
+    }
+
+    @Override
+    public void update(int width, int height, int waveLength, int waveColor, float[] layers) {
+        if (mWidth != width || mHeight != height || mWaveLength != waveLength
+                || !Arrays.equals(mLayers, layers)) {
+            mPaths = null;
+        }
+        mWidth = width;
+        mHeight = height;
+        mWaveLength = waveLength;
+        mWaveColor = waveColor;
+        mLayers = layers;
+    }
+
+    @Override
+    public void setResolution(float scale) {
+        // Paths are drawn at the resolution of the canvas.
+    }
+
+    @Override
+    public void setPosition(float shift, float waterLine, float amplitudeScale, float tilt) {
+        mShift = shift;
+        mWaterLine = waterLine;
+        mAmplitudeScale = amplitudeScale;
+        mTilt = tilt;
+    }
+
+    @Override
+    public Shader getShader() {
+        return null;
+    }
+
+    @Override
+    public void drawWave(Canvas canvas, Paint paint) {
+        if (mWaveLength <= 0 || mHeight <= 0) {
+            return;
+        }
+        if (mPaths == null || mPathAmplitudeScale != mAmplitudeScale || mPathsTilted != (mTilt != 0)) {
+            buildPaths();
+        }
+        float offset = mShift % mWaveLength;
+        if (offset < 0) {
+            offset += mWaveLength;
+        }
+        int color = paint.getColor();
+        canvas.save();
+        if (mTilt != 0) {
+            canvas.rotate(mTilt, mWidth / 2f, mWaterLine);
+        }
+        canvas.translate(offset, mWaterLine);
+        for (int l = 0; l < mPaths.length; l++) {
+            paint.setColor(BitmapWaveBackend.adjustAlpha(mWaveColor, mLayers[2 * l + 1]));
+            canvas.drawPath(mPaths[l], paint);
+        }
+        canvas.restore();
+        paint.setColor(color);
+    }
+
+    /**
+     * Clip the canvas to the area under the front layer as positioned, leaving its matrix as it was.
+     */
+    void clipToFrontLayer(Canvas canvas) {
+        if (mWaveLength <= 0 || mHeight <= 0) {
+            canvas.clipRect(0, 0, 0, 0);
+            return;
+        }
+        if (mPaths == null || mPathAmplitudeScale != mAmplitudeScale || mPathsTilted != (mTilt != 0)) {
+            buildPaths();
+        }
+        float offset = mShift % mWaveLength;
+        if (offset < 0) {
+            offset += mWaveLength;
+        }
+        if (mTilt != 0) {
+            canvas.rotate(mTilt, mWidth / 2f, mWaterLine);
+        }
+        canvas.translate(offset, mWaterLine);
+        canvas.clipPath(mPaths[mPaths.length - 1]);
+        canvas.translate(-offset, -mWaterLine);
+        if (mTilt != 0) {
+            canvas.rotate(-mTilt, mWidth / 2f, mWaterLine);
+        }
+    }
+
+    @Override
+    public void drawCoverage(Canvas canvas, Paint paint) {
+        // The layer colors only set the alpha of a paint with a shader.
+        drawWave(canvas, paint);
+    }
+
+    /**
+     * Build one closed path per layer, relative to the still water level, from one wave length
+     * left of the view to its right edge, and down to twice the height.
+     */
+    private void buildPaths() {
+        int layerCount = mLayers.length / 2;
+        float amplitude = mHeight * DEFAULT_AMPLITUDE_RATIO * mAmplitudeScale;
+        double angularFrequency = 2.0 * Math.PI / mWaveLength;
+        float step = Math.max(1f, (float) mWaveLength / SEGMENTS_PER_WAVE);
+        boolean tilted = mTilt != 0;
+        // Rotated, the view may reach as far as its size beyond the level paths.
+        float margin = tilted ? mWidth + mHeight : 0;
+        float left = -mWaveLength - margin;
+        float right = mWidth + margin;
+        float bottom = 2 * mHeight + margin;
+
+        if (mPaths == null || mPaths.length != layerCount) {
+            mPaths = new Path[layerCount];
+        }
+        for (int l = 0; l < layerCount; l++) {
+            Path path = mPaths[l];
+            if (path == null) {
+                path = new Path();
+                mPaths[l] = path;
+            } else {
+                path.rewind();
+            }
+            // y=Asin(ωx+φ), φ as in the bitmap backends.
+            double phase = (int) (mLayers[2 * l] * mWaveLength) * angularFrequency;
+            path.moveTo(left, bottom);
+            for (float x = left; x < right + step; x += step) {
+                path.lineTo(x, (float) (amplitude * Math.sin(x * angularFrequency + phase)));
+            }
+            path.lineTo(right + step, bottom);
+            path.close();
+        }
+        mPathAmplitudeScale = mAmplitudeScale;
+        mPathsTilted = tilted;
+    }
+
+    @Override
+    public void release() {
+        mPaths = null;
+    }
+}
@@ -0,0 +1,93 @@
+package me.itangqi.waveloadingview;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.Build;
+import android.os.SystemClock;
+import android.view.View;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityManager;
+import android.view.accessibility.AccessibilityNodeInfo;
+import android.widget.ProgressBar;
+
+/**
+ * Presents a wave view to accessibility services as a {@link ProgressBar} from 0 to 100.
+ * <p>
+ * Progress changes are coalesced: an event is sent once the progress moved by
+ * {@link #EVENT_MIN_STEP} or reached the end, at most once per {@link #EVENT_INTERVAL_MILLIS},
+ * carrying the latest value. Nothing is scheduled while accessibility is off.
+ */
+final class WaveAccessibility {
+    static final int MAX_PROGRESS = 100;
+    static final long EVENT_INTERVAL_MILLIS = 1000;
+    static final int EVENT_MIN_STEP = 5;
+
+    private final View mView;
+    private final AccessibilityManager mManager;
+    // Latest progress, read when a pending event is sent.
+    private int mProgress;
+    // Progress carried by the last event, -1 before the first one.
+    private int mAnnouncedProgress = -1;
+    private long mLastEventMillis;
+    private boolean mEventPending;
+
+    private final Runnable mSendEvent = new Runnable() {
+        @Override
+        public void run() {
+            mEventPending = false;
+            mAnnouncedProgress = mProgress;
+            mLastEventMillis = SystemClock.uptimeMillis();
+            mView.sendAccessibilityEvent(AccessibilityEvent.TYPE_VIEW_SELECTED);
+        }
+    };
+
+    WaveAccessibility(View view) {
+        mView = view;
+        mManager = (AccessibilityManager) view.getContext().getSystemService(Context.ACCESSIBILITY_SERVICE);
+    }
+
+    void onProgressChanged(int progress) {
+        mProgress = progress;
+        // Unattached views cannot send events, they report their progress once focused.
+        if (mEventPending || mView.getWindowToken() == null || mManager == null || !mManager.isEnabled()) {
+            return;
+        }
+        boolean end = progress <= 0 || progress >= MAX_PROGRESS;
+        if (progress == mAnnouncedProgress
+                || (!end && mAnnouncedProgress >= 0 && Math.abs(progress - mAnnouncedProgress) < EVENT_MIN_STEP)) {
+            return;
+        }
+        long delay = Math.max(0, mLastEventMillis + EVENT_INTERVAL_MILLIS - SystemClock.uptimeMillis());
+        mEventPending = true;
+        mView.postDelayed(mSendEvent, delay);
+    }
+
+    static void onInitializeAccessibilityEvent(AccessibilityEvent event, int progress) {
+        event.setClassName(ProgressBar.class.getName());
+        event.setItemCount(MAX_PROGRESS);
+        event.setCurrentItemIndex(progress);
+    }
+
+    static void onInitializeAccessibilityNodeInfo(AccessibilityNodeInfo info, int progress) {
+        info.setClassName(ProgressBar.class.getName());
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            setRangeInfo(info, progress);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private static void setRangeInfo(AccessibilityNodeInfo info, int progress) {
+        info.setRangeInfo(AccessibilityNodeInfo.RangeInfo.obtain(
+                AccessibilityNodeInfo.RangeInfo.RANGE_TYPE_INT, 0, MAX_PROGRESS, progress));
+    }
+
+    /**
+     * Drop a pending event, e.g. when the view is detached.
+     */
+    void cancel() {
+        if (mEventPending) {
+            mView.removeCallbacks(mSendEvent);
+            mEventPending = false;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package me.itangqi.waveloadingview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Shader;
+
+/**
+ * Draws the alpha of a wave bitmap as an ALPHA_8 mask, which takes its color from the paint's
+ * shader, one tile per wave period. Hardware acceleration draws that at any API level, unlike a
+ * ComposeShader of two bitmaps. See {@link WaveRenderBackend#drawCoverage}.
+ */
+final class WaveCoverageMask {
+    // Extracted from mSource once, left to the GC when the source changes.
+    private Bitmap mSource;
+    private Bitmap mMask;
+    // Alpha of the bottom row, which CLAMP repeats below the bitmap.
+    private int mBottomAlpha;
+    private final Matrix mInverseMatrix = new Matrix();
+    private final Matrix mFillMatrix = new Matrix();
+    private final Matrix mCoverageFillMatrix = new Matrix();
+    private final Rect mClipBounds = new Rect();
+    private final RectF mBounds = new RectF();
+
+    /**
+     * Fill the current clip with the paint where the wave bitmap, tiled by REPEAT and CLAMP under
+     * the matrix, is opaque.
+     *
+     * @param bitmap Wave bitmap of one period.
+     * @param matrix Local matrix of the wave shader drawn from the bitmap.
+     */
+    void draw(Canvas canvas, Paint paint, Bitmap bitmap, Matrix matrix) {
+        if (!matrix.invert(mInverseMatrix) || !canvas.getClipBounds(mClipBounds)) {
+            return;
+        }
+        if (mSource != bitmap) {
+            mSource = bitmap;
+            mMask = bitmap.extractAlpha();
+            mBottomAlpha = Color.alpha(bitmap.getPixel(0, bitmap.getHeight() - 1));
+        }
+        // The area to fill, in bitmap pixels.
+        mBounds.set(mClipBounds);
+        mInverseMatrix.mapRect(mBounds);
+
+        // Undo the wave matrix on the fill, so it stays where the canvas had it.
+        Shader fill = paint.getShader();
+        boolean fillMatrix = fill != null && fill.getLocalMatrix(mFillMatrix);
+        if (fill != null) {
+            if (fillMatrix) {
+                mCoverageFillMatrix.set(mFillMatrix);
+            } else {
+                mCoverageFillMatrix.reset();
+            }
+            mCoverageFillMatrix.postConcat(mInverseMatrix);
+            fill.setLocalMatrix(mCoverageFillMatrix);
+        }
+        boolean filter = paint.isFilterBitmap();
+        paint.setFilterBitmap(true);
+        canvas.save();
+        canvas.concat(matrix);
+        int tileWidth = mMask.getWidth();
+        int tileHeight = mMask.getHeight();
+        if (mBounds.top < tileHeight) {
+            // REPEAT across the area.
+            for (float x = (float) Math.floor(mBounds.left / tileWidth) * tileWidth; x < mBounds.right; x += tileWidth) {
+                canvas.drawBitmap(mMask, x, 0, paint);
+            }
+        }
+        if (mBounds.bottom > tileHeight && mBottomAlpha > 0) {
+            // CLAMP, the bottom row all the way down.
+            int alpha = paint.getAlpha();
+            paint.setAlpha(alpha * mBottomAlpha / 255);
+            canvas.drawRect(mBounds.left, tileHeight, mBounds.right, mBounds.bottom, paint);
+            paint.setAlpha(alpha);
+        }
+        canvas.restore();
+        paint.setFilterBitmap(filter);
+        if (fill != null) {
+            fill.setLocalMatrix(fillMatrix ? mFillMatrix : null);
+        }
+    }
+
+    /**
+     * Free the mask right away, only once nothing draws it anymore.
+     */
+    void recycle() {
+        if (mMask != null)
+            mMask.recycle();
+        mMask = null;
+        mSource = null;
+    }
+}
@@ -0,0 +1,505 @@
+package me.itangqi.waveloadingview;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Path;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Animatable;
+import android.graphics.drawable.Drawable;
+import android.os.SystemClock;
+import android.support.v7.content.res.AppCompatResources;
+
+import java.util.List;
+
+import me.itangqi.waveloadingview.WaveLoadingView.PercentTitle;
+import me.itangqi.waveloadingview.WaveLoadingView.ShapeType;
+
+/**
+ * The wave of {@link WaveLoadingView} as a Drawable, for backgrounds, ImageView sources,
+ * compound drawables and ProgressBar progress drawables.
+ * <p>
+ * It shares the shader generation, shapes and titles of the view, but needs no measure or
+ * layout pass and no animator: frames are scheduled on the host with scheduleSelf, so many
+ * waves can live in the display list of a single view. The drawable level (0 - 10000) maps to
+ * the progress (0 - 100), which is what ProgressBar sets.
+ * <pre>
+ * WaveDrawable wave = new WaveDrawable(context, style);
+ * imageView.setImageDrawable(wave);
+ * wave.start();
+ * </pre>
+ */
+public class WaveDrawable extends Drawable implements Animatable, Runnable {
+    private static final long DEFAULT_ANIM_DURATION = 1000;
+    private static final long LEVEL_ANIM_DURATION = 1000;
+    // About 60 frames per second.
+    private static final long FRAME_DELAY = 16;
+
+    private final Context mContext;
+    private final WaveRenderer mRenderer;
+    private int mAlpha = 255;
+    private int mIntrinsicWidth = -1;
+    private int mIntrinsicHeight = -1;
+
+    // Animation clock, in SystemClock.uptimeMillis.
+    private boolean mRunning;
+    private boolean mScheduled;
+    private long mAnimDuration = DEFAULT_ANIM_DURATION;
+    private long mShiftStartTime;
+    // Water level animation, from mLevelFrom to mLevelTo.
+    private long mLevelStartTime = -1;
+    private float mLevelFrom;
+    private float mLevelTo;
+
+    public WaveDrawable(Context context) {
+        this(context, new WaveStyle.Builder(context).build());
+    }
+
+    /**
+     * @param style Shared style, see {@link WaveStyle}.
+     */
+    public WaveDrawable(Context context, WaveStyle style) {
+        mContext = context;
+        mRenderer = new WaveRenderer(style);
+        mRenderer.setWaterLevelRatio((float) style.progressValue / 100);
+        if (style.shapeDrawableRes != 0) {
+            mRenderer.setShapeDrawable(AppCompatResources.getDrawable(context, style.shapeDrawableRes));
+        }
+        if (style.waveTextureRes != 0) {
+            mRenderer.setWaveTexture(BitmapFactory.decodeResource(context.getResources(), style.waveTextureRes));
+        }
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        Rect bounds = getBounds();
+        if (bounds.isEmpty()) {
+            return;
+        }
+        int saveCount;
+        if (mAlpha < 255) {
+            // The wave is made of several overlapping layers, they have to fade as one.
+            saveCount = canvas.saveLayerAlpha(bounds.left, bounds.top, bounds.right, bounds.bottom,
+                    mAlpha, Canvas.ALL_SAVE_FLAG);
+        } else {
+            saveCount = canvas.save();
+        }
+        canvas.translate(bounds.left, bounds.top);
+        mRenderer.draw(canvas);
+        canvas.restoreToCount(saveCount);
+        if (mRunning && !mScheduled && isVisible()) {
+            // Started before it had a host, the host that draws it now can run its frames.
+            scheduleFrame();
+        }
+    }
+
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        super.onBoundsChange(bounds);
+        mRenderer.setSize(bounds.width(), bounds.height());
+        mRenderer.updateWaveShader();
+    }
+
+    @Override
+    protected boolean onLevelChange(int level) {
+        setProgressValue(level / 100);
+        return true;
+    }
+
+    @Override
+    public boolean setVisible(boolean visible, boolean restart) {
+        boolean changed = super.setVisible(visible, restart);
+        if (visible) {
+            if (mRunning && (changed || restart)) {
+                scheduleFrame();
+            }
+        } else {
+            // Paused while hidden, the clock keeps running so the phase is continuous.
+            unscheduleFrame();
+            finishLevelAnimation();
+        }
+        return changed;
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        if (mAlpha != alpha) {
+            mAlpha = alpha;
+            invalidateSelf();
+        }
+    }
+
+    @Override
+    public int getAlpha() {
+        return mAlpha;
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter colorFilter) {
+        mRenderer.setColorFilter(colorFilter);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    /**
+     * Size reported to hosts that size drawables themselves, e.g. compound drawables.
+     * Defaults to -1, the drawable then fills whatever bounds it is given.
+     */
+    public void setIntrinsicSize(int width, int height) {
+        mIntrinsicWidth = width;
+        mIntrinsicHeight = height;
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        return mIntrinsicWidth;
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return mIntrinsicHeight;
+    }
+
+    @Override
+    public void start() {
+        if (mRunning) {
+            return;
+        }
+        mRunning = true;
+        // Continue from the current phase.
+        mShiftStartTime = SystemClock.uptimeMillis() - (long) (mRenderer.getWaveShiftRatio() * mAnimDuration);
+        if (isVisible()) {
+            scheduleFrame();
+        }
+    }
+
+    @Override
+    public void stop() {
+        mRunning = false;
+        unscheduleFrame();
+        finishLevelAnimation();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    @Override
+    public void run() {
+        mScheduled = false;
+        long now = SystemClock.uptimeMillis();
+        if (mAnimDuration > 0) {
+            mRenderer.setWaveShiftRatio((float) ((now - mShiftStartTime) % mAnimDuration) / mAnimDuration);
+        }
+        if (mLevelStartTime >= 0) {
+            float input = Math.min(1f, (float) (now - mLevelStartTime) / LEVEL_ANIM_DURATION);
+            // Same curve as DecelerateInterpolator.
+            float fraction = 1f - (1f - input) * (1f - input);
+            mRenderer.setWaterLevelRatio(mLevelFrom + (mLevelTo - mLevelFrom) * fraction);
+            if (input >= 1f) {
+                mLevelStartTime = -1;
+            }
+        }
+        invalidateSelf();
+        if (mRunning && isVisible()) {
+            scheduleFrame();
+        }
+    }
+
+    private void scheduleFrame() {
+        // Without a callback scheduleSelf does nothing, draw() schedules once there is a host.
+        if (!mScheduled && getCallback() != null) {
+            mScheduled = true;
+            scheduleSelf(this, SystemClock.uptimeMillis() + FRAME_DELAY);
+        }
+    }
+
+    private void unscheduleFrame() {
+        mScheduled = false;
+        unscheduleSelf(this);
+    }
+
+    private void finishLevelAnimation() {
+        if (mLevelStartTime >= 0) {
+            mLevelStartTime = -1;
+            mRenderer.setWaterLevelRatio(mLevelTo);
+        }
+    }
+
+    /**
+     * Water level increases from the current level to the value, animated while running.
+     *
+     * @param progress Default to be 50.
+     */
+    public void setProgressValue(int progress) {
+        mRenderer.setProgressValue(progress);
+        float waterLevelRatio = (float) progress / 100;
+        if (mRunning && isVisible()) {
+            mLevelFrom = mRenderer.getWaterLevelRatio();
+            mLevelTo = waterLevelRatio;
+            mLevelStartTime = SystemClock.uptimeMillis();
+        } else {
+            mLevelStartTime = -1;
+            mRenderer.setWaterLevelRatio(waterLevelRatio);
+            invalidateSelf();
+        }
+    }
+
+    public int getProgressValue() {
+        return mRenderer.getProgressValue();
+    }
+
+    /**
+     * Sets the length of one wave period. The default duration is 1000 milliseconds.
+     *
+     * @param duration The length of the animation, in milliseconds.
+     */
+    public void setAnimDuration(long duration) {
+        mShiftStartTime = SystemClock.uptimeMillis() - (long) (mRenderer.getWaveShiftRatio() * duration);
+        mAnimDuration = duration;
+    }
+
+    /**
+     * Apply the appearance of a resolved style, titles and progress are left untouched.
+     *
+     * @param style Shared style, see {@link WaveStyle}.
+     */
+    public void apply(WaveStyle style) {
+        mRenderer.apply(style);
+        if (style.shapeDrawableRes != 0) {
+            mRenderer.setShapeDrawable(AppCompatResources.getDrawable(mContext, style.shapeDrawableRes));
+        }
+        mRenderer.setWaveTexture(style.waveTextureRes == 0 ? null
+                : BitmapFactory.decodeResource(mContext.getResources(), style.waveTextureRes));
+        mRenderer.updateWaveShader();
+        invalidateSelf();
+    }
+
+    /**
+     * @see WaveLoadingView#setFrameCacheSize(int)
+     */
+    public void setFrameCacheSize(int frameCount) {
+        mRenderer.setFrameCacheSize(frameCount);
+        invalidateSelf();
+    }
+
+    /**
+     * @see WaveLoadingView#setRenderBackend(WaveRenderBackend.Type)
+     */
+    public void setRenderBackend(WaveRenderBackend.Type type) {
+        WaveRenderer.checkRenderBackend(type);
+        mRenderer.setRenderBackend(type.ordinal());
+        mRenderer.updateWaveShader();
+        invalidateSelf();
+    }
+
+    public WaveRenderBackend.Type getRenderBackend() {
+        return mRenderer.getRenderBackend().getType();
+    }
+
+    /**
+     * @see WaveLoadingView#setWaveLayers(List)
+     */
+    public void setWaveLayers(List<WaveLayer> layers) {
+        mRenderer.setCustomWaveLayers(WaveRenderer.toLayerArray(layers));
+        mRenderer.updateWaveShader();
+        invalidateSelf();
+    }
+
+    public List<WaveLayer> getWaveLayers() {
+        return WaveRenderer.toLayerList(mRenderer.getCustomWaveLayers());
+    }
+
+    public void setWaveColor(int color) {
+        mRenderer.setWaveColor(color);
+        mRenderer.updateWaveShader();
+        invalidateSelf();
+    }
+
+    public int getWaveColor() {
+        return mRenderer.getWaveColor();
+    }
+
+    /**
+     * @see WaveLoadingView#setWaveGradient(int[], float[], WaveLoadingView.GradientOrientation)
+     */
+    public void setWaveGradient(int[] colors, float[] positions, WaveLoadingView.GradientOrientation orientation) {
+        WaveRenderer.checkGradient(colors, positions);
+        mRenderer.setWaveGradient(colors.clone(), positions == null ? null : positions.clone(), orientation.ordinal());
+        invalidateSelf();
+    }
+
+    /**
+     * @see WaveLoadingView#setWaveTexture(Bitmap)
+     */
+    public void setWaveTexture(Bitmap texture) {
+        mRenderer.setWaveTexture(texture);
+        invalidateSelf();
+    }
+
+    public void clearWaveFill() {
+        mRenderer.setWaveGradient(null, null, WaveLoadingView.GradientOrientation.VERTICAL.ordinal());
+        mRenderer.setWaveTexture(null);
+        invalidateSelf();
+    }
+
+    public void setWaveBgColor(int color) {
+        mRenderer.setWaveBgColor(color);
+        invalidateSelf();
+    }
+
+    public int getWaveBgColor() {
+        return mRenderer.getWaveBgColor();
+    }
+
+    /**
+     * @param width Border width in pixels.
+     */
+    public void setBorderWidth(float width) {
+        mRenderer.setBorderWidth(width);
+        invalidateSelf();
+    }
+
+    public float getBorderWidth() {
+        return mRenderer.getBorderWidth();
+    }
+
+    public void setBorderColor(int color) {
+        mRenderer.setBorderColor(color);
+        invalidateSelf();
+    }
+
+    public int getBorderColor() {
+        return mRenderer.getBorderColor();
+    }
+
+    /**
+     * @param amplitudeRatio Same scale as {@link WaveLoadingView#setAmplitudeRatio(int)}.
+     */
+    public void setAmplitudeRatio(int amplitudeRatio) {
+        mRenderer.setAmplitudeRatio((float) amplitudeRatio / 1000);
+        invalidateSelf();
+    }
+
+    public float getAmplitudeRatio() {
+        return mRenderer.getAmplitudeRatio();
+    }
+
+    /**
+     * @param waveLengthRatio Wave length relative to the bounds width. Default to be 1.0.
+     */
+    public void setWaveLengthRatio(float waveLengthRatio) {
+        if (waveLengthRatio <= 0) {
+            throw new IllegalArgumentException("waveLengthRatio must be > 0");
+        }
+        mRenderer.setWaveLengthRatio(waveLengthRatio);
+        mRenderer.updateWaveShader();
+        invalidateSelf();
+    }
+
+    public float getWaveLengthRatio() {
+        return mRenderer.getWaveLengthRatio();
+    }
+
+    /**
+     * Circles use the largest centered circle when the bounds are not square.
+     */
+    public void setShapeType(ShapeType shapeType) {
+        mRenderer.setShapeType(shapeType.ordinal());
+        invalidateSelf();
+    }
+
+    public ShapeType getShapeType() {
+        return ShapeType.values()[mRenderer.getShapeType()];
+    }
+
+    /**
+     * @see WaveLoadingView#setShapePath(Path)
+     */
+    public void setShapePath(Path path) {
+        mRenderer.setShapePath(path);
+        invalidateSelf();
+    }
+
+    /**
+     * @see WaveLoadingView#setShapeDrawable(Drawable)
+     */
+    public void setShapeDrawable(Drawable drawable) {
+        mRenderer.setShapeDrawable(drawable);
+        invalidateSelf();
+    }
+
+    public void setTopTitle(String topTitle) {
+        mRenderer.setTopTitle(topTitle);
+        invalidateSelf();
+    }
+
+    public String getTopTitle() {
+        return mRenderer.getTopTitle();
+    }
+
+    public void setCenterTitle(String centerTitle) {
+        mRenderer.setCenterTitle(centerTitle);
+        invalidateSelf();
+    }
+
+    public String getCenterTitle() {
+        return mRenderer.getCenterTitle();
+    }
+
+    public void setBottomTitle(String bottomTitle) {
+        mRenderer.setBottomTitle(bottomTitle);
+        invalidateSelf();
+    }
+
+    public String getBottomTitle() {
+        return mRenderer.getBottomTitle();
+    }
+
+    /**
+     * @see WaveLoadingView#setCenterTitlePercent(PercentTitle)
+     */
+    public void setCenterTitlePercent(PercentTitle percentTitle) {
+        mRenderer.setCenterTitlePercent(percentTitle.ordinal());
+        invalidateSelf();
+    }
+
+    public PercentTitle getCenterTitlePercent() {
+        return PercentTitle.values()[mRenderer.getCenterTitlePercent()];
+    }
+
+    /**
+     * @see WaveLoadingView#setTitleSubmergedColor(int)
+     */
+    public void setTitleSubmergedColor(int color) {
+        mRenderer.setTitleSubmergedColor(color);
+        invalidateSelf();
+    }
+
+    public int getTitleSubmergedColor() {
+        return mRenderer.getTitleSubmergedColor();
+    }
+
+    public void setTopTitleColor(int topTitleColor) {
+        mRenderer.topTitlePaint().setColor(topTitleColor);
+        invalidateSelf();
+    }
+
+    public void setCenterTitleColor(int centerTitleColor) {
+        mRenderer.centerTitlePaint().setColor(centerTitleColor);
+        invalidateSelf();
+    }
+
+    public void setBottomTitleColor(int bottomTitleColor) {
+        mRenderer.bottomTitlePaint().setColor(bottomTitleColor);
+        invalidateSelf();
+    }
+}
@@ -0,0 +1,195 @@
+package me.itangqi.waveloadingview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.AnimationDrawable;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+
+/**
+ * Frames of one wave period, rendered once into a sprite sheet and then played back by blitting.
+ * <p>
+ * The shift animation is periodic, so at a fixed water level the frames repeat exactly. A small
+ * gauge then costs a single bitmap draw per frame. Views use it through
+ * {@link WaveLoadingView#setFrameCacheSize(int)}; {@link #create(WaveState, int, int, int)} serves
+ * hosts that can only swap bitmaps, like RemoteViews or an AnimationDrawable.
+ * <p>
+ * The sheet takes frameCount * width * height * 4 bytes, keep it for small gauges.
+ */
+public final class WaveFrameCache {
+    private final Bitmap mSheet;
+    private final int mFrameWidth;
+    private final int mFrameHeight;
+    private final int mFrameCount;
+    // Frames are laid out in a grid rather than a strip, to stay within the maximum texture size.
+    private final int mColumns;
+    private final Rect mSrc = new Rect();
+    private final Rect mDst = new Rect();
+
+    WaveFrameCache(int frameWidth, int frameHeight, int frameCount) {
+        if (frameWidth <= 0 || frameHeight <= 0 || frameCount <= 0) {
+            throw new IllegalArgumentException("frame size and count must be > 0");
+        }
+        mFrameWidth = frameWidth;
+        mFrameHeight = frameHeight;
+        mFrameCount = frameCount;
+        mColumns = (int) Math.ceil(Math.sqrt(frameCount));
+        int rows = (frameCount + mColumns - 1) / mColumns;
+        mSheet = Bitmap.createBitmap(frameWidth * mColumns, frameHeight * rows, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * Render the frames of one period of a wave state, without any View or window.
+     * Safe to call from a background thread.
+     *
+     * @param state      What to draw, its wave shift is ignored.
+     * @param width      Frame width in pixels.
+     * @param height     Frame height in pixels.
+     * @param frameCount Frames per wave period, e.g. 24.
+     * @return WaveFrameCache
+     */
+    public static WaveFrameCache create(@NonNull WaveState state, int width, int height, int frameCount) {
+        WaveRenderer renderer = WaveRenderer.fromState(state);
+        renderer.setSize(width, height);
+        WaveFrameCache cache = new WaveFrameCache(width, height, frameCount);
+        cache.fill(renderer);
+        return cache;
+    }
+
+    boolean matches(int frameWidth, int frameHeight, int frameCount) {
+        return mFrameWidth == frameWidth && mFrameHeight == frameHeight && mFrameCount == frameCount
+                && !mSheet.isRecycled();
+    }
+
+    /**
+     * Render all frames with the renderer's current state, leaving its wave shift unchanged.
+     */
+    void fill(WaveRenderer renderer) {
+        float waveShiftRatio = renderer.getWaveShiftRatio();
+        mSheet.eraseColor(Color.TRANSPARENT);
+        Canvas canvas = new Canvas(mSheet);
+        for (int i = 0; i < mFrameCount; i++) {
+            canvas.save();
+            canvas.translate((i % mColumns) * mFrameWidth, (i / mColumns) * mFrameHeight);
+            canvas.clipRect(0, 0, mFrameWidth, mFrameHeight);
+            renderer.setWaveShiftRatio((float) i / mFrameCount);
+            renderer.drawFrame(canvas);
+            canvas.restore();
+        }
+        renderer.setWaveShiftRatio(waveShiftRatio);
+    }
+
+    /**
+     * @param waveShiftRatio Wave shift, in units of one wave length.
+     * @return Index of the frame closest to the shift.
+     */
+    public int getFrameIndex(float waveShiftRatio) {
+        int index = Math.round(waveShiftRatio * mFrameCount) % mFrameCount;
+        return index < 0 ? index + mFrameCount : index;
+    }
+
+    public int getFrameCount() {
+        return mFrameCount;
+    }
+
+    public int getFrameWidth() {
+        return mFrameWidth;
+    }
+
+    public int getFrameHeight() {
+        return mFrameHeight;
+    }
+
+    /**
+     * Draw one frame with its top left corner at x, y.
+     */
+    public void drawFrame(Canvas canvas, int index, int x, int y, Paint paint) {
+        mDst.set(x, y, x + mFrameWidth, y + mFrameHeight);
+        drawFrame(canvas, index, mDst, paint);
+    }
+
+    /**
+     * Draw one frame scaled into dst.
+     */
+    public void drawFrame(Canvas canvas, int index, Rect dst, Paint paint) {
+        int left = (index % mColumns) * mFrameWidth;
+        int top = (index / mColumns) * mFrameHeight;
+        mSrc.set(left, top, left + mFrameWidth, top + mFrameHeight);
+        canvas.drawBitmap(mSheet, mSrc, dst, paint);
+    }
+
+    /**
+     * @return A copy of one frame, e.g. for RemoteViews.setImageViewBitmap.
+     */
+    public Bitmap copyFrame(int index) {
+        return Bitmap.createBitmap(mSheet, (index % mColumns) * mFrameWidth,
+                (index / mColumns) * mFrameHeight, mFrameWidth, mFrameHeight);
+    }
+
+    /**
+     * @param periodMillis Duration of one wave period.
+     * @return A looping AnimationDrawable whose frames draw straight from the sheet.
+     */
+    public AnimationDrawable toAnimationDrawable(long periodMillis) {
+        AnimationDrawable animation = new AnimationDrawable();
+        int frameDuration = (int) Math.max(1, periodMillis / mFrameCount);
+        for (int i = 0; i < mFrameCount; i++) {
+            animation.addFrame(new FrameDrawable(this, i), frameDuration);
+        }
+        animation.setOneShot(false);
+        return animation;
+    }
+
+    /**
+     * Free the sheet now rather than waiting for the garbage collector.
+     */
+    public void recycle() {
+        mSheet.recycle();
+    }
+
+    private static final class FrameDrawable extends Drawable {
+        private final WaveFrameCache mCache;
+        private final int mIndex;
+        private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+        FrameDrawable(WaveFrameCache cache, int index) {
+            mCache = cache;
+            mIndex = index;
+        }
+
+        @Override
+        public void draw(@NonNull Canvas canvas) {
+            mCache.drawFrame(canvas, mIndex, getBounds(), mPaint);
+        }
+
+        @Override
+        public void setAlpha(int alpha) {
+            mPaint.setAlpha(alpha);
+        }
+
+        @Override
+        public void setColorFilter(ColorFilter colorFilter) {
+            mPaint.setColorFilter(colorFilter);
+        }
+
+        @Override
+        public int getOpacity() {
+            return PixelFormat.TRANSLUCENT;
+        }
+
+        @Override
+        public int getIntrinsicWidth() {
+            return mCache.mFrameWidth;
+        }
+
+        @Override
+        public int getIntrinsicHeight() {
+            return mCache.mFrameHeight;
+        }
+    }
+}
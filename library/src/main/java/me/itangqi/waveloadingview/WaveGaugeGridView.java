@@ -0,0 +1,450 @@
+package me.itangqi.waveloadingview;
+
+import android.animation.ValueAnimator;
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Shader;
+import android.util.AttributeSet;
+import android.util.SparseArray;
+import android.view.View;
+import android.view.animation.AnimationUtils;
+import android.view.animation.LinearInterpolator;
+
+import java.util.Arrays;
+
+import me.itangqi.library.R;
+import me.itangqi.waveloadingview.WaveLoadingView.ShapeType;
+
+/**
+ * Draws a grid of many small wave gauges, e.g. tank levels on a monitoring screen, in one view.
+ * <p>
+ * Compared to one {@link WaveLoadingView} per gauge there is a single view, a single animation
+ * clock and a single invalidation per frame. Gauges of the same color share one wave shader and
+ * differ only by the shader matrix. Per gauge state lives in primitive arrays indexed by gauge,
+ * and gauges scrolled out of sight are not drawn at all.
+ * <pre>
+ * grid.setGaugeCount(200);
+ * grid.setProgressValue(42, 75);
+ * grid.setWaveColor(42, Color.RED);
+ * </pre>
+ */
+public class WaveGaugeGridView extends View {
+    private static final float DEFAULT_AMPLITUDE_RATIO = WaveStyle.DEFAULT_AMPLITUDE_RATIO;
+    private static final float DEFAULT_WATER_LEVEL_RATIO = 0.5f;
+    private static final long DEFAULT_ANIM_DURATION = 1000;
+    private static final long LEVEL_ANIM_DURATION = 1000;
+    private static final int DEFAULT_COLUMN_COUNT = 10;
+    // Spreads the default phases so that neighbouring gauges do not move in lockstep.
+    private static final float PHASE_STEP = 0.618034f;
+
+    // Per gauge state, index i describes gauge i.
+    private int mGaugeCount;
+    private int[] mProgressValues = new int[0];
+    private int[] mWaveColors = new int[0];
+    private float[] mPhases = new float[0];
+    // Water level animation of each gauge, mLevelStartTimes[i] < 0 when it is not animating.
+    private float[] mLevelFrom = new float[0];
+    private float[] mLevelTo = new float[0];
+    private long[] mLevelStartTimes = new long[0];
+
+    // Layout.
+    private int mColumnCount;
+    private int mSpacing;
+    private int mCellSize;
+    private int mShapeType;
+    private float mAmplitudeRatio;
+    private int mDefaultWaveColor;
+    private final Rect mVisibleRect = new Rect();
+
+    // One shader per wave color, all of them mCellSize square.
+    private final SparseArray<BitmapShader> mShaders = new SparseArray<>();
+    private final Matrix mShaderMatrix = new Matrix();
+    private final Paint mWavePaint;
+    private final Paint mWaveBgPaint;
+
+    // The single animation clock of all gauges.
+    private ValueAnimator mClock;
+    private long mAnimDuration = DEFAULT_ANIM_DURATION;
+    private boolean mIsAttached;
+
+    public WaveGaugeGridView(Context context) {
+        this(context, null);
+    }
+
+    public WaveGaugeGridView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public WaveGaugeGridView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        // Load the styled attributes and set their properties
+        TypedArray attributes = context.obtainStyledAttributes(attrs, R.styleable.WaveGaugeGridView, defStyleAttr, 0);
+
+        // Init Grid
+        mColumnCount = Math.max(1, attributes.getInteger(R.styleable.WaveGaugeGridView_wgv_columnCount, DEFAULT_COLUMN_COUNT));
+        mSpacing = attributes.getDimensionPixelSize(R.styleable.WaveGaugeGridView_wgv_spacing, 0);
+        mShapeType = checkShapeType(attributes.getInteger(R.styleable.WaveGaugeGridView_wgv_shapeType, ShapeType.CIRCLE.ordinal()));
+
+        // Init Wave
+        mWavePaint = new Paint();
+        mWavePaint.setAntiAlias(true);
+        mDefaultWaveColor = attributes.getColor(R.styleable.WaveGaugeGridView_wgv_waveColor, WaveStyle.DEFAULT_WAVE_COLOR);
+        mWaveBgPaint = new Paint();
+        mWaveBgPaint.setAntiAlias(true);
+        mWaveBgPaint.setStyle(Paint.Style.FILL);
+        mWaveBgPaint.setColor(attributes.getColor(R.styleable.WaveGaugeGridView_wgv_wave_background_Color, WaveStyle.DEFAULT_WAVE_BACKGROUND_COLOR));
+
+        // Init AmplitudeRatio
+        float amplitudeRatioAttr = attributes.getFloat(R.styleable.WaveGaugeGridView_wgv_waveAmplitude, WaveStyle.DEFAULT_AMPLITUDE_VALUE) / 1000;
+        mAmplitudeRatio = (amplitudeRatioAttr > DEFAULT_AMPLITUDE_RATIO) ? DEFAULT_AMPLITUDE_RATIO : amplitudeRatioAttr;
+
+        // Init Gauges
+        setGaugeCount(attributes.getInteger(R.styleable.WaveGaugeGridView_wgv_gaugeCount, 0));
+
+        attributes.recycle();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        int cellSize = computeCellSize(width);
+        int rows = (mGaugeCount + mColumnCount - 1) / mColumnCount;
+        int height = getPaddingTop() + getPaddingBottom();
+        if (rows > 0) {
+            height += rows * cellSize + (rows - 1) * mSpacing;
+        }
+        setMeasuredDimension(width, resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        updateCellSize(w);
+    }
+
+    /**
+     * Recompute the cell size for the width, the shaders are redrawn at the new size.
+     */
+    private void updateCellSize(int width) {
+        int cellSize = computeCellSize(width);
+        if (cellSize != mCellSize) {
+            mCellSize = cellSize;
+            clearShaders();
+        }
+    }
+
+    private int computeCellSize(int width) {
+        int available = width - getPaddingLeft() - getPaddingRight() - (mColumnCount - 1) * mSpacing;
+        return Math.max(0, available / mColumnCount);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (mCellSize <= 0 || mGaugeCount == 0 || !getLocalVisibleRect(mVisibleRect)) {
+            return;
+        }
+        final int cell = mCellSize;
+        final int pitch = cell + mSpacing;
+        final long now = AnimationUtils.currentAnimationTimeMillis();
+        final float shift = mClock != null ? mClock.getAnimatedFraction() : 0f;
+        final float amplitudeScale = mAmplitudeRatio / DEFAULT_AMPLITUDE_RATIO;
+        final boolean circle = mShapeType == ShapeType.CIRCLE.ordinal();
+
+        // Only rows that intersect the visible part of the view.
+        int firstRow = Math.max(0, (mVisibleRect.top - getPaddingTop()) / pitch);
+        int lastRow = (mVisibleRect.bottom - getPaddingTop()) / pitch;
+        int first = firstRow * mColumnCount;
+        int last = Math.min(mGaugeCount, (lastRow + 1) * mColumnCount);
+
+        for (int i = first; i < last; i++) {
+            float left = getPaddingLeft() + (i % mColumnCount) * pitch;
+            float top = getPaddingTop() + (i / mColumnCount) * pitch;
+
+            // Scale for the amplitude and translate for the phase and the water level.
+            BitmapShader shader = getShader(mWaveColors[i]);
+            float phase = shift + mPhases[i];
+            mShaderMatrix.setScale(1, amplitudeScale, 0, cell * DEFAULT_WATER_LEVEL_RATIO);
+            mShaderMatrix.postTranslate(left + (phase - (int) phase) * cell,
+                    top + (DEFAULT_WATER_LEVEL_RATIO - getWaterLevelRatio(i, now)) * cell);
+            shader.setLocalMatrix(mShaderMatrix);
+            mWavePaint.setShader(shader);
+
+            if (circle) {
+                float radius = cell / 2f;
+                canvas.drawCircle(left + radius, top + radius, radius, mWaveBgPaint);
+                canvas.drawCircle(left + radius, top + radius, radius, mWavePaint);
+            } else {
+                canvas.drawRect(left, top, left + cell, top + cell, mWaveBgPaint);
+                canvas.drawRect(left, top, left + cell, top + cell, mWavePaint);
+            }
+        }
+    }
+
+    private float getWaterLevelRatio(int index, long now) {
+        long startTime = mLevelStartTimes[index];
+        if (startTime < 0) {
+            return mLevelTo[index];
+        }
+        float input = (float) (now - startTime) / LEVEL_ANIM_DURATION;
+        if (input >= 1f) {
+            mLevelStartTimes[index] = -1;
+            return mLevelTo[index];
+        }
+        // Same curve as DecelerateInterpolator.
+        float fraction = 1f - (1f - input) * (1f - input);
+        return mLevelFrom[index] + (mLevelTo[index] - mLevelFrom[index]) * fraction;
+    }
+
+    private BitmapShader getShader(int waveColor) {
+        BitmapShader shader = mShaders.get(waveColor);
+        if (shader == null) {
+            Bitmap bitmap = BitmapShaderBackend.drawWaveBitmap(mCellSize, mCellSize, waveColor,
+                    WaveRenderer.WAVE_LOADING_LAYERS);
+            shader = new BitmapShader(bitmap, Shader.TileMode.REPEAT, Shader.TileMode.CLAMP);
+            mShaders.put(waveColor, shader);
+        }
+        return shader;
+    }
+
+    private void clearShaders() {
+        // Not recycled, the last display list may still draw the bitmaps.
+        mShaders.clear();
+        mWavePaint.setShader(null);
+    }
+
+    /**
+     * Set the number of gauges. Existing gauges keep their state, new ones start at the default
+     * progress and color.
+     *
+     * @param count Number of gauges.
+     */
+    public void setGaugeCount(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count must be >= 0");
+        }
+        int oldCount = mGaugeCount;
+        if (count > mProgressValues.length) {
+            mProgressValues = Arrays.copyOf(mProgressValues, count);
+            mWaveColors = Arrays.copyOf(mWaveColors, count);
+            mPhases = Arrays.copyOf(mPhases, count);
+            mLevelFrom = Arrays.copyOf(mLevelFrom, count);
+            mLevelTo = Arrays.copyOf(mLevelTo, count);
+            mLevelStartTimes = Arrays.copyOf(mLevelStartTimes, count);
+        }
+        for (int i = oldCount; i < count; i++) {
+            mProgressValues[i] = WaveStyle.DEFAULT_WAVE_PROGRESS_VALUE;
+            mWaveColors[i] = mDefaultWaveColor;
+            float phase = i * PHASE_STEP;
+            mPhases[i] = phase - (int) phase;
+            mLevelTo[i] = (float) WaveStyle.DEFAULT_WAVE_PROGRESS_VALUE / 100;
+            mLevelStartTimes[i] = -1;
+        }
+        mGaugeCount = count;
+        requestLayout();
+        invalidate();
+    }
+
+    public int getGaugeCount() {
+        return mGaugeCount;
+    }
+
+    /**
+     * Water level of one gauge increases from its current level to the value.
+     *
+     * @param index    Gauge index.
+     * @param progress 0 to 100.
+     */
+    public void setProgressValue(int index, int progress) {
+        setProgressValueInternal(index, progress, AnimationUtils.currentAnimationTimeMillis());
+        invalidate();
+    }
+
+    /**
+     * Update the progress of the first progress.length gauges with a single invalidation.
+     *
+     * @param progress Progress values, 0 to 100, indexed by gauge.
+     */
+    public void setProgressValues(int[] progress) {
+        long now = AnimationUtils.currentAnimationTimeMillis();
+        int count = Math.min(progress.length, mGaugeCount);
+        for (int i = 0; i < count; i++) {
+            setProgressValueInternal(i, progress[i], now);
+        }
+        invalidate();
+    }
+
+    private void setProgressValueInternal(int index, int progress, long now) {
+        checkIndex(index);
+        if (mProgressValues[index] == progress) {
+            return;
+        }
+        mProgressValues[index] = progress;
+        float waterLevelRatio = (float) progress / 100;
+        if (mIsAttached) {
+            mLevelFrom[index] = getWaterLevelRatio(index, now);
+            mLevelStartTimes[index] = now;
+        } else {
+            // Nobody can watch the water rise yet, so apply the level directly.
+            mLevelStartTimes[index] = -1;
+        }
+        mLevelTo[index] = waterLevelRatio;
+    }
+
+    public int getProgressValue(int index) {
+        checkIndex(index);
+        return mProgressValues[index];
+    }
+
+    /**
+     * Gauges with the same wave color share one shader, keep the number of distinct colors small.
+     *
+     * @param index Gauge index.
+     * @param color Wave color.
+     */
+    public void setWaveColor(int index, int color) {
+        checkIndex(index);
+        mWaveColors[index] = color;
+        invalidate();
+    }
+
+    public int getWaveColor(int index) {
+        checkIndex(index);
+        return mWaveColors[index];
+    }
+
+    /**
+     * Horizontal offset of one gauge's wave relative to the shared clock.
+     *
+     * @param index Gauge index.
+     * @param phase 0.0f to 1.0f, one full period.
+     */
+    public void setPhase(int index, float phase) {
+        checkIndex(index);
+        mPhases[index] = phase - (float) Math.floor(phase);
+        invalidate();
+    }
+
+    public void setColumnCount(int columnCount) {
+        if (columnCount < 1) {
+            throw new IllegalArgumentException("columnCount must be >= 1");
+        }
+        mColumnCount = columnCount;
+        updateCellSize(getWidth());
+        requestLayout();
+        invalidate();
+    }
+
+    public int getColumnCount() {
+        return mColumnCount;
+    }
+
+    /**
+     * @param spacing Space between gauges in pixels.
+     */
+    public void setSpacing(int spacing) {
+        mSpacing = spacing;
+        updateCellSize(getWidth());
+        requestLayout();
+        invalidate();
+    }
+
+    public int getSpacing() {
+        return mSpacing;
+    }
+
+    /**
+     * @param shapeType Only {@link ShapeType#CIRCLE} and {@link ShapeType#SQUARE} are supported.
+     */
+    public void setShapeType(ShapeType shapeType) {
+        mShapeType = checkShapeType(shapeType.ordinal());
+        invalidate();
+    }
+
+    public void setWaveBgColor(int color) {
+        mWaveBgPaint.setColor(color);
+        invalidate();
+    }
+
+    public int getWaveBgColor() {
+        return mWaveBgPaint.getColor();
+    }
+
+    /**
+     * @param amplitudeRatio Same scale as {@link WaveLoadingView#setAmplitudeRatio(int)}.
+     */
+    public void setAmplitudeRatio(int amplitudeRatio) {
+        float ratio = (float) amplitudeRatio / 1000;
+        mAmplitudeRatio = (ratio > DEFAULT_AMPLITUDE_RATIO) ? DEFAULT_AMPLITUDE_RATIO : ratio;
+        invalidate();
+    }
+
+    /**
+     * Sets the length of one wave period of all gauges. The default duration is 1000 milliseconds.
+     *
+     * @param duration The length of the animation, in milliseconds.
+     */
+    public void setAnimDuration(long duration) {
+        mAnimDuration = duration;
+        if (mClock != null) {
+            mClock.setDuration(duration);
+        }
+    }
+
+    public void startAnimation() {
+        if (mClock == null) {
+            // Wave waves infinitely.
+            mClock = ValueAnimator.ofFloat(0f, 1f);
+            mClock.setRepeatCount(ValueAnimator.INFINITE);
+            mClock.setDuration(mAnimDuration);
+            mClock.setInterpolator(new LinearInterpolator());
+            mClock.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+                @Override
+                public void onAnimationUpdate(ValueAnimator animation) {
+                    invalidate();
+                }
+            });
+        }
+        mClock.start();
+    }
+
+    public void cancelAnimation() {
+        if (mClock != null) {
+            mClock.cancel();
+        }
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        mIsAttached = true;
+        startAnimation();
+        super.onAttachedToWindow();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        mIsAttached = false;
+        cancelAnimation();
+        // Jump to the target levels rather than freezing halfway.
+        Arrays.fill(mLevelStartTimes, -1);
+        super.onDetachedFromWindow();
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= mGaugeCount) {
+            throw new IndexOutOfBoundsException("index " + index + ", gauge count " + mGaugeCount);
+        }
+    }
+
+    private static int checkShapeType(int shapeType) {
+        if (shapeType != ShapeType.CIRCLE.ordinal() && shapeType != ShapeType.SQUARE.ordinal()) {
+            throw new IllegalArgumentException("Only CIRCLE and SQUARE gauges are supported");
+        }
+        return shapeType;
+    }
+}
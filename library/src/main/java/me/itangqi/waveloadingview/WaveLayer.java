@@ -0,0 +1,107 @@
+package me.itangqi.waveloadingview;
+
+/**
+ * One wave of a layered water surface, see {@link WaveLoadingView#setWaveLayers(java.util.List)}.
+ * Sizes and speed are relative to the view's own wave, so layers follow
+ * {@link WaveLoadingView#setAmplitudeRatio(int)}, {@link WaveLoadingView#setWaveLengthRatio(float)}
+ * and {@link WaveLoadingView#setAnimDuration(long)}.
+ * <pre>
+ * List&lt;WaveLayer&gt; layers = Arrays.asList(
+ *         new WaveLayer.Builder(0x4028B5F5).setWaveLengthScale(1.5f).setSpeed(0.5f).build(),
+ *         new WaveLayer.Builder(0xFF28B5F5).setPhase(0.25f).build());
+ * waveLoadingView.setWaveLayers(layers);
+ * </pre>
+ */
+public final class WaveLayer {
+    final int color;
+    final float amplitudeScale;
+    final float waveLengthScale;
+    final float phase;
+    final float speed;
+
+    private WaveLayer(Builder builder) {
+        color = builder.color;
+        amplitudeScale = builder.amplitudeScale;
+        waveLengthScale = builder.waveLengthScale;
+        phase = builder.phase;
+        speed = builder.speed;
+    }
+
+    public int getColor() {
+        return color;
+    }
+
+    public float getAmplitudeScale() {
+        return amplitudeScale;
+    }
+
+    public float getWaveLengthScale() {
+        return waveLengthScale;
+    }
+
+    public float getPhase() {
+        return phase;
+    }
+
+    public float getSpeed() {
+        return speed;
+    }
+
+    public static final class Builder {
+        private final int color;
+        private float amplitudeScale = 1f;
+        private float waveLengthScale = 1f;
+        private float phase;
+        private float speed = 1f;
+
+        /**
+         * @param color Color of the layer, its alpha makes the layers below shine through.
+         */
+        public Builder(int color) {
+            this.color = color;
+        }
+
+        /**
+         * @param amplitudeScale Amplitude relative to the view's amplitude. Default to be 1.
+         */
+        public Builder setAmplitudeScale(float amplitudeScale) {
+            if (amplitudeScale < 0) {
+                throw new IllegalArgumentException("amplitudeScale must be >= 0");
+            }
+            this.amplitudeScale = amplitudeScale;
+            return this;
+        }
+
+        /**
+         * @param waveLengthScale Wave length relative to the view's wave length. Default to be 1.
+         */
+        public Builder setWaveLengthScale(float waveLengthScale) {
+            if (waveLengthScale <= 0) {
+                throw new IllegalArgumentException("waveLengthScale must be > 0");
+            }
+            this.waveLengthScale = waveLengthScale;
+            return this;
+        }
+
+        /**
+         * @param phase Horizontal offset in wave lengths of this layer. Default to be 0.
+         */
+        public Builder setPhase(float phase) {
+            this.phase = phase;
+            return this;
+        }
+
+        /**
+         * @param speed Wave lengths of this layer per wave animation cycle, negative to move the
+         *              other way and 0 to stand still. Default to be 1.
+         */
+        public Builder setSpeed(float speed) {
+            this.speed = speed;
+            return this;
+        }
+
+        public WaveLayer build() {
+            return new WaveLayer(this);
+        }
+    }
+}
@@ -5,25 +5,24 @@ import android.animation.ObjectAnimator;
 import android.animation.ValueAnimator;
 import android.annotation.TargetApi;
 import android.content.Context;
-import android.content.res.TypedArray;
 import android.graphics.Bitmap;
-import android.graphics.BitmapShader;
+import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Matrix;
-import android.graphics.Paint;
+import android.graphics.Outline;
 import android.graphics.Path;
-import android.graphics.Point;
-import android.graphics.RectF;
-import android.graphics.Shader;
+import android.graphics.drawable.Drawable;
 import android.os.Build;
-import android.text.TextUtils;
+import android.support.annotation.NonNull;
+import android.support.v7.content.res.AppCompatResources;
 import android.util.AttributeSet;
 import android.view.View;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+import android.view.ViewOutlineProvider;
 import android.view.animation.DecelerateInterpolator;
 import android.view.animation.LinearInterpolator;
 
-import me.itangqi.library.R;
+import java.util.List;
 
 public class WaveLoadingView extends View {
     /**
@@ -41,31 +40,17 @@ public class WaveLoadingView extends View {
      * |                        |  |
      * +------------------------+__|_______
      */
-    private static final float DEFAULT_AMPLITUDE_RATIO = 0.1f;
-    private static final float DEFAULT_AMPLITUDE_VALUE = 50.0f;
-    private static final float DEFAULT_WATER_LEVEL_RATIO = 0.5f;
-    private static final float DEFAULT_WAVE_LENGTH_RATIO = 1.0f;
-    private static final float DEFAULT_WAVE_SHIFT_RATIO = 0.0f;
-    private static final int DEFAULT_WAVE_PROGRESS_VALUE = 50;
-    private static final int DEFAULT_WAVE_COLOR = Color.parseColor("#212121");
-    private static final int DEFAULT_WAVE_BACKGROUND_COLOR = Color.parseColor("#00000000");
-    private static final int DEFAULT_TITLE_COLOR = Color.parseColor("#212121");
-    private static final int DEFAULT_STROKE_COLOR = Color.TRANSPARENT;
-    private static final float DEFAULT_BORDER_WIDTH = 0;
-    private static final float DEFAULT_TITLE_STROKE_WIDTH = 0;
-    // This is incorrect/not recommended by Joshua Bloch in his book Effective Java (2nd ed).
-    private static final int DEFAULT_WAVE_SHAPE = ShapeType.CIRCLE.ordinal();
-    private static final int DEFAULT_TRIANGLE_DIRECTION = TriangleDirection.NORTH.ordinal();
-    private static final int DEFAULT_ROUND_RECTANGLE_X_AND_Y = 30;
-    private static final float DEFAULT_TITLE_TOP_SIZE = 18.0f;
-    private static final float DEFAULT_TITLE_CENTER_SIZE = 22.0f;
-    private static final float DEFAULT_TITLE_BOTTOM_SIZE = 18.0f;
+    private static final long DEFAULT_ANIM_DURATION = 1000;
+    private static final int SMALL_FRAME_RATE = 30;
+    private static final int TINY_FRAME_RATE = 20;
 
     public enum ShapeType {
         TRIANGLE,
         CIRCLE,
         SQUARE,
-        RECTANGLE
+        RECTANGLE,
+        // Set with setShapePath or setShapeDrawable.
+        CUSTOM
     }
 
     public enum TriangleDirection {
@@ -75,57 +60,95 @@ public class WaveLoadingView extends View {
         WEST
     }
 
+    public enum GradientOrientation {
+        VERTICAL,
+        HORIZONTAL
+    }
+
+    /**
+     * Built-in percentage center title, drawn without allocating per update.
+     */
+    public enum PercentTitle {
+        // Use the center title text.
+        NONE,
+        // The value passed to setProgressValue.
+        PROGRESS,
+        // The animated water level, follows the wave while it rises.
+        WATER_LEVEL
+    }
+
+    /**
+     * Detail chosen from the size of the view, see {@link #setDetailThresholds(int, int)}.
+     */
+    public enum DetailLevel {
+        // Everything.
+        FULL,
+        // A single wave layer, titles without stroke, 30 frames per second.
+        SMALL,
+        // Also no anti-aliasing, a half resolution shader, 20 frames per second.
+        TINY
+    }
+
     // Dynamic Properties.
     private int mCanvasSize;
     private int mCanvasHeight;
     private int mCanvasWidth;
-    private float mAmplitudeRatio;
-    private int mWaveBgColor;
-    private int mWaveColor;
-    private int mShapeType;
-    private int mTriangleDirection;
-    private int mRoundRectangleXY;
-
-    // Properties.
-    private String mTopTitle;
-    private String mCenterTitle;
-    private String mBottomTitle;
-    private float mDefaultWaterLevel;
-    private float mWaterLevelRatio = 1f;
-    private float mWaveShiftRatio = DEFAULT_WAVE_SHIFT_RATIO;
-    private int mProgressValue = DEFAULT_WAVE_PROGRESS_VALUE;
-    private boolean mIsRoundRectangle;
-
-    // Object used to draw.
-    // Shader containing repeated waves.
-    private BitmapShader mWaveShader;
-    private Bitmap bitmapBuffer;
-    // Shader matrix.
-    private Matrix mShaderMatrix;
-    // Paint to draw wave.
-    private Paint mWavePaint;
-    //Paint to draw waveBackground.
-    private Paint mWaveBgPaint;
-    // Paint to draw border.
-    private Paint mBorderPaint;
-    // Point to draw title.
-    private Paint mTopTitlePaint;
-    private Paint mBottomTitlePaint;
-    private Paint mCenterTitlePaint;
-
-    private Paint mTopTitleStrokePaint;
-    private Paint mBottomTitleStrokePaint;
-    private Paint mCenterTitleStrokePaint;
-
-    // Animation.
+    // Clip circles and rectangles with the view outline on API 21+, see setOutlineClipEnabled.
+    private boolean mOutlineClipEnabled;
+    // The outline provider is installed, it only clips hardware accelerated drawing.
+    private boolean mOutlineClipActive;
+
+    // Shader, shapes and titles, shared with WaveDrawable.
+    private WaveRenderer mRenderer;
+
+    // Animation, created on first attach.
     private ObjectAnimator waveShiftAnim;
     private AnimatorSet mAnimatorSet;
+    private ObjectAnimator mWaterLevelAnim;
+    private long mAnimDuration = DEFAULT_ANIM_DURATION;
+    private boolean mIsAttached;
+
+    // Sizes in pixels below which detail is dropped, see setDetailThresholds.
+    private int mDetailSmallSize;
+    private int mDetailTinySize;
+    // Pixels the wave has to move before a redraw.
+    private float mRedrawThreshold;
+    private long mLastWaveFrameNanos;
+
+    // Lowers the quality while frames overrun, see setQualityPolicy.
+    private WaveQualityGovernor mQualityGovernor;
+
+    // Reports the progress as a ProgressBar would.
+    private final WaveAccessibility mAccessibility = new WaveAccessibility(this);
+
+    // Follows WaveTiltFeed while enabled, attached and visible.
+    private boolean mTiltEnabled;
+    private boolean mTiltRegistered;
+    private final WaveTiltFeed.Listener mTiltListener = new WaveTiltFeed.Listener() {
+        @Override
+        public void onTiltChanged(float degrees) {
+            mRenderer.setTilt(degrees);
+            requestInvalidate();
+        }
+    };
+
+    private final WaveQualityGovernor.Callback mQualityCallback = new WaveQualityGovernor.Callback() {
+        @Override
+        public void onLevelChanged(int level) {
+            applyQualityLevel(level);
+        }
+    };
+
+    // Batched updates, see edit().
+    private int mBatchDepth;
+    private boolean mPendingShaderUpdate;
+    private boolean mPendingInvalidate;
 
     private Context mContext;
 
     // Constructor & Init Method.
     public WaveLoadingView(final Context context) {
-        this(context, null);
+        this(context, (AttributeSet) null);
     }
 
     public WaveLoadingView(Context context, AttributeSet attrs) {
@@ -134,239 +157,82 @@ public class WaveLoadingView extends View {
 
     public WaveLoadingView(Context context, AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
-        init(context, attrs, defStyleAttr);
+        init(context, WaveStyle.fromAttributes(context, attrs, defStyleAttr, 0));
     }
 
-    private void init(Context context, AttributeSet attrs, int defStyleAttr) {
+    /**
+     * Create a view from an already resolved style, skipping attribute parsing entirely.
+     * Prefer this when many identically styled views are created, e.g. in list adapters.
+     *
+     * @param style Shared style, see {@link WaveStyle}.
+     */
+    public WaveLoadingView(Context context, WaveStyle style) {
+        super(context);
+        init(context, style);
+    }
+
+    private void init(Context context, WaveStyle style) {
         mContext = context;
-        // Init Wave.
-        mShaderMatrix = new Matrix();
-        mWavePaint = new Paint();
-        // The ANTI_ALIAS_FLAG bit AntiAliasing smooths out the edges of what is being drawn,
-        // but is has no impact on the interior of the shape.
-        mWavePaint.setAntiAlias(true);
-        mWaveBgPaint = new Paint();
-        mWaveBgPaint.setAntiAlias(true);
-        // Init Animation
-        initAnimation();
+        // Init Wave, shape and titles.
+        mRenderer = new WaveRenderer(style);
+
+        // Init Progress
+        setProgressValue(style.progressValue);
+
+        // Init Custom shape
+        if (style.shapeDrawableRes != 0) {
+            setShapeDrawable(AppCompatResources.getDrawable(context, style.shapeDrawableRes));
+        }
 
-        // Load the styled attributes and set their properties
-        TypedArray attributes = context.obtainStyledAttributes(attrs, R.styleable.WaveLoadingView, defStyleAttr, 0);
+        // Init Fill
+        if (style.waveTextureRes != 0) {
+            setWaveTexture(BitmapFactory.decodeResource(getResources(), style.waveTextureRes));
+        }
 
-        // Init ShapeType
-        mShapeType = attributes.getInteger(R.styleable.WaveLoadingView_wlv_shapeType, DEFAULT_WAVE_SHAPE);
+        // Init Outline clip
+        setOutlineClipEnabled(style.outlineClip);
 
-        // Init Wave
-        mWaveColor = attributes.getColor(R.styleable.WaveLoadingView_wlv_waveColor, DEFAULT_WAVE_COLOR);
-        mWaveBgColor = attributes.getColor(R.styleable.WaveLoadingView_wlv_wave_background_Color, DEFAULT_WAVE_BACKGROUND_COLOR);
+        // Init Level of detail
+        mDetailSmallSize = style.detailSmallSize;
+        mDetailTinySize = style.detailTinySize;
 
-        mWaveBgPaint.setColor(mWaveBgColor);
+        // Init Redraw threshold
+        mRedrawThreshold = style.redrawThreshold;
 
-        // Init AmplitudeRatio
-        float amplitudeRatioAttr = attributes.getFloat(R.styleable.WaveLoadingView_wlv_waveAmplitude, DEFAULT_AMPLITUDE_VALUE) / 1000;
-        mAmplitudeRatio = (amplitudeRatioAttr > DEFAULT_AMPLITUDE_RATIO) ? DEFAULT_AMPLITUDE_RATIO : amplitudeRatioAttr;
+        // Init Adaptive quality
+        if (style.adaptiveQuality) {
+            setQualityPolicy(WaveQualityGovernor.Policy.DEFAULT);
+        }
 
-        // Init Progress
-        mProgressValue = attributes.getInteger(R.styleable.WaveLoadingView_wlv_progressValue, DEFAULT_WAVE_PROGRESS_VALUE);
-        setProgressValue(mProgressValue);
-
-        // Init RoundRectangle
-        mIsRoundRectangle = attributes.getBoolean(R.styleable.WaveLoadingView_wlv_round_rectangle, false);
-        mRoundRectangleXY = attributes.getInteger(R.styleable.WaveLoadingView_wlv_round_rectangle_x_and_y, DEFAULT_ROUND_RECTANGLE_X_AND_Y);
-
-        // Init Triangle direction
-        mTriangleDirection = attributes.getInteger(R.styleable.WaveLoadingView_wlv_triangle_direction, DEFAULT_TRIANGLE_DIRECTION);
-
-        // Init Border
-        mBorderPaint = new Paint();
-        mBorderPaint.setAntiAlias(true);
-        mBorderPaint.setStyle(Paint.Style.STROKE);
-        mBorderPaint.setStrokeWidth(attributes.getDimension(R.styleable.WaveLoadingView_wlv_borderWidth, dp2px(DEFAULT_BORDER_WIDTH)));
-        mBorderPaint.setColor(attributes.getColor(R.styleable.WaveLoadingView_wlv_borderColor, DEFAULT_WAVE_COLOR));
-
-        // Init Top Title
-        mTopTitlePaint = new Paint();
-        mTopTitlePaint.setColor(attributes.getColor(R.styleable.WaveLoadingView_wlv_titleTopColor, DEFAULT_TITLE_COLOR));
-        mTopTitlePaint.setStyle(Paint.Style.FILL);
-        mTopTitlePaint.setAntiAlias(true);
-        mTopTitlePaint.setTextSize(attributes.getDimension(R.styleable.WaveLoadingView_wlv_titleTopSize, sp2px(DEFAULT_TITLE_TOP_SIZE)));
-
-        mTopTitleStrokePaint = new Paint();
-        mTopTitleStrokePaint.setColor(attributes.getColor(R.styleable.WaveLoadingView_wlv_titleTopStrokeColor, DEFAULT_STROKE_COLOR));
-        mTopTitleStrokePaint.setStrokeWidth(attributes.getDimension(R.styleable.WaveLoadingView_wlv_titleTopStrokeWidth, dp2px(DEFAULT_TITLE_STROKE_WIDTH)));
-        mTopTitleStrokePaint.setStyle(Paint.Style.STROKE);
-        mTopTitleStrokePaint.setAntiAlias(true);
-        mTopTitleStrokePaint.setTextSize(mTopTitlePaint.getTextSize());
-
-        mTopTitle = attributes.getString(R.styleable.WaveLoadingView_wlv_titleTop);
-
-        // Init Center Title
-        mCenterTitlePaint = new Paint();
-        mCenterTitlePaint.setColor(attributes.getColor(R.styleable.WaveLoadingView_wlv_titleCenterColor, DEFAULT_TITLE_COLOR));
-        mCenterTitlePaint.setStyle(Paint.Style.FILL);
-        mCenterTitlePaint.setAntiAlias(true);
-        mCenterTitlePaint.setTextSize(attributes.getDimension(R.styleable.WaveLoadingView_wlv_titleCenterSize, sp2px(DEFAULT_TITLE_CENTER_SIZE)));
-
-        mCenterTitleStrokePaint = new Paint();
-        mCenterTitleStrokePaint.setColor(attributes.getColor(R.styleable.WaveLoadingView_wlv_titleCenterStrokeColor, DEFAULT_STROKE_COLOR));
-        mCenterTitleStrokePaint.setStrokeWidth(attributes.getDimension(R.styleable.WaveLoadingView_wlv_titleCenterStrokeWidth, dp2px(DEFAULT_TITLE_STROKE_WIDTH)));
-        mCenterTitleStrokePaint.setStyle(Paint.Style.STROKE);
-        mCenterTitleStrokePaint.setAntiAlias(true);
-        mCenterTitleStrokePaint.setTextSize(mCenterTitlePaint.getTextSize());
-
-        mCenterTitle = attributes.getString(R.styleable.WaveLoadingView_wlv_titleCenter);
-
-        // Init Bottom Title
-        mBottomTitlePaint = new Paint();
-        mBottomTitlePaint.setColor(attributes.getColor(R.styleable.WaveLoadingView_wlv_titleBottomColor, DEFAULT_TITLE_COLOR));
-        mBottomTitlePaint.setStyle(Paint.Style.FILL);
-        mBottomTitlePaint.setAntiAlias(true);
-        mBottomTitlePaint.setTextSize(attributes.getDimension(R.styleable.WaveLoadingView_wlv_titleBottomSize, sp2px(DEFAULT_TITLE_BOTTOM_SIZE)));
-
-        mBottomTitleStrokePaint = new Paint();
-        mBottomTitleStrokePaint.setColor(attributes.getColor(R.styleable.WaveLoadingView_wlv_titleBottomStrokeColor, DEFAULT_STROKE_COLOR));
-        mBottomTitleStrokePaint.setStrokeWidth(attributes.getDimension(R.styleable.WaveLoadingView_wlv_titleBottomStrokeWidth, dp2px(DEFAULT_TITLE_STROKE_WIDTH)));
-        mBottomTitleStrokePaint.setStyle(Paint.Style.STROKE);
-        mBottomTitleStrokePaint.setAntiAlias(true);
-        mBottomTitleStrokePaint.setTextSize(mBottomTitlePaint.getTextSize());
-
-        mBottomTitle = attributes.getString(R.styleable.WaveLoadingView_wlv_titleBottom);
-
-        attributes.recycle();
+        // Init Tilt
+        setTiltEnabled(style.tiltEnabled);
     }
 
     @Override
     public void onDraw(Canvas canvas) {
-        mCanvasSize = canvas.getWidth();
-        if (canvas.getHeight() < mCanvasSize) {
-            mCanvasSize = canvas.getHeight();
-        }
-        // Draw Wave.
-        // Modify paint shader according to mShowWave state.
-        if (mWaveShader != null) {
-            // First call after mShowWave, assign it to our paint.
-            if (mWavePaint.getShader() == null) {
-                mWavePaint.setShader(mWaveShader);
+        boolean traced = WaveTrace.beginSection(WaveTrace.DRAW);
+        try {
+            // Software canvases, e.g. View.draw(bitmapCanvas), ignore clipToOutline.
+            mRenderer.setHostClipped(mOutlineClipActive && canvas.isHardwareAccelerated());
+            if (mQualityGovernor == null) {
+                mRenderer.draw(canvas);
+                return;
             }
-
-            // Sacle shader according to waveLengthRatio and amplitudeRatio.
-            // This decides the size(waveLengthRatio for width, amplitudeRatio for height) of waves.
-            mShaderMatrix.setScale(1, mAmplitudeRatio / DEFAULT_AMPLITUDE_RATIO, 0, mDefaultWaterLevel);
-            // Translate shader according to waveShiftRatio and waterLevelRatio.
-            // This decides the start position(waveShiftRatio for x, waterLevelRatio for y) of waves.
-            mShaderMatrix.postTranslate(mWaveShiftRatio * getWidth(),
-                    (DEFAULT_WATER_LEVEL_RATIO - mWaterLevelRatio) * getHeight());
-
-            // Assign matrix to invalidate the shader.
-            mWaveShader.setLocalMatrix(mShaderMatrix);
-
-            // Get borderWidth.
-            float borderWidth = mBorderPaint.getStrokeWidth();
-
-            // The default type is triangle.
-            switch (mShapeType) {
-                // Draw triangle
-                case 0:
-                    // Currently does not support the border settings
-                    Point start = new Point(0, getHeight());
-                    Path triangle = getEquilateralTriangle(start, getWidth(), getHeight(), mTriangleDirection);
-                    canvas.drawPath(triangle, mWaveBgPaint);
-                    canvas.drawPath(triangle, mWavePaint);
-                    break;
-                // Draw circle
-                case 1:
-                    if (borderWidth > 0) {
-                        canvas.drawCircle(getWidth() / 2f, getHeight() / 2f,
-                                (getWidth() - borderWidth) / 2f - 1f, mBorderPaint);
-                    }
-
-                    float radius = getWidth() / 2f - borderWidth;
-                    // Draw background
-                    canvas.drawCircle(getWidth() / 2f, getHeight() / 2f, radius, mWaveBgPaint);
-                    canvas.drawCircle(getWidth() / 2f, getHeight() / 2f, radius, mWavePaint);
-                    break;
-                // Draw square
-                case 2:
-                    if (borderWidth > 0) {
-                        canvas.drawRect(
-                                borderWidth / 2f,
-                                borderWidth / 2f,
-                                getWidth() - borderWidth / 2f - 0.5f,
-                                getHeight() - borderWidth / 2f - 0.5f,
-                                mBorderPaint);
-                    }
-
-                    canvas.drawRect(borderWidth, borderWidth, getWidth() - borderWidth,
-                            getHeight() - borderWidth, mWaveBgPaint);
-                    canvas.drawRect(borderWidth, borderWidth, getWidth() - borderWidth,
-                            getHeight() - borderWidth, mWavePaint);
-                    break;
-                // Draw rectangle
-                case 3:
-                    if (mIsRoundRectangle) {
-                        if (borderWidth > 0) {
-                            RectF rect = new RectF(borderWidth / 2f, borderWidth / 2f, getWidth() - borderWidth / 2f - 0.5f, getHeight() - borderWidth / 2f - 0.5f);
-                            canvas.drawRoundRect(rect, mRoundRectangleXY, mRoundRectangleXY, mWaveBgPaint);
-                            canvas.drawRoundRect(rect, mRoundRectangleXY, mRoundRectangleXY, mWavePaint);
-                        } else {
-                            RectF rect = new RectF(0, 0, getWidth(), getHeight());
-                            canvas.drawRoundRect(rect, mRoundRectangleXY, mRoundRectangleXY, mWaveBgPaint);
-                            canvas.drawRoundRect(rect, mRoundRectangleXY, mRoundRectangleXY, mWavePaint);
-                        }
-                    } else {
-                        if (borderWidth > 0) {
-                            canvas.drawRect(borderWidth / 2f, borderWidth / 2f, getWidth() - borderWidth / 2f - 0.5f, getHeight() - borderWidth / 2f - 0.5f, mWaveBgPaint);
-                            canvas.drawRect(borderWidth / 2f, borderWidth / 2f, getWidth() - borderWidth / 2f - 0.5f, getHeight() - borderWidth / 2f - 0.5f, mWavePaint);
-                        } else {
-                            canvas.drawRect(0, 0, canvas.getWidth(), canvas.getHeight(), mWaveBgPaint);
-                            canvas.drawRect(0, 0, canvas.getWidth(), canvas.getHeight(), mWavePaint);
-                        }
-                    }
-                    break;
-                default:
-                    break;
+            long start = System.nanoTime();
+            mRenderer.draw(canvas);
+            mQualityGovernor.onFrame(start);
+        } finally {
+            if (traced) {
+                WaveTrace.endSection();
             }
-
-            // I know, the code written here is very shit.
-            if (!TextUtils.isEmpty(mTopTitle)) {
-                float top = mTopTitlePaint.measureText(mTopTitle);
-                // Draw the stroke of top text
-                canvas.drawText(mTopTitle, (getWidth() - top) / 2,
-                        getHeight() * 2 / 10.0f, mTopTitleStrokePaint);
-                // Draw the top text
-                canvas.drawText(mTopTitle, (getWidth() - top) / 2,
-                        getHeight() * 2 / 10.0f, mTopTitlePaint);
-            }
-
-            if (!TextUtils.isEmpty(mCenterTitle)) {
-                float middle = mCenterTitlePaint.measureText(mCenterTitle);
-                // Draw the stroke of centered text
-                canvas.drawText(mCenterTitle, (getWidth() - middle) / 2,
-                        getHeight() / 2 - ((mCenterTitleStrokePaint.descent() + mCenterTitleStrokePaint.ascent()) / 2), mCenterTitleStrokePaint);
-                // Draw the centered text
-                canvas.drawText(mCenterTitle, (getWidth() - middle) / 2,
-                        getHeight() / 2 - ((mCenterTitlePaint.descent() + mCenterTitlePaint.ascent()) / 2), mCenterTitlePaint);
-            }
-
-            if (!TextUtils.isEmpty(mBottomTitle)) {
-                float bottom = mBottomTitlePaint.measureText(mBottomTitle);
-                // Draw the stroke of bottom text
-                canvas.drawText(mBottomTitle, (getWidth() - bottom) / 2,
-                        getHeight() * 8 / 10.0f - ((mBottomTitleStrokePaint.descent() + mBottomTitleStrokePaint.ascent()) / 2), mBottomTitleStrokePaint);
-                // Draw the bottom text
-                canvas.drawText(mBottomTitle, (getWidth() - bottom) / 2,
-                        getHeight() * 8 / 10.0f - ((mBottomTitlePaint.descent() + mBottomTitlePaint.ascent()) / 2), mBottomTitlePaint);
-            }
-        } else {
-            mWavePaint.setShader(null);
         }
     }
 
     @Override
     protected void onSizeChanged(int w, int h, int oldw, int oldh) {
         super.onSizeChanged(w, h, oldw, oldh);
-        // If shapType is rectangle
-        if (getShapeType() == 3) {
+        // If shapType is rectangle or custom
+        if (isFreeAspectShape()) {
             mCanvasWidth = w;
             mCanvasHeight = h;
         } else {
@@ -374,69 +240,73 @@ public class WaveLoadingView extends View {
             if (h < mCanvasSize)
                 mCanvasSize = h;
         }
-        updateWaveShader();
-    }
-
-    private void updateWaveShader() {
-        // IllegalArgumentException: width and height must be > 0 while loading Bitmap from View
-        // http://stackoverflow.com/questions/17605662/illegalargumentexception-width-and-height-must-be-0-while-loading-bitmap-from
-        if (bitmapBuffer == null || haveBoundsChanged()) {
-            if (bitmapBuffer != null)
-                bitmapBuffer.recycle();
-            int width = getMeasuredWidth();
-            int height = getMeasuredHeight();
-            if (width > 0 && height > 0) {
-                double defaultAngularFrequency = 2.0f * Math.PI / DEFAULT_WAVE_LENGTH_RATIO / width;
-                float defaultAmplitude = height * DEFAULT_AMPLITUDE_RATIO;
-                mDefaultWaterLevel = height * DEFAULT_WATER_LEVEL_RATIO;
-                float defaultWaveLength = width;
-
-                Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-                Canvas canvas = new Canvas(bitmap);
-
-                Paint wavePaint = new Paint();
-                wavePaint.setStrokeWidth(2);
-                wavePaint.setAntiAlias(true);
-
-                // Draw default waves into the bitmap.
-                // y=Asin(ωx+φ)+h
-                final int endX = width + 1;
-                final int endY = height + 1;
-
-                float[] waveY = new float[endX];
-
-                wavePaint.setColor(adjustAlpha(mWaveColor, 0.3f));
-                for (int beginX = 0; beginX < endX; beginX++) {
-                    double wx = beginX * defaultAngularFrequency;
-                    float beginY = (float) (mDefaultWaterLevel + defaultAmplitude * Math.sin(wx));
-                    canvas.drawLine(beginX, beginY, beginX, endY, wavePaint);
-                    waveY[beginX] = beginY;
-                }
+        mRenderer.setSize(w, h);
+        updateDetailLevel();
+        mRenderer.updateWaveShader();
+    }
 
-                wavePaint.setColor(mWaveColor);
-                final int wave2Shift = (int) (defaultWaveLength / 4);
-                for (int beginX = 0; beginX < endX; beginX++) {
-                    canvas.drawLine(beginX, waveY[(beginX + wave2Shift) % endX], beginX, endY, wavePaint);
-                }
+    private void updateDetailLevel() {
+        mRenderer.setDetailLevel(detailLevelFor(getWidth(), getHeight(), mDetailSmallSize, mDetailTinySize));
+        if (mQualityGovernor != null) {
+            mQualityGovernor.setFrameInterval(getWaveFrameIntervalNanos());
+        }
+    }
 
-                // Use the bitamp to create the shader.
-                mWaveShader = new BitmapShader(bitmap, Shader.TileMode.REPEAT, Shader.TileMode.CLAMP);
-                this.mWavePaint.setShader(mWaveShader);
-            }
+    private static int detailLevelFor(int width, int height, int smallSize, int tinySize) {
+        int size = Math.min(width, height);
+        if (size > 0 && size < tinySize) {
+            return DetailLevel.TINY.ordinal();
+        } else if (size > 0 && size < smallSize) {
+            return DetailLevel.SMALL.ordinal();
         }
+        return DetailLevel.FULL.ordinal();
+    }
+
+    /**
+     * Generate the wave shader of a view of the default style with this size and color on a
+     * background thread, ahead of time, e.g. before the transition to a screen with gauges.
+     * A view that is laid out with matching parameters then picks it up instead of rasterizing
+     * its own. Cached shaders use at most a sixteenth of the heap.
+     *
+     * @param width     Width in pixels the view will have.
+     * @param height    Height in pixels the view will have.
+     * @param waveColor Wave color the view will have.
+     */
+    public static void prewarm(Context context, int width, int height, int waveColor) {
+        prewarm(new WaveStyle.Builder(context).setWaveColor(waveColor).build(), width, height);
+    }
+
+    /**
+     * Prewarm the shader of views declared with a style resource, see
+     * {@link #prewarm(Context, int, int, int)} and {@link WaveStyle#fromStyle(Context, int)}.
+     *
+     * @param styleRes The style resource holding wlv_* items.
+     */
+    public static void prewarmStyle(Context context, int styleRes, int width, int height) {
+        prewarm(WaveStyle.fromStyle(context, styleRes), width, height);
     }
 
-    private boolean haveBoundsChanged() {
-        return getMeasuredWidth() != bitmapBuffer.getWidth() ||
-                getMeasuredHeight() != bitmapBuffer.getHeight();
+    /**
+     * Prewarm the shader of views with this style and size, see {@link #prewarm(Context, int, int, int)}.
+     */
+    public static void prewarm(final WaveStyle style, final int width, final int height) {
+        WaveShaderCache.execute(new Runnable() {
+            @Override
+            public void run() {
+                WaveRenderer renderer = new WaveRenderer(style);
+                renderer.setSize(width, height);
+                renderer.setDetailLevel(detailLevelFor(width, height, style.detailSmallSize, style.detailTinySize));
+                renderer.prewarmWaveShader();
+            }
+        });
     }
 
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
         int width = measureWidth(widthMeasureSpec);
         int height = measureHeight(heightMeasureSpec);
-        // If shapType is rectangle
-        if (getShapeType() == 3) {
+        // If shapType is rectangle or custom
+        if (isFreeAspectShape()) {
             setMeasuredDimension(width, height);
         } else {
             int imageSize = (width < height) ? width : height;
@@ -482,55 +352,350 @@ public class WaveLoadingView extends View {
     }
 
 
+
     public void setWaveBgColor(int color) {
-        this.mWaveBgColor = color;
-        mWaveBgPaint.setColor(this.mWaveBgColor);
-        updateWaveShader();
-        invalidate();
+        mRenderer.setWaveBgColor(color);
+        requestInvalidate();
     }
 
     public int getWaveBgColor() {
-        return mWaveBgColor;
+        return mRenderer.getWaveBgColor();
     }
 
     public void setWaveColor(int color) {
-        mWaveColor = color;
-        // Need to recreate shader when color changed ?
-//        mWaveShader = null;
-        updateWaveShader();
-        invalidate();
+        mRenderer.setWaveColor(color);
+        requestShaderUpdate();
+        requestInvalidate();
     }
 
     public int getWaveColor() {
-        return mWaveColor;
+        return mRenderer.getWaveColor();
+    }
+
+    /**
+     * Fill the wave with a linear gradient across the whole view instead of the wave color. The
+     * wave color still decides the opacity of the layers. The fill is drawn through the alpha of the
+     * cached wave, so changing it never regenerates the wave shader. Circles, triangles, rounded
+     * rectangles and custom shapes keep the fill cut to the shape in one more bitmap of the view
+     * size, redrawn when the shape, size or fill changes, so no frame needs a layer or path clip.
+     *
+     * @param colors      At least two colors.
+     * @param positions   Relative positions of the colors from 0 to 1, null to space them evenly.
+     * @param orientation Direction of the gradient, e.g. {@link GradientOrientation#VERTICAL} from top to bottom.
+     */
+    public void setWaveGradient(int[] colors, float[] positions, GradientOrientation orientation) {
+        WaveRenderer.checkGradient(colors, positions);
+        mRenderer.setWaveGradient(colors.clone(), positions == null ? null : positions.clone(), orientation.ordinal());
+        requestInvalidate();
+    }
+
+    /**
+     * Fill the wave with a repeated bitmap instead of the gradient or the wave color, like
+     * {@link #setWaveGradient(int[], float[], GradientOrientation)}. Both stay hardware
+     * accelerated, the layer type of the view is left alone.
+     *
+     * @param texture The bitmap to repeat, null to remove it.
+     */
+    public void setWaveTexture(Bitmap texture) {
+        mRenderer.setWaveTexture(texture);
+        requestInvalidate();
+    }
+
+    public Bitmap getWaveTexture() {
+        return mRenderer.getWaveTexture();
+    }
+
+    /**
+     * Go back to filling the wave with the wave color.
+     */
+    public void clearWaveFill() {
+        mRenderer.setWaveGradient(null, null, GradientOrientation.VERTICAL.ordinal());
+        setWaveTexture(null);
     }
 
     public void setBorderWidth(float width) {
-        mBorderPaint.setStrokeWidth(width);
-        invalidate();
+        mRenderer.setBorderWidth(width);
+        updateOutlineClip();
+        requestInvalidate();
     }
 
     public float getBorderWidth() {
-        return mBorderPaint.getStrokeWidth();
+        return mRenderer.getBorderWidth();
     }
 
     public void setBorderColor(int color) {
-        mBorderPaint.setColor(color);
-        updateWaveShader();
-        invalidate();
+        mRenderer.setBorderColor(color);
+        requestInvalidate();
     }
 
     public int getBorderColor() {
-        return mBorderPaint.getColor();
+        return mRenderer.getBorderColor();
     }
 
     public void setShapeType(ShapeType shapeType) {
-        mShapeType = shapeType.ordinal();
-        invalidate();
+        boolean freeAspect = isFreeAspectShape();
+        mRenderer.setShapeType(shapeType.ordinal());
+        if (freeAspect != isFreeAspectShape()) {
+            // Square shapes are measured differently.
+            requestLayout();
+        }
+        updateOutlineClip();
+        requestInvalidate();
     }
 
     public int getShapeType() {
-        return mShapeType;
+        return mRenderer.getShapeType();
+    }
+
+    /**
+     * Use an arbitrary path as the container, e.g. a droplet or a battery.
+     * The path is scaled to fit the view, rasterized once per size into a coverage mask and
+     * then costs the same per frame as a circle. The border, if any, strokes the path.
+     *
+     * @param path Outline in any coordinate space, it is copied.
+     */
+    public void setShapePath(Path path) {
+        mRenderer.setShapePath(path);
+        setShapeType(ShapeType.CUSTOM);
+    }
+
+    /**
+     * Use the alpha of a drawable, e.g. a VectorDrawable logo, as the container.
+     * The drawable keeps its aspect ratio, is rasterized once per size and is not redrawn
+     * on later state or level changes. Borders are not supported for drawables.
+     *
+     * @param drawable Shape whose opaque pixels are filled with the wave.
+     */
+    public void setShapeDrawable(Drawable drawable) {
+        mRenderer.setShapeDrawable(drawable);
+        setShapeType(ShapeType.CUSTOM);
+    }
+
+    /**
+     * Clip circles, squares and (rounded) rectangles with a ViewOutlineProvider on API 21+.
+     * The wave and background are then drawn as plain rects and the RenderNode does the
+     * anti-aliased clipping, instead of rasterizing the shape geometry twice per frame.
+     * Has no effect on older platforms or on triangles and custom shapes.
+     * Note that the outline also clips the view's own background drawable.
+     *
+     * @param enabled Default to be false.
+     */
+    public void setOutlineClipEnabled(boolean enabled) {
+        mOutlineClipEnabled = enabled;
+        updateOutlineClip();
+        requestInvalidate();
+    }
+
+    public boolean isOutlineClipEnabled() {
+        return mOutlineClipEnabled;
+    }
+
+    /**
+     * Precompute frameCount frames of one wave period and play them back by blitting, as long
+     * as the water level, colors, titles and size stay the same. Every change rebuilds the frames
+     * once the state is stable again; while the water rises frames are drawn directly.
+     * Costs frameCount * width * height * 4 bytes, so it suits small gauges.
+     *
+     * @param frameCount Frames per wave period, e.g. 24. Default to be 0, which disables the cache.
+     */
+    public void setFrameCacheSize(int frameCount) {
+        mRenderer.setFrameCacheSize(frameCount);
+        requestInvalidate();
+    }
+
+    public int getFrameCacheSize() {
+        return mRenderer.getFrameCacheSize();
+    }
+
+    /**
+     * Drop detail that is invisible at small sizes, chosen from the smaller side of the view:
+     * below smallSize a single wave layer, titles without stroke and a reduced frame rate,
+     * below tinySize also no anti-aliasing and a coarser shader. Default to be 56dp and 32dp.
+     *
+     * @param smallSize Size in pixels below which {@link DetailLevel#SMALL} is used, 0 to never.
+     * @param tinySize  Size in pixels below which {@link DetailLevel#TINY} is used, 0 to never.
+     */
+    public void setDetailThresholds(int smallSize, int tinySize) {
+        mDetailSmallSize = smallSize;
+        mDetailTinySize = tinySize;
+        updateDetailLevel();
+        requestShaderUpdate();
+        requestInvalidate();
+    }
+
+    public DetailLevel getDetailLevel() {
+        return DetailLevel.values()[mRenderer.getDetailLevel()];
+    }
+
+    /**
+     * Tilt the water surface with the device, sloshing around the water level. All tilting views
+     * share one low-pass filtered accelerometer subscription, which only runs while one of them
+     * is attached and visible, see {@link WaveTiltFeed}.
+     *
+     * @param tiltEnabled Default to be false.
+     */
+    public void setTiltEnabled(boolean tiltEnabled) {
+        if (mTiltEnabled != tiltEnabled) {
+            mTiltEnabled = tiltEnabled;
+            updateTiltRegistration();
+            if (!tiltEnabled) {
+                mRenderer.setTilt(0);
+                requestInvalidate();
+            }
+        }
+    }
+
+    public boolean isTiltEnabled() {
+        return mTiltEnabled;
+    }
+
+    /**
+     * Follow the tilt only while it can be seen.
+     */
+    private void updateTiltRegistration() {
+        boolean register = mTiltEnabled && mIsAttached && getWindowVisibility() == VISIBLE && isShown();
+        if (register != mTiltRegistered) {
+            mTiltRegistered = register;
+            if (register) {
+                WaveTiltFeed.register(getContext(), mTiltListener);
+            } else {
+                WaveTiltFeed.unregister(mTiltListener);
+            }
+        }
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updateTiltRegistration();
+    }
+
+    @Override
+    protected void onVisibilityChanged(@NonNull View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updateTiltRegistration();
+    }
+
+    /**
+     * Only redraw once the wave shift or the water line moved by at least this many pixels since
+     * the last frame. Slow waves, e.g. with a long {@link #setAnimDuration(long)} on a small view,
+     * move far less than a pixel per animation step, which is not visible. Default to be 1px.
+     *
+     * @param pixels Distance in pixels, 0 to redraw on every animation step.
+     */
+    public void setRedrawThreshold(float pixels) {
+        if (pixels < 0) {
+            throw new IllegalArgumentException("pixels must be >= 0");
+        }
+        mRedrawThreshold = pixels;
+    }
+
+    public float getRedrawThreshold() {
+        return mRedrawThreshold;
+    }
+
+    /**
+     * Measure the frame cost and lower the quality while frames overrun the budget of the policy,
+     * see {@link WaveQualityGovernor}.
+     *
+     * @param policy Thresholds, e.g. {@link WaveQualityGovernor.Policy#DEFAULT}. Null, the default, keeps full quality.
+     */
+    public void setQualityPolicy(WaveQualityGovernor.Policy policy) {
+        mQualityGovernor = policy != null ? new WaveQualityGovernor(policy, mQualityCallback) : null;
+        if (mQualityGovernor != null) {
+            mQualityGovernor.setFrameInterval(getWaveFrameIntervalNanos());
+        }
+        applyQualityLevel(WaveQualityGovernor.Level.FULL.ordinal());
+    }
+
+    /**
+     * @return The governor, to observe the current level and frame cost, or null without a policy.
+     */
+    public WaveQualityGovernor getQualityGovernor() {
+        return mQualityGovernor;
+    }
+
+    private void applyQualityLevel(int level) {
+        float lowResolution = mQualityGovernor != null ? mQualityGovernor.getPolicy().getLowResolution() : 1f;
+        mRenderer.setQualityLevel(level, lowResolution);
+        requestShaderUpdate();
+        requestInvalidate();
+    }
+
+    /**
+     * Choose how the wave is produced, trading memory against CPU, see {@link WaveRenderBackend}.
+     * E.g. {@link WaveRenderBackend.Type#VECTOR_PATH} keeps no bitmap for huge views.
+     *
+     * @param type Default to be {@link WaveRenderBackend.Type#BITMAP_SHADER}.
+     */
+    public void setRenderBackend(WaveRenderBackend.Type type) {
+        WaveRenderer.checkRenderBackend(type);
+        mRenderer.setRenderBackend(type.ordinal());
+        requestShaderUpdate();
+        requestInvalidate();
+    }
+
+    public WaveRenderBackend.Type getRenderBackend() {
+        return mRenderer.getRenderBackend().getType();
+    }
+
+    /**
+     * Replace the built-in wave layers with a list of layers, each with its own color, size,
+     * phase and speed, e.g. for a parallax effect. Layers moving at the same speed are baked into
+     * one bitmap, so extra layers cost little and layers at the default speed and size are filled in
+     * a single draw. Layers at other speeds take a draw each before API 28. Custom layers always
+     * draw from bitmaps, reported as {@link WaveRenderBackend.Type#LAYERED} whatever
+     * {@link #setRenderBackend(WaveRenderBackend.Type)} selected, keep their own colors over a wave
+     * fill, and bypass the frame cache. From {@link DetailLevel#SMALL} on only the front layer is
+     * drawn.
+     *
+     * @param layers Back to front, null or empty to go back to the built-in layers.
+     */
+    public void setWaveLayers(List<WaveLayer> layers) {
+        mRenderer.setCustomWaveLayers(WaveRenderer.toLayerArray(layers));
+        requestShaderUpdate();
+        requestInvalidate();
+    }
+
+    public List<WaveLayer> getWaveLayers() {
+        return WaveRenderer.toLayerList(mRenderer.getCustomWaveLayers());
+    }
+
+    private boolean isOutlineClipActive() {
+        return mOutlineClipEnabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP
+                && mRenderer.hasOutlineShape();
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private void updateOutlineClip() {
+        boolean active = isOutlineClipActive();
+        mOutlineClipActive = active;
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return;
+        }
+        if (active) {
+            if (!(getOutlineProvider() instanceof WaveOutlineProvider)) {
+                setOutlineProvider(new WaveOutlineProvider());
+            }
+            setClipToOutline(true);
+            invalidateOutline();
+        } else if (getOutlineProvider() instanceof WaveOutlineProvider) {
+            setClipToOutline(false);
+            setOutlineProvider(ViewOutlineProvider.BACKGROUND);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static class WaveOutlineProvider extends ViewOutlineProvider {
+        @Override
+        public void getOutline(View view, Outline outline) {
+            ((WaveLoadingView) view).mRenderer.getOutline(outline);
+        }
+    }
+
+    private boolean isFreeAspectShape() {
+        int shapeType = mRenderer.getShapeType();
+        return shapeType == ShapeType.RECTANGLE.ordinal() || shapeType == ShapeType.CUSTOM.ordinal();
     }
 
     /**
@@ -539,14 +704,35 @@ public class WaveLoadingView extends View {
      * @param amplitudeRatio Default to be 0.05. Result of amplitudeRatio + waterLevelRatio should be less than 1.
      */
     public void setAmplitudeRatio(int amplitudeRatio) {
-        if (this.mAmplitudeRatio != (float) amplitudeRatio / 1000) {
-            this.mAmplitudeRatio = (float) amplitudeRatio / 1000;
-            invalidate();
+        if (mRenderer.getAmplitudeRatio() != (float) amplitudeRatio / 1000) {
+            mRenderer.setAmplitudeRatio((float) amplitudeRatio / 1000);
+            requestInvalidate();
         }
     }
 
     public float getAmplitudeRatio() {
-        return mAmplitudeRatio;
+        return mRenderer.getAmplitudeRatio();
+    }
+
+    /**
+     * Set horizontal size of wave according to waveLengthRatio.
+     * The shader bitmap is sized to a single wave period, so shorter waves also generate faster.
+     *
+     * @param waveLengthRatio Wave length relative to the view width. Default to be 1.0.
+     */
+    public void setWaveLengthRatio(float waveLengthRatio) {
+        if (waveLengthRatio <= 0) {
+            throw new IllegalArgumentException("waveLengthRatio must be > 0");
+        }
+        if (mRenderer.getWaveLengthRatio() != waveLengthRatio) {
+            mRenderer.setWaveLengthRatio(waveLengthRatio);
+            requestShaderUpdate();
+            requestInvalidate();
+        }
+    }
+
+    public float getWaveLengthRatio() {
+        return mRenderer.getWaveLengthRatio();
     }
 
     /**
@@ -555,39 +741,105 @@ public class WaveLoadingView extends View {
      * @param progress Default to be 50.
      */
     public void setProgressValue(int progress) {
-        mProgressValue = progress;
-        ObjectAnimator waterLevelAnim = ObjectAnimator.ofFloat(this, "waterLevelRatio", mWaterLevelRatio, ((float) mProgressValue / 100));
-        waterLevelAnim.setDuration(1000);
-        waterLevelAnim.setInterpolator(new DecelerateInterpolator());
-        AnimatorSet animatorSetProgress = new AnimatorSet();
-        animatorSetProgress.play(waterLevelAnim);
-        animatorSetProgress.start();
+        mRenderer.setProgressValue(progress);
+        mAccessibility.onProgressChanged(progress);
+        // The percentage title changes even if the water barely moves.
+        requestInvalidate();
+        float waterLevelRatio = (float) progress / 100;
+        if (!mIsAttached) {
+            // Nobody can watch the water rise yet, so apply the level directly.
+            if (mWaterLevelAnim != null) {
+                mWaterLevelAnim.cancel();
+            }
+            setWaterLevelRatio(waterLevelRatio);
+            return;
+        }
+        float current = mRenderer.getWaterLevelRatio();
+        if (mWaterLevelAnim == null) {
+            mWaterLevelAnim = ObjectAnimator.ofFloat(this, "waterLevelRatio", current, waterLevelRatio);
+            mWaterLevelAnim.setDuration(1000);
+            mWaterLevelAnim.setInterpolator(new DecelerateInterpolator());
+        } else {
+            mWaterLevelAnim.cancel();
+            mWaterLevelAnim.setFloatValues(current, waterLevelRatio);
+        }
+        mWaterLevelAnim.start();
     }
 
     public int getProgressValue() {
-        return mProgressValue;
+        return mRenderer.getProgressValue();
     }
 
+    /**
+     * Horizontal offset of the waves, in units of one wave length.
+     *
+     * @param waveShiftRatio 0.0f to 1.0f, one full period.
+     */
     public void setWaveShiftRatio(float waveShiftRatio) {
-        if (this.mWaveShiftRatio != waveShiftRatio) {
-            this.mWaveShiftRatio = waveShiftRatio;
-            invalidate();
+        if (mRenderer.getWaveShiftRatio() != waveShiftRatio) {
+            mRenderer.setWaveShiftRatio(waveShiftRatio);
+            if (mRenderer.hasWaveMoved(mRedrawThreshold)) {
+                if (isWaveFrameDue(System.nanoTime())) {
+                    invalidate();
+                }
+            } else if (mQualityGovernor != null && isDetailFrameDue(System.nanoTime())) {
+                // Moved less than the threshold, which is not a dropped frame.
+                mQualityGovernor.onFrameSkipped(System.nanoTime());
+            }
         }
     }
 
     public float getWaveShiftRatio() {
-        return mWaveShiftRatio;
+        return mRenderer.getWaveShiftRatio();
+    }
+
+    /**
+     * @return False if the frame rate of the detail level or of the quality governor skips this
+     * step of the wave animation.
+     */
+    private boolean isWaveFrameDue(long nowNanos) {
+        if (!isDetailFrameDue(nowNanos)) {
+            return false;
+        }
+        if (mQualityGovernor != null && !mQualityGovernor.shouldDrawWaveFrame(nowNanos)) {
+            return false;
+        }
+        mLastWaveFrameNanos = nowNanos;
+        return true;
+    }
+
+    private boolean isDetailFrameDue(long nowNanos) {
+        long intervalNanos = getWaveFrameIntervalNanos();
+        // Allow a little jitter of the display clock.
+        return intervalNanos == 0 || nowNanos - mLastWaveFrameNanos >= intervalNanos - intervalNanos / 8;
+    }
+
+    /**
+     * @return Interval between wave frames at the frame rate of the detail level, 0 for every frame.
+     */
+    private long getWaveFrameIntervalNanos() {
+        int detail = mRenderer.getDetailLevel();
+        if (detail == DetailLevel.FULL.ordinal()) {
+            return 0;
+        }
+        return 1000000000L / (detail == DetailLevel.TINY.ordinal() ? TINY_FRAME_RATE : SMALL_FRAME_RATE);
     }
 
     public void setWaterLevelRatio(float waterLevelRatio) {
-        if (this.mWaterLevelRatio != waterLevelRatio) {
-            this.mWaterLevelRatio = waterLevelRatio;
-            invalidate();
+        if (mRenderer.getWaterLevelRatio() != waterLevelRatio) {
+            boolean traced = WaveTrace.beginSection(WaveTrace.WATER_LEVEL);
+            mRenderer.setWaterLevelRatio(waterLevelRatio);
+            if (mRenderer.hasWaveMoved(mRedrawThreshold)) {
+                invalidate();
+            }
+            if (traced) {
+                WaveTrace.endSection();
+            }
         }
     }
 
     public float getWaterLevelRatio() {
-        return mWaterLevelRatio;
+        return mRenderer.getWaterLevelRatio();
     }
 
     /**
@@ -596,107 +848,218 @@ public class WaveLoadingView extends View {
      * @param topTitle Default to be null.
      */
     public void setTopTitle(String topTitle) {
-        mTopTitle = topTitle;
+        mRenderer.setTopTitle(topTitle);
     }
 
     public String getTopTitle() {
-        return mTopTitle;
+        return mRenderer.getTopTitle();
     }
 
     public void setCenterTitle(String centerTitle) {
-        mCenterTitle = centerTitle;
+        mRenderer.setCenterTitle(centerTitle);
     }
 
     public String getCenterTitle() {
-        return mCenterTitle;
+        return mRenderer.getCenterTitle();
+    }
+
+    /**
+     * Show the progress as a percentage in place of the center title, e.g. "42%".
+     * Unlike setCenterTitle(String.format(...)) this does not allocate on progress updates.
+     *
+     * @param percentTitle Default to be {@link PercentTitle#NONE}.
+     */
+    public void setCenterTitlePercent(PercentTitle percentTitle) {
+        mRenderer.setCenterTitlePercent(percentTitle.ordinal());
+        requestInvalidate();
+    }
+
+    public PercentTitle getCenterTitlePercent() {
+        return PercentTitle.values()[mRenderer.getCenterTitlePercent()];
     }
 
     public void setBottomTitle(String bottomTitle) {
-        mBottomTitle = bottomTitle;
+        mRenderer.setBottomTitle(bottomTitle);
     }
 
     public String getBottomTitle() {
-        return mBottomTitle;
+        return mRenderer.getBottomTitle();
+    }
+
+    /**
+     * Draw the parts of the titles that are covered by the water in another color,
+     * e.g. white titles under a dark wave. The covered parts are masked with the wave shader
+     * itself, so this costs one extra drawText per title and no offscreen layer. Custom layers
+     * at other speeds before API 28 mask them once per run instead, and
+     * {@link WaveRenderBackend.Type#VECTOR_PATH} clips them to the path of the front wave layer.
+     *
+     * @param color Default to be transparent, which disables the effect.
+     */
+    public void setTitleSubmergedColor(int color) {
+        mRenderer.setTitleSubmergedColor(color);
+        requestInvalidate();
+    }
+
+    public int getTitleSubmergedColor() {
+        return mRenderer.getTitleSubmergedColor();
     }
 
     public void setTopTitleColor(int topTitleColor) {
-        mTopTitlePaint.setColor(topTitleColor);
+        mRenderer.topTitlePaint().setColor(topTitleColor);
     }
 
     public int getTopTitleColor() {
-        return mTopTitlePaint.getColor();
+        return mRenderer.getTopTitleColor();
     }
 
     public void setCenterTitleColor(int centerTitleColor) {
-        mCenterTitlePaint.setColor(centerTitleColor);
+        mRenderer.centerTitlePaint().setColor(centerTitleColor);
     }
 
     public int getCenterTitleColor() {
-        return mCenterTitlePaint.getColor();
+        return mRenderer.getCenterTitleColor();
     }
 
     public void setBottomTitleColor(int bottomTitleColor) {
-        mBottomTitlePaint.setColor(bottomTitleColor);
+        mRenderer.bottomTitlePaint().setColor(bottomTitleColor);
     }
 
     public int getBottomTitleColor() {
-        return mBottomTitlePaint.getColor();
+        return mRenderer.getBottomTitleColor();
     }
 
     public void setTopTitleSize(float topTitleSize) {
-        mTopTitlePaint.setTextSize(sp2px(topTitleSize));
+        mRenderer.topTitlePaint().setTextSize(sp2px(topTitleSize));
     }
 
     public float getsetTopTitleSize() {
-        return mTopTitlePaint.getTextSize();
+        return mRenderer.getTopTitleSize();
     }
 
     public void setCenterTitleSize(float centerTitleSize) {
-        mCenterTitlePaint.setTextSize(sp2px(centerTitleSize));
+        mRenderer.centerTitlePaint().setTextSize(sp2px(centerTitleSize));
     }
 
     public float getCenterTitleSize() {
-        return mCenterTitlePaint.getTextSize();
+        return mRenderer.getCenterTitleSize();
     }
 
     public void setBottomTitleSize(float bottomTitleSize) {
-        mBottomTitlePaint.setTextSize(sp2px(bottomTitleSize));
+        mRenderer.bottomTitlePaint().setTextSize(sp2px(bottomTitleSize));
     }
 
     public float getBottomTitleSize() {
-        return mBottomTitlePaint.getTextSize();
+        return mRenderer.getBottomTitleSize();
     }
 
     public void setTopTitleStrokeWidth(float topTitleStrokeWidth) {
-        mTopTitleStrokePaint.setStrokeWidth(dp2px(topTitleStrokeWidth));
+        mRenderer.topTitleStrokePaint().setStrokeWidth(dp2px(topTitleStrokeWidth));
     }
 
     public void setTopTitleStrokeColor(int topTitleStrokeColor) {
-        mTopTitleStrokePaint.setColor(topTitleStrokeColor);
+        mRenderer.topTitleStrokePaint().setColor(topTitleStrokeColor);
     }
 
     public void setBottomTitleStrokeWidth(float bottomTitleStrokeWidth) {
-        mBottomTitleStrokePaint.setStrokeWidth(dp2px(bottomTitleStrokeWidth));
+        mRenderer.bottomTitleStrokePaint().setStrokeWidth(dp2px(bottomTitleStrokeWidth));
     }
 
     public void setBottomTitleStrokeColor(int bottomTitleStrokeColor) {
-        mBottomTitleStrokePaint.setColor(bottomTitleStrokeColor);
+        mRenderer.bottomTitleStrokePaint().setColor(bottomTitleStrokeColor);
     }
 
     public void setCenterTitleStrokeWidth(float centerTitleStrokeWidth) {
-        mCenterTitleStrokePaint.setStrokeWidth(dp2px(centerTitleStrokeWidth));
+        mRenderer.centerTitleStrokePaint().setStrokeWidth(dp2px(centerTitleStrokeWidth));
     }
 
     public void setCenterTitleStrokeColor(int centerTitleStrokeColor) {
-        mCenterTitleStrokePaint.setColor(centerTitleStrokeColor);
+        mRenderer.centerTitleStrokePaint().setColor(centerTitleStrokeColor);
     }
 
-    public void startAnimation() {
-        if (mAnimatorSet != null) {
-            mAnimatorSet.start();
+    /**
+     * Start a batch of property changes. Nothing happens until {@link Editor#apply()}, which
+     * regenerates the wave shader at most once, only if its inputs changed, and invalidates once.
+     * <pre>
+     * waveLoadingView.edit()
+     *         .setWaveColor(Color.BLUE)
+     *         .setBorderColor(Color.WHITE)
+     *         .setAmplitudeRatio(60)
+     *         .apply();
+     * </pre>
+     *
+     * @return Editor
+     */
+    public Editor edit() {
+        return new Editor();
+    }
+
+    /**
+     * Apply the appearance of a resolved style in a single batch, see {@link #edit()}.
+     * Titles and progress are content rather than appearance and are left untouched.
+     *
+     * @param style Shared style, see {@link WaveStyle}.
+     */
+    public void apply(WaveStyle style) {
+        beginBatch();
+        try {
+            mRenderer.apply(style);
+            if (style.shapeDrawableRes != 0) {
+                setShapeDrawable(AppCompatResources.getDrawable(getContext(), style.shapeDrawableRes));
+            }
+            setWaveTexture(style.waveTextureRes == 0 ? null : BitmapFactory.decodeResource(getResources(), style.waveTextureRes));
+            setOutlineClipEnabled(style.outlineClip);
+            if (style.adaptiveQuality != (mQualityGovernor != null)) {
+                setQualityPolicy(style.adaptiveQuality ? WaveQualityGovernor.Policy.DEFAULT : null);
+            }
+            setDetailThresholds(style.detailSmallSize, style.detailTinySize);
+            setRedrawThreshold(style.redrawThreshold);
+            setTiltEnabled(style.tiltEnabled);
+            requestShaderUpdate();
+            requestInvalidate();
+        } finally {
+            endBatch();
         }
     }
 
+    private void beginBatch() {
+        mBatchDepth++;
+    }
+
+    private void endBatch() {
+        if (--mBatchDepth > 0) {
+            return;
+        }
+        if (mPendingShaderUpdate) {
+            mPendingShaderUpdate = false;
+            mRenderer.updateWaveShader();
+        }
+        if (mPendingInvalidate) {
+            mPendingInvalidate = false;
+            invalidate();
+        }
+    }
+
+    private void requestShaderUpdate() {
+        if (mBatchDepth > 0) {
+            mPendingShaderUpdate = true;
+        } else {
+            mRenderer.updateWaveShader();
+        }
+    }
+
+    private void requestInvalidate() {
+        if (mBatchDepth > 0) {
+            mPendingInvalidate = true;
+        } else {
+            invalidate();
+        }
+    }
+
+    public void startAnimation() {
+        initAnimation();
+        mAnimatorSet.start();
+    }
+
     public void endAnimation() {
         if (mAnimatorSet != null) {
             mAnimatorSet.end();
@@ -735,14 +1098,20 @@ public class WaveLoadingView extends View {
      * @param duration The length of the animation, in milliseconds.
      */
     public void setAnimDuration(long duration) {
-        waveShiftAnim.setDuration(duration);
+        mAnimDuration = duration;
+        if (waveShiftAnim != null) {
+            waveShiftAnim.setDuration(duration);
+        }
     }
 
     private void initAnimation() {
+        if (mAnimatorSet != null) {
+            return;
+        }
         // Wave waves infinitely.
         waveShiftAnim = ObjectAnimator.ofFloat(this, "waveShiftRatio", 0f, 1f);
         waveShiftAnim.setRepeatCount(ValueAnimator.INFINITE);
-        waveShiftAnim.setDuration(1000);
+        waveShiftAnim.setDuration(mAnimDuration);
         waveShiftAnim.setInterpolator(new LinearInterpolator());
         mAnimatorSet = new AnimatorSet();
         mAnimatorSet.play(waveShiftAnim);
@@ -750,30 +1119,201 @@ public class WaveLoadingView extends View {
 
     @Override
     protected void onAttachedToWindow() {
+        mIsAttached = true;
+        updateTiltRegistration();
         startAnimation();
         super.onAttachedToWindow();
     }
 
     @Override
     protected void onDetachedFromWindow() {
+        mIsAttached = false;
+        updateTiltRegistration();
         cancelAnimation();
+        mAccessibility.cancel();
+        if (mWaterLevelAnim != null) {
+            // Jump to the target level rather than freezing halfway.
+            mWaterLevelAnim.end();
+        }
         super.onDetachedFromWindow();
     }
 
+    @Override
+    public void onInitializeAccessibilityEvent(AccessibilityEvent event) {
+        super.onInitializeAccessibilityEvent(event);
+        WaveAccessibility.onInitializeAccessibilityEvent(event, getProgressValue());
+    }
+
+    @Override
+    public void onInitializeAccessibilityNodeInfo(AccessibilityNodeInfo info) {
+        super.onInitializeAccessibilityNodeInfo(info);
+        WaveAccessibility.onInitializeAccessibilityNodeInfo(info, getProgressValue());
+    }
+
     /**
-     * Transparent the given color by the factor
-     * The more the factor closer to zero the more the color gets transparent
-     *
-     * @param color  The color to transparent
-     * @param factor 1.0f to 0.0f
-     * @return int - A transplanted color
+     * Collects property changes and applies them at once, see {@link WaveLoadingView#edit()}.
      */
-    private int adjustAlpha(int color, float factor) {
-        int alpha = Math.round(Color.alpha(color) * factor);
-        int red = Color.red(color);
-        int green = Color.green(color);
-        int blue = Color.blue(color);
-        return Color.argb(alpha, red, green, blue);
+    public final class Editor {
+        private static final int WAVE_COLOR = 1 << 0;
+        private static final int WAVE_BG_COLOR = 1 << 1;
+        private static final int BORDER_COLOR = 1 << 2;
+        private static final int BORDER_WIDTH = 1 << 3;
+        private static final int AMPLITUDE_RATIO = 1 << 4;
+        private static final int WAVE_LENGTH_RATIO = 1 << 5;
+        private static final int SHAPE_TYPE = 1 << 6;
+        private static final int TOP_TITLE = 1 << 7;
+        private static final int CENTER_TITLE = 1 << 8;
+        private static final int BOTTOM_TITLE = 1 << 9;
+        private static final int TOP_TITLE_COLOR = 1 << 10;
+        private static final int CENTER_TITLE_COLOR = 1 << 11;
+        private static final int BOTTOM_TITLE_COLOR = 1 << 12;
+
+        private int mChanged;
+        private int mPendingWaveColor;
+        private int mPendingWaveBgColor;
+        private int mPendingBorderColor;
+        private float mPendingBorderWidth;
+        private int mPendingAmplitudeRatio;
+        private float mPendingWaveLengthRatio;
+        private ShapeType mPendingShapeType;
+        private String mPendingTopTitle;
+        private String mPendingCenterTitle;
+        private String mPendingBottomTitle;
+        private int mPendingTopTitleColor;
+        private int mPendingCenterTitleColor;
+        private int mPendingBottomTitleColor;
+
+        private Editor() {
+        }
+
+        public Editor setWaveColor(int color) {
+            mPendingWaveColor = color;
+            mChanged |= WAVE_COLOR;
+            return this;
+        }
+
+        public Editor setWaveBgColor(int color) {
+            mPendingWaveBgColor = color;
+            mChanged |= WAVE_BG_COLOR;
+            return this;
+        }
+
+        public Editor setBorderColor(int color) {
+            mPendingBorderColor = color;
+            mChanged |= BORDER_COLOR;
+            return this;
+        }
+
+        public Editor setBorderWidth(float width) {
+            mPendingBorderWidth = width;
+            mChanged |= BORDER_WIDTH;
+            return this;
+        }
+
+        public Editor setAmplitudeRatio(int amplitudeRatio) {
+            mPendingAmplitudeRatio = amplitudeRatio;
+            mChanged |= AMPLITUDE_RATIO;
+            return this;
+        }
+
+        public Editor setWaveLengthRatio(float waveLengthRatio) {
+            mPendingWaveLengthRatio = waveLengthRatio;
+            mChanged |= WAVE_LENGTH_RATIO;
+            return this;
+        }
+
+        public Editor setShapeType(ShapeType shapeType) {
+            mPendingShapeType = shapeType;
+            mChanged |= SHAPE_TYPE;
+            return this;
+        }
+
+        public Editor setTopTitle(String topTitle) {
+            mPendingTopTitle = topTitle;
+            mChanged |= TOP_TITLE;
+            return this;
+        }
+
+        public Editor setCenterTitle(String centerTitle) {
+            mPendingCenterTitle = centerTitle;
+            mChanged |= CENTER_TITLE;
+            return this;
+        }
+
+        public Editor setBottomTitle(String bottomTitle) {
+            mPendingBottomTitle = bottomTitle;
+            mChanged |= BOTTOM_TITLE;
+            return this;
+        }
+
+        public Editor setTopTitleColor(int topTitleColor) {
+            mPendingTopTitleColor = topTitleColor;
+            mChanged |= TOP_TITLE_COLOR;
+            return this;
+        }
+
+        public Editor setCenterTitleColor(int centerTitleColor) {
+            mPendingCenterTitleColor = centerTitleColor;
+            mChanged |= CENTER_TITLE_COLOR;
+            return this;
+        }
+
+        public Editor setBottomTitleColor(int bottomTitleColor) {
+            mPendingBottomTitleColor = bottomTitleColor;
+            mChanged |= BOTTOM_TITLE_COLOR;
+            return this;
+        }
+
+        /**
+         * Apply all changes, regenerating the shader at most once and invalidating once.
+         */
+        public void apply() {
+            beginBatch();
+            try {
+                if ((mChanged & WAVE_COLOR) != 0) {
+                    WaveLoadingView.this.setWaveColor(mPendingWaveColor);
+                }
+                if ((mChanged & WAVE_BG_COLOR) != 0) {
+                    WaveLoadingView.this.setWaveBgColor(mPendingWaveBgColor);
+                }
+                if ((mChanged & BORDER_COLOR) != 0) {
+                    WaveLoadingView.this.setBorderColor(mPendingBorderColor);
+                }
+                if ((mChanged & BORDER_WIDTH) != 0) {
+                    WaveLoadingView.this.setBorderWidth(mPendingBorderWidth);
+                }
+                if ((mChanged & AMPLITUDE_RATIO) != 0) {
+                    WaveLoadingView.this.setAmplitudeRatio(mPendingAmplitudeRatio);
+                }
+                if ((mChanged & WAVE_LENGTH_RATIO) != 0) {
+                    WaveLoadingView.this.setWaveLengthRatio(mPendingWaveLengthRatio);
+                }
+                if ((mChanged & SHAPE_TYPE) != 0) {
+                    WaveLoadingView.this.setShapeType(mPendingShapeType);
+                }
+                if ((mChanged & TOP_TITLE) != 0) {
+                    WaveLoadingView.this.setTopTitle(mPendingTopTitle);
+                }
+                if ((mChanged & CENTER_TITLE) != 0) {
+                    WaveLoadingView.this.setCenterTitle(mPendingCenterTitle);
+                }
+                if ((mChanged & BOTTOM_TITLE) != 0) {
+                    WaveLoadingView.this.setBottomTitle(mPendingBottomTitle);
+                }
+                if ((mChanged & TOP_TITLE_COLOR) != 0) {
+                    WaveLoadingView.this.setTopTitleColor(mPendingTopTitleColor);
+                }
+                if ((mChanged & CENTER_TITLE_COLOR) != 0) {
+                    WaveLoadingView.this.setCenterTitleColor(mPendingCenterTitleColor);
+                }
+                if ((mChanged & BOTTOM_TITLE_COLOR) != 0) {
+                    WaveLoadingView.this.setBottomTitleColor(mPendingBottomTitleColor);
+                }
+                requestInvalidate();
+            } finally {
+                endBatch();
+            }
+        }
     }
 
     /**
@@ -791,48 +1331,4 @@ public class WaveLoadingView extends View {
         final float scale = mContext.getResources().getDisplayMetrics().density;
         return (int) (dp * scale + 0.5f);
     }
-
-    /**
-     * Draw EquilateralTriangle
-     *
-     * @param p1        Start point
-     * @param width     The width of triangle
-     * @param height    The height of triangle
-     * @param direction The direction of triangle
-     * @return Path
-     */
-    private Path getEquilateralTriangle(Point p1, int width, int height, int direction) {
-        Point p2 = null, p3 = null;
-        // NORTH
-        if (direction == 0) {
-            p2 = new Point(p1.x + width, p1.y);
-            p3 = new Point(p1.x + (width / 2), (int) (height - Math.sqrt(3.0) / 2 * height));
-        }
-        // SOUTH
-        else if (direction == 1) {
-            p2 = new Point(p1.x, p1.y - height);
-            p3 = new Point(p1.x + width, p1.y - height);
-            p1.x = p1.x + (width / 2);
-            p1.y = (int) (Math.sqrt(3.0) / 2 * height);
-        }
-        // EAST
-        else if (direction == 2) {
-            p2 = new Point(p1.x, p1.y - height);
-            p3 = new Point((int) (Math.sqrt(3.0) / 2 * width), p1.y / 2);
-        }
-        // WEST
-        else if (direction == 3) {
-            p2 = new Point(p1.x + width, p1.y - height);
-            p3 = new Point(p1.x + width, p1.y);
-            p1.x = (int) (width - Math.sqrt(3.0) / 2 * width);
-            p1.y = p1.y / 2;
-        }
-
-        Path path = new Path();
-        path.moveTo(p1.x, p1.y);
-        path.lineTo(p2.x, p2.y);
-        path.lineTo(p3.x, p3.y);
-
-        return path;
-    }
-}
\ No newline at end of file
+}
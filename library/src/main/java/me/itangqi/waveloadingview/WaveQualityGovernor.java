@@ -0,0 +1,415 @@
+package me.itangqi.waveloadingview;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Measures how long a view takes to draw a frame and how far apart its frames are, and lowers
+ * the drawing quality one level at a time while they overrun the frame budget.
+ * <p>
+ * The levels are cumulative: anti-aliasing goes first, then the wave shader is rendered at a
+ * lower resolution, then the wave is redrawn at a capped frame rate, and finally the wave stops
+ * moving. Water level changes are always drawn. Quality steps back up once the frames have had
+ * headroom for a while; the thresholds for stepping down and up are apart, and stepping up
+ * needs many more frames, so the level does not oscillate. A frozen wave has no frames to
+ * measure and is retried at the capped frame rate after {@link Policy#getFrozenRetryMillis()}.
+ * <pre>
+ * waveLoadingView.setQualityPolicy(new WaveQualityGovernor.Policy.Builder()
+ *         .setMaxLevel(WaveQualityGovernor.Level.CAPPED_FRAME_RATE)
+ *         .build());
+ * waveLoadingView.getQualityGovernor().setOnQualityChangeListener(listener);
+ * </pre>
+ */
+public final class WaveQualityGovernor {
+    // Weight of the newest frame in the moving averages.
+    private static final float SMOOTHING = 0.1f;
+    // Frames further apart than this many budgets are idle gaps rather than slow frames.
+    private static final int IDLE_INTERVALS = 10;
+
+    public enum Level {
+        FULL,
+        NO_ANTI_ALIAS,
+        LOW_RESOLUTION,
+        CAPPED_FRAME_RATE,
+        FROZEN
+    }
+
+    /**
+     * Notified on the UI thread whenever the level changes.
+     */
+    public interface OnQualityChangeListener {
+        void onQualityChanged(Level level, float averageDrawMillis, float averageFrameMillis);
+    }
+
+    // Applies a level to the view that owns the governor.
+    interface Callback {
+        void onLevelChanged(int level);
+    }
+
+    private final Policy mPolicy;
+    private final Callback mCallback;
+    private OnQualityChangeListener mListener;
+
+    private int mLevel;
+    private float mAverageDrawNanos;
+    private float mAverageFrameNanos;
+    private long mLastFrameStart = -1;
+    // Interval between wave frames the view itself asks for, 0 for every display frame.
+    private long mViewFrameNanos;
+    private long mLastWaveFrame;
+    private long mFrozenSince;
+    // Consecutive frames over, or well under, the budget.
+    private int mOverrunFrames;
+    private int mHeadroomFrames;
+
+    WaveQualityGovernor(Policy policy, Callback callback) {
+        mPolicy = policy;
+        mCallback = callback;
+    }
+
+    public Policy getPolicy() {
+        return mPolicy;
+    }
+
+    public Level getLevel() {
+        return Level.values()[mLevel];
+    }
+
+    /**
+     * @return Average time spent in onDraw, in milliseconds.
+     */
+    public float getAverageDrawMillis() {
+        return mAverageDrawNanos / 1000000f;
+    }
+
+    /**
+     * @return Average time between the starts of consecutive frames, in milliseconds.
+     */
+    public float getAverageFrameMillis() {
+        return mAverageFrameNanos / 1000000f;
+    }
+
+    public void setOnQualityChangeListener(OnQualityChangeListener listener) {
+        mListener = listener;
+    }
+
+    int getLevelOrdinal() {
+        return mLevel;
+    }
+
+    /**
+     * Tell the governor how far apart the view draws wave frames on its own, e.g. at the reduced
+     * frame rate of a small detail level, so that those intervals do not read as overruns.
+     *
+     * @param intervalNanos Expected interval between frames, 0 to draw on every display frame.
+     */
+    void setFrameInterval(long intervalNanos) {
+        mViewFrameNanos = intervalNanos;
+    }
+
+    /**
+     * Record a step of the wave animation the view did not draw although it was due, e.g. because
+     * the wave moved less than a pixel. The next frame is measured from this step.
+     */
+    void onFrameSkipped(long nowNanos) {
+        if (mLastFrameStart >= 0) {
+            mLastFrameStart = nowNanos;
+        }
+    }
+
+    /**
+     * Record one frame, call at the end of onDraw.
+     *
+     * @param startNanos System.nanoTime() at the start of onDraw.
+     */
+    void onFrame(long startNanos) {
+        onFrame(startNanos, System.nanoTime());
+    }
+
+    /**
+     * Record one frame drawn from startNanos to endNanos.
+     */
+    void onFrame(long startNanos, long endNanos) {
+        long drawNanos = endNanos - startNanos;
+        long intervalNanos = mLastFrameStart < 0 ? 0 : startNanos - mLastFrameStart;
+        mLastFrameStart = startNanos;
+        long expectedNanos = expectedFrameNanos();
+        if (intervalNanos <= 0 || intervalNanos > expectedNanos * IDLE_INTERVALS) {
+            // First frame after a pause, only the draw time says something.
+            intervalNanos = expectedNanos;
+        }
+        mAverageDrawNanos += (drawNanos - mAverageDrawNanos) * SMOOTHING;
+        mAverageFrameNanos += (intervalNanos - mAverageFrameNanos) * SMOOTHING;
+
+        float budgetNanos = mPolicy.frameBudgetMillis * 1000000f;
+        if (mAverageDrawNanos > budgetNanos * mPolicy.stepDownDrawRatio
+                || mAverageFrameNanos > expectedNanos * mPolicy.stepDownFrameRatio) {
+            mHeadroomFrames = 0;
+            if (++mOverrunFrames >= mPolicy.stepDownFrames && mLevel < mPolicy.maxLevel) {
+                setLevel(mLevel + 1);
+            }
+        } else if (mAverageDrawNanos < budgetNanos * mPolicy.stepUpDrawRatio
+                && mAverageFrameNanos < expectedNanos * mPolicy.stepUpFrameRatio) {
+            mOverrunFrames = 0;
+            if (++mHeadroomFrames >= mPolicy.stepUpFrames && mLevel > 0) {
+                setLevel(mLevel - 1);
+            }
+        } else {
+            mOverrunFrames = 0;
+            mHeadroomFrames = 0;
+        }
+    }
+
+    /**
+     * Called for every step of the wave animation.
+     *
+     * @return False if the wave should not be redrawn for this step.
+     */
+    boolean shouldDrawWaveFrame(long nowNanos) {
+        if (mLevel == Level.FROZEN.ordinal()) {
+            if (nowNanos - mFrozenSince < mPolicy.frozenRetryMillis * 1000000L) {
+                return false;
+            }
+            // Try moving again, slowly.
+            setLevel(Level.CAPPED_FRAME_RATE.ordinal());
+        }
+        if (mLevel == Level.CAPPED_FRAME_RATE.ordinal()) {
+            // Allow a little jitter of the display clock.
+            long intervalNanos = 1000000000L / mPolicy.cappedFrameRate;
+            if (nowNanos - mLastWaveFrame < intervalNanos - intervalNanos / 8) {
+                return false;
+            }
+        }
+        mLastWaveFrame = nowNanos;
+        return true;
+    }
+
+    private long expectedFrameNanos() {
+        long expectedNanos = (long) (mPolicy.frameBudgetMillis * 1000000f);
+        if (mLevel >= Level.CAPPED_FRAME_RATE.ordinal()) {
+            expectedNanos = 1000000000L / mPolicy.cappedFrameRate;
+        }
+        return Math.max(expectedNanos, mViewFrameNanos);
+    }
+
+    private void setLevel(int level) {
+        mLevel = level;
+        mOverrunFrames = 0;
+        mHeadroomFrames = 0;
+        // Measure the new level from scratch, but keep the draw time as a starting point.
+        mAverageFrameNanos = expectedFrameNanos();
+        mLastFrameStart = -1;
+        if (level == Level.FROZEN.ordinal()) {
+            mFrozenSince = System.nanoTime();
+        }
+        mCallback.onLevelChanged(level);
+        if (mListener != null) {
+            mListener.onQualityChanged(getLevel(), getAverageDrawMillis(), getAverageFrameMillis());
+        }
+    }
+
+    /**
+     * When and how far {@link WaveQualityGovernor} lowers the quality. Immutable, build one with
+     * {@link Builder}, or use {@link #DEFAULT}.
+     */
+    public static final class Policy {
+        public static final Policy DEFAULT = new Builder().build();
+
+        final float frameBudgetMillis;
+        final float stepDownDrawRatio;
+        final float stepUpDrawRatio;
+        final float stepDownFrameRatio;
+        final float stepUpFrameRatio;
+        final int stepDownFrames;
+        final int stepUpFrames;
+        final int maxLevel;
+        final int cappedFrameRate;
+        final float lowResolution;
+        final long frozenRetryMillis;
+
+        private Policy(Builder builder) {
+            frameBudgetMillis = builder.frameBudgetMillis;
+            stepDownDrawRatio = builder.stepDownDrawRatio;
+            stepUpDrawRatio = builder.stepUpDrawRatio;
+            stepDownFrameRatio = builder.stepDownFrameRatio;
+            stepUpFrameRatio = builder.stepUpFrameRatio;
+            stepDownFrames = builder.stepDownFrames;
+            stepUpFrames = builder.stepUpFrames;
+            maxLevel = builder.maxLevel;
+            cappedFrameRate = builder.cappedFrameRate;
+            lowResolution = builder.lowResolution;
+            frozenRetryMillis = builder.frozenRetryMillis;
+        }
+
+        public float getFrameBudgetMillis() {
+            return frameBudgetMillis;
+        }
+
+        public float getStepDownDrawRatio() {
+            return stepDownDrawRatio;
+        }
+
+        public float getStepUpDrawRatio() {
+            return stepUpDrawRatio;
+        }
+
+        public float getStepDownFrameRatio() {
+            return stepDownFrameRatio;
+        }
+
+        public float getStepUpFrameRatio() {
+            return stepUpFrameRatio;
+        }
+
+        public int getStepDownFrames() {
+            return stepDownFrames;
+        }
+
+        public int getStepUpFrames() {
+            return stepUpFrames;
+        }
+
+        public Level getMaxLevel() {
+            return Level.values()[maxLevel];
+        }
+
+        public int getCappedFrameRate() {
+            return cappedFrameRate;
+        }
+
+        public float getLowResolution() {
+            return lowResolution;
+        }
+
+        public long getFrozenRetryMillis() {
+            return frozenRetryMillis;
+        }
+
+        public static final class Builder {
+            private float frameBudgetMillis = 1000f / 60;
+            private float stepDownDrawRatio = 0.5f;
+            private float stepUpDrawRatio = 0.25f;
+            private float stepDownFrameRatio = 1.5f;
+            private float stepUpFrameRatio = 1.15f;
+            private int stepDownFrames = 30;
+            private int stepUpFrames = 180;
+            private int maxLevel = Level.FROZEN.ordinal();
+            private int cappedFrameRate = 30;
+            private float lowResolution = 0.5f;
+            private long frozenRetryMillis = 5000;
+
+            public Builder() {
+            }
+
+            public Builder(@NonNull Policy policy) {
+                frameBudgetMillis = policy.frameBudgetMillis;
+                stepDownDrawRatio = policy.stepDownDrawRatio;
+                stepUpDrawRatio = policy.stepUpDrawRatio;
+                stepDownFrameRatio = policy.stepDownFrameRatio;
+                stepUpFrameRatio = policy.stepUpFrameRatio;
+                stepDownFrames = policy.stepDownFrames;
+                stepUpFrames = policy.stepUpFrames;
+                maxLevel = policy.maxLevel;
+                cappedFrameRate = policy.cappedFrameRate;
+                lowResolution = policy.lowResolution;
+                frozenRetryMillis = policy.frozenRetryMillis;
+            }
+
+            /**
+             * @param millis Time per frame of the display. Default to be 1000 / 60.
+             */
+            public Builder setFrameBudgetMillis(float millis) {
+                if (millis <= 0) {
+                    throw new IllegalArgumentException("millis must be > 0");
+                }
+                frameBudgetMillis = millis;
+                return this;
+            }
+
+            /**
+             * The view's onDraw shares the frame with the rest of the window, so quality steps
+             * down when its average exceeds downRatio of the budget, and back up below upRatio.
+             *
+             * @param downRatio Default to be 0.5.
+             * @param upRatio   Default to be 0.25, must be less than downRatio.
+             */
+            public Builder setDrawRatios(float downRatio, float upRatio) {
+                if (upRatio <= 0 || upRatio >= downRatio) {
+                    throw new IllegalArgumentException("upRatio must be > 0 and < downRatio");
+                }
+                stepDownDrawRatio = downRatio;
+                stepUpDrawRatio = upRatio;
+                return this;
+            }
+
+            /**
+             * Dropped frames show as intervals longer than the budget, whoever caused them.
+             *
+             * @param downRatio Average interval relative to the expected one that steps down. Default to be 1.5.
+             * @param upRatio   Default to be 1.15, must be less than downRatio.
+             */
+            public Builder setFrameRatios(float downRatio, float upRatio) {
+                if (upRatio < 1 || upRatio >= downRatio) {
+                    throw new IllegalArgumentException("upRatio must be >= 1 and < downRatio");
+                }
+                stepDownFrameRatio = downRatio;
+                stepUpFrameRatio = upRatio;
+                return this;
+            }
+
+            /**
+             * @param downFrames Consecutive overrunning frames before stepping down. Default to be 30.
+             * @param upFrames   Consecutive frames with headroom before stepping up. Default to be 180.
+             */
+            public Builder setStepFrames(int downFrames, int upFrames) {
+                if (downFrames <= 0 || upFrames <= 0) {
+                    throw new IllegalArgumentException("frame counts must be > 0");
+                }
+                stepDownFrames = downFrames;
+                stepUpFrames = upFrames;
+                return this;
+            }
+
+            /**
+             * @param level Lowest quality allowed, e.g. CAPPED_FRAME_RATE to never freeze. Default to be FROZEN.
+             */
+            public Builder setMaxLevel(Level level) {
+                maxLevel = level.ordinal();
+                return this;
+            }
+
+            /**
+             * @param framesPerSecond Wave frame rate at CAPPED_FRAME_RATE. Default to be 30.
+             */
+            public Builder setCappedFrameRate(int framesPerSecond) {
+                if (framesPerSecond <= 0) {
+                    throw new IllegalArgumentException("framesPerSecond must be > 0");
+                }
+                cappedFrameRate = framesPerSecond;
+                return this;
+            }
+
+            /**
+             * @param scale Shader resolution at LOW_RESOLUTION, 0 to 1. Default to be 0.5.
+             */
+            public Builder setLowResolution(float scale) {
+                if (scale <= 0 || scale > 1) {
+                    throw new IllegalArgumentException("scale must be > 0 and <= 1");
+                }
+                lowResolution = scale;
+                return this;
+            }
+
+            /**
+             * @param millis How long the wave stays frozen before moving is tried again. Default to be 5000.
+             */
+            public Builder setFrozenRetryMillis(long millis) {
+                frozenRetryMillis = millis;
+                return this;
+            }
+
+            public Policy build() {
+                return new Policy(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package me.itangqi.waveloadingview;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Shader;
+
+/**
+ * Produces the moving wave itself, the hosts draw the shape, border and titles around it.
+ * <p>
+ * The backends trade memory against CPU:
+ * <ul>
+ * <li>{@link Type#BITMAP_SHADER}, the default, draws one wave period into a bitmap with Canvas
+ * lines once per size and color. Each frame is then a single shaded draw.</li>
+ * <li>{@link Type#PIXEL_BUFFER} computes the same bitmap directly in an int[] with analytic
+ * anti-aliasing, which regenerates faster than drawing thousands of lines when the size or
+ * color changes often. Large bitmaps are filled in parallel bands, so prefer it for full screen
+ * waves.</li>
+ * <li>{@link Type#VECTOR_PATH} keeps no wave bitmap and fills cached wave Paths on every frame.
+ * Meant for huge views on memory starved devices. Squares and plain rectangles need no bitmap at
+ * all, other shapes keep one of the view size with the shape in the wave color, which the paths
+ * then paint. Submerged titles are clipped to the front layer path, one path clip per title.</li>
+ * </ul>
+ * Select one with {@link WaveLoadingView#setRenderBackend(Type)}, or {@code wlv_renderBackend}
+ * in XML. {@link Type#LAYERED} is only reported while custom wave layers are set, see
+ * {@link WaveLoadingView#setWaveLayers(java.util.List)}.
+ */
+public interface WaveRenderBackend {
+
+    enum Type {
+        BITMAP_SHADER,
+        VECTOR_PATH,
+        PIXEL_BUFFER,
+        LAYERED
+    }
+
+    Type getType();
+
+    /**
+     * Prepare the wave for a size and color, cheap if nothing changed since the last call.
+     *
+     * @param width      Width of the area that will be drawn.
+     * @param height     Height of the area, the still water level of the wave is at its middle.
+     * @param waveLength Width of one wave period in pixels.
+     * @param waveColor  Color of the front layer.
+     * @param layers     Phase, in wave lengths, and alpha factor of each layer, back to front.
+     */
+    void update(int width, int height, int waveLength, int waveColor, float[] layers);
+
+    /**
+     * Render cached rasters at a fraction of the full resolution, stretched when drawn.
+     * Backends without rasters ignore it.
+     *
+     * @param scale 1 for full resolution, e.g. 0.5f for half.
+     */
+    void setResolution(float scale);
+
+    /**
+     * Move the wave for the next frame.
+     *
+     * @param shift          Horizontal offset in pixels.
+     * @param waterLine      Y of the still water level in pixels.
+     * @param amplitudeScale Amplitude relative to the default one.
+     * @param tilt           Clockwise rotation in degrees around the water line at the middle of
+     *                       the width, 0 for a level surface.
+     */
+    void setPosition(float shift, float waterLine, float amplitudeScale, float tilt);
+
+    /**
+     * @return Shader of the positioned wave, or null if the wave can only be drawn with
+     * {@link #drawWave(Canvas, Paint)}.
+     */
+    Shader getShader();
+
+    /**
+     * Fill the current clip with the positioned wave.
+     *
+     * @param paint Paint carrying anti-aliasing and the color filter, left unchanged.
+     */
+    void drawWave(Canvas canvas, Paint paint);
+
+    /**
+     * Fill the current clip with the paint, e.g. its gradient or texture shader, where the
+     * positioned wave is and at the alpha of its layers, instead of the wave colors.
+     *
+     * @param paint Paint carrying the fill, its shader stays in the coordinates of the canvas.
+     */
+    void drawCoverage(Canvas canvas, Paint paint);
+
+    /**
+     * Free the memory held by the backend, {@link #update} allocates it again.
+     */
+    void release();
+}
@@ -0,0 +1,1557 @@
+package me.itangqi.waveloadingview;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.ColorMatrix;
+import android.graphics.ColorMatrixColorFilter;
+import android.graphics.LinearGradient;
+import android.graphics.Matrix;
+import android.graphics.Outline;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Point;
+import android.graphics.RectF;
+import android.graphics.Shader;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.text.TextUtils;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import me.itangqi.waveloadingview.WaveLoadingView.DetailLevel;
+import me.itangqi.waveloadingview.WaveLoadingView.PercentTitle;
+import me.itangqi.waveloadingview.WaveLoadingView.ShapeType;
+
+/**
+ * Shader generation, shapes and titles of a wave, independent of who hosts it.
+ * <p>
+ * {@link WaveLoadingView} and {@link WaveDrawable} own a renderer each and only add measuring,
+ * animation and invalidation on top. All sizes are in pixels, the host converts dp and sp.
+ * <p>
+ * Without any host, {@link #render(Bitmap, WaveState)} draws a single frame into a bitmap, e.g.
+ * for app widgets, notification icons or share images.
+ */
+public final class WaveRenderer {
+    private static final float DEFAULT_AMPLITUDE_RATIO = WaveStyle.DEFAULT_AMPLITUDE_RATIO;
+    private static final float DEFAULT_WAVE_SHIFT_RATIO = 0.0f;
+    // Phase and alpha of the default layers: a translucent back wave and a front wave λ/4 ahead.
+    static final float[] WAVE_LOADING_LAYERS = {0f, 0.3f, 0.25f, 1f};
+    // Only the front wave, for small sizes.
+    private static final float[] SINGLE_WAVE_LAYER = {0.25f, 1f};
+    private static final float TINY_SHADER_RESOLUTION = 0.5f;
+    private static final char[] PERCENT_CHARS = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', '%', '-'};
+
+    // Size of the area drawn into, starting at 0, 0.
+    private int mWidth;
+    private int mHeight;
+
+    // Dynamic Properties.
+    private float mAmplitudeRatio;
+    private float mWaveLengthRatio;
+    private int mWaveBgColor;
+    private int mWaveColor;
+    private int mShapeType;
+    private int mTriangleDirection;
+    private int mRoundRectangleXY;
+    private boolean mIsRoundRectangle;
+    // Stroke the border around rectangles too, as WaveView does.
+    private boolean mRectangleBorder;
+    // The host clips to the shape outline itself, see WaveLoadingView#setOutlineClipEnabled.
+    private boolean mHostClipped;
+
+    // Properties.
+    private String mTopTitle;
+    private String mCenterTitle;
+    private String mBottomTitle;
+    // Width in pixels of one wave period, which is also the width of the shader bitmap.
+    private int mWaveLength;
+    private float mWaterLevelRatio = 1f;
+    private float mWaveShiftRatio = DEFAULT_WAVE_SHIFT_RATIO;
+    // Clockwise rotation of the water surface in degrees.
+    private float mTilt;
+    private int mProgressValue = WaveStyle.DEFAULT_WAVE_PROGRESS_VALUE;
+    // Wave position of the last drawn frame, NaN before the first one.
+    private float mDrawnWaveShiftRatio = Float.NaN;
+    private float mDrawnWaterLevelRatio = Float.NaN;
+    private final RectF mBorderRect = new RectF();
+    private int mCenterTitlePercent;
+    // Reused buffer for the percentage title, digits are written right to left.
+    private final char[] mPercentChars = new char[12];
+    private final CharBuffer mPercentText = CharBuffer.wrap(mPercentChars);
+    // Advance widths of '0'-'9', '%' and '-' at mPercentTextSize.
+    private final float[] mPercentCharWidths = new float[12];
+    private float mPercentTextSize;
+    private float mPercentBaselineOffset;
+
+    // Object used to draw.
+    // Produces the wave, see WaveRenderBackend.
+    private WaveRenderBackend mBackend;
+    private float[] mWaveLayers = WAVE_LOADING_LAYERS;
+    // Replace mWaveLayers when set, drawn by a LayeredWaveBackend. Null for none.
+    private WaveLayer[] mCustomLayers;
+    // Backend to use while there are no custom layers, a WaveRenderBackend.Type ordinal.
+    private int mRenderBackendType;
+    // Shader containing repeated waves, null for backends that draw paths.
+    private Shader mWaveShader;
+    // Fill replacing the wave color, a texture wins over a gradient. Null for none.
+    private int[] mGradientColors;
+    private float[] mGradientPositions;
+    private int mGradientOrientation;
+    private Bitmap mTexture;
+    // Fill in view coordinates, built for mFillWidth x mFillHeight. Null while there is no fill.
+    private Shader mFillShader;
+    private int mFillWidth;
+    private int mFillHeight;
+    // Lowered by WaveQualityGovernor.
+    private boolean mQualityAntiAlias = true;
+    private float mQualityResolution = 1f;
+    // Lowered for small sizes, a WaveLoadingView.DetailLevel ordinal.
+    private int mDetailLevel;
+    // Combined result of both.
+    private boolean mAntiAlias = true;
+    private float mShaderResolution = 1f;
+    private boolean mStrokeTitles = true;
+    // Water covered area of curved and custom shapes, in the fill or the opaque wave color, for
+    // waves without shader of their own. See getShapeFillShader.
+    private Bitmap mShapeFill;
+    private BitmapShader mShapeFillShader;
+    private boolean mShapeFillDirty;
+    private Shader mShapeFillSource;
+    private int mShapeFillColor;
+    private boolean mShapeFillAntiAlias;
+    // Paint to draw wave.
+    private final Paint mWavePaint;
+    //Paint to draw waveBackground.
+    private final Paint mWaveBgPaint;
+    // Paint to draw border.
+    private final Paint mBorderPaint;
+    // Cached triangle, rebuilt only when the size or direction changes.
+    private Path mTrianglePath;
+    private int mTrianglePathWidth;
+    private int mTrianglePathHeight;
+    private int mTrianglePathDirection;
+    // Custom shape source, and its coverage mask rasterized once per size.
+    private Path mShapePath;
+    private Drawable mShapeDrawable;
+    private Path mScaledShapePath;
+    private Bitmap mShapeMask;
+    private boolean mShapeMaskDirty;
+    // Point to draw title, created from the style templates once the title is used.
+    private WaveStyle mStyle;
+    private Paint mTopTitlePaint;
+    private Paint mBottomTitlePaint;
+    private Paint mCenterTitlePaint;
+
+    private Paint mTopTitleStrokePaint;
+    private Paint mBottomTitleStrokePaint;
+    private Paint mCenterTitleStrokePaint;
+    // Draws titles again, masked by the wave shader, where the water covers them.
+    private Paint mSubmergedTitlePaint;
+    private int mTitleSubmergedColor;
+    // Applied to every paint, including title paints that are created later.
+    private ColorFilter mColorFilter;
+
+    // Incremented on every change that affects the drawing, except the wave shift.
+    private int mVersion;
+    // Frames of one period at the current state, see WaveLoadingView#setFrameCacheSize.
+    private int mFrameCacheSize;
+    private WaveFrameCache mFrameCache;
+    private int mFrameCacheVersion = -1;
+    private int mLastDrawVersion = -1;
+
+    WaveRenderer(WaveStyle style) {
+        mStyle = style;
+        mWavePaint = new Paint();
+        // The ANTI_ALIAS_FLAG bit AntiAliasing smooths out the edges of what is being drawn,
+        // but is has no impact on the interior of the shape.
+        mWavePaint.setAntiAlias(true);
+        mWaveBgPaint = style.newWaveBgPaint();
+        mBorderPaint = style.newBorderPaint();
+
+        mShapeType = style.shapeType;
+        mTriangleDirection = style.triangleDirection;
+        mIsRoundRectangle = style.roundRectangle;
+        mRoundRectangleXY = style.roundRectangleXY;
+        mWaveColor = style.waveColor;
+        mWaveBgColor = style.waveBgColor;
+        mAmplitudeRatio = style.amplitudeRatio;
+        mWaveLengthRatio = style.waveLengthRatio;
+        mProgressValue = style.progressValue;
+        mFrameCacheSize = style.frameCacheSize;
+        mRenderBackendType = style.renderBackend;
+        mBackend = newBackend(style.renderBackend);
+        mGradientColors = style.waveGradientColors;
+        mGradientOrientation = style.waveGradientOrientation;
+
+        setTopTitle(style.topTitle);
+        setCenterTitle(style.centerTitle);
+        setBottomTitle(style.bottomTitle);
+        mCenterTitlePercent = style.centerTitlePercent;
+        if (mCenterTitlePercent != PercentTitle.NONE.ordinal()) {
+            ensureCenterTitlePaints();
+        }
+        setTitleSubmergedColor(style.titleSubmergedColor);
+    }
+
+    /**
+     * Apply the appearance of a style. Custom shape drawables are resolved by the host.
+     */
+    void apply(WaveStyle style) {
+        mStyle = style;
+        if (style.shapeDrawableRes == 0) {
+            mShapeType = style.shapeType;
+        }
+        mTriangleDirection = style.triangleDirection;
+        mIsRoundRectangle = style.roundRectangle;
+        mRoundRectangleXY = style.roundRectangleXY;
+        mWaveColor = style.waveColor;
+        setWaveBgColor(style.waveBgColor);
+        mAmplitudeRatio = style.amplitudeRatio;
+        mWaveLengthRatio = style.waveLengthRatio;
+        style.applyBorder(mBorderPaint);
+        mShapeMaskDirty = true;
+        mShapeFillDirty = true;
+        setFrameCacheSize(style.frameCacheSize);
+        setRenderBackend(style.renderBackend);
+        setWaveGradient(style.waveGradientColors, null, style.waveGradientOrientation);
+        // Title paints that do not exist yet are created from the new style when needed.
+        if (mTopTitlePaint != null) {
+            applyTopTitle();
+        }
+        if (mCenterTitlePaint != null) {
+            applyCenterTitle();
+        }
+        if (mBottomTitlePaint != null) {
+            applyBottomTitle();
+        }
+        setTitleSubmergedColor(style.titleSubmergedColor);
+        mVersion++;
+    }
+
+    /**
+     * Draw a single frame into a bitmap, without any View or window.
+     * Safe to call from a background thread, as long as the bitmap is not drawn meanwhile.
+     *
+     * @param target Mutable bitmap, it is cleared and may be reused for the next frame.
+     * @param state  What to draw.
+     */
+    public static void render(@NonNull Bitmap target, @NonNull WaveState state) {
+        render(new Bitmap[]{target}, new WaveState[]{state});
+    }
+
+    /**
+     * Draw many frames at once, e.g. all gauges of a widget update. States whose wave bitmaps
+     * have the same inputs (backend, size, resolution, color and layers) share a single one,
+     * generated once for the call.
+     *
+     * @param targets Mutable bitmaps, targets[i] receives states[i].
+     * @param states  What to draw.
+     */
+    public static void render(@NonNull Bitmap[] targets, @NonNull WaveState[] states) {
+        if (targets.length != states.length) {
+            throw new IllegalArgumentException("targets and states must have the same length");
+        }
+        // Wave bitmaps of this call, shared by the backends of all renderers.
+        HashMap<WaveShaderCache.Key, Bitmap> waveBitmaps = new HashMap<>();
+        try {
+            for (int i = 0; i < targets.length; i++) {
+                Bitmap target = targets[i];
+                if (!target.isMutable()) {
+                    throw new IllegalArgumentException("target bitmaps must be mutable");
+                }
+                WaveRenderer renderer = fromState(states[i]);
+                try {
+                    if (renderer.mBackend instanceof BitmapWaveBackend) {
+                        ((BitmapWaveBackend) renderer.mBackend).setSharedBitmaps(waveBitmaps);
+                    }
+                    renderer.setSize(target.getWidth(), target.getHeight());
+                    target.eraseColor(Color.TRANSPARENT);
+                    renderer.draw(new Canvas(target));
+                } finally {
+                    renderer.release();
+                }
+            }
+        } finally {
+            for (Bitmap waveBitmap : waveBitmaps.values()) {
+                waveBitmap.recycle();
+            }
+        }
+    }
+
+    static WaveRenderer fromState(WaveState state) {
+        WaveRenderer renderer = new WaveRenderer(state.style);
+        renderer.setState(state);
+        return renderer;
+    }
+
+    private void setState(WaveState state) {
+        setTopTitle(state.topTitle);
+        setCenterTitle(state.centerTitle);
+        setBottomTitle(state.bottomTitle);
+        if (state.shapePath != null) {
+            setShapePath(state.shapePath);
+        } else if (state.shapeDrawable != null) {
+            setShapeDrawable(state.shapeDrawable);
+        }
+        mProgressValue = state.progressValue;
+        mWaterLevelRatio = (float) state.progressValue / 100;
+        mWaveShiftRatio = state.waveShiftRatio;
+    }
+
+    void setSize(int width, int height) {
+        if (mWidth != width || mHeight != height) {
+            mWidth = width;
+            mHeight = height;
+            mShapeMaskDirty = true;
+            mShapeFillDirty = true;
+            mVersion++;
+        }
+    }
+
+    int getWidth() {
+        return mWidth;
+    }
+
+    int getHeight() {
+        return mHeight;
+    }
+
+    void draw(Canvas canvas) {
+        mDrawnWaveShiftRatio = mWaveShiftRatio;
+        mDrawnWaterLevelRatio = mWaterLevelRatio;
+        // Layers at other speeds do not repeat with the wave animation, the cache cannot hold them.
+        if (mFrameCacheSize > 0 && mCustomLayers == null && mWidth > 0 && mHeight > 0 && drawCachedFrame(canvas)) {
+            return;
+        }
+        drawFrame(canvas);
+    }
+
+    /**
+     * @param threshold Distance in pixels, 0 for any change.
+     * @return True if the wave shift or the water line moved by at least threshold since the
+     * last drawn frame, or if nothing has been drawn yet.
+     */
+    boolean hasWaveMoved(float threshold) {
+        if (Float.isNaN(mDrawnWaveShiftRatio) || mWaveLength <= 0) {
+            return true;
+        }
+        float shift = Math.abs(mWaveShiftRatio - mDrawnWaveShiftRatio) % 1f * mWaveLength;
+        // The wave repeats every period, so a shift from 0.99 to 0 is a small one.
+        shift = Math.min(shift, mWaveLength - shift);
+        float waterLine = Math.abs(mWaterLevelRatio - mDrawnWaterLevelRatio) * mHeight;
+        return shift >= threshold || waterLine >= threshold;
+    }
+
+    /**
+     * Draw the current wave shift from the frame cache, rebuilding it if the state has been
+     * stable since the previous frame. While the state keeps changing, e.g. while the water
+     * rises, frames are drawn directly so the cache is not rebuilt on every frame.
+     *
+     * @return False if the frame has to be drawn directly.
+     */
+    private boolean drawCachedFrame(Canvas canvas) {
+        if (mFrameCacheVersion != mVersion) {
+            boolean stable = mLastDrawVersion == mVersion;
+            mLastDrawVersion = mVersion;
+            if (!stable) {
+                return false;
+            }
+            if (mFrameCache == null || !mFrameCache.matches(mWidth, mHeight, mFrameCacheSize)) {
+                // The old sheet is left to the GC, the last display list may still draw it.
+                mFrameCache = new WaveFrameCache(mWidth, mHeight, mFrameCacheSize);
+            }
+            mFrameCache.fill(this);
+            mFrameCacheVersion = mVersion;
+        }
+        mFrameCache.drawFrame(canvas, mFrameCache.getFrameIndex(mWaveShiftRatio), 0, 0, null);
+        return true;
+    }
+
+    void setFrameCacheSize(int frameCount) {
+        if (mFrameCacheSize != frameCount) {
+            mFrameCacheSize = frameCount;
+            mFrameCacheVersion = -1;
+            if (frameCount <= 0) {
+                // Not recycled, the last display list may still draw it. Only release() does.
+                mFrameCache = null;
+            }
+        }
+    }
+
+    int getFrameCacheSize() {
+        return mFrameCacheSize;
+    }
+
+    void drawFrame(Canvas canvas) {
+        updateWaveShader();
+        // Draw Wave.
+        if (mWaveLength > 0) {
+            // Scale according to amplitudeRatio, this decides the height of waves.
+            // Translate according to waveShiftRatio and waterLevelRatio.
+            // This decides the start position(waveShiftRatio for x, waterLevelRatio for y) of waves.
+            mBackend.setPosition(mWaveShiftRatio * mWaveLength, (1f - mWaterLevelRatio) * mHeight,
+                    mAmplitudeRatio / DEFAULT_AMPLITUDE_RATIO, mTilt);
+            // Custom layers keep their own colors.
+            if ((mGradientColors != null || mTexture != null) && mCustomLayers == null) {
+                updateFillShader();
+            }
+
+            // Get borderWidth.
+            float borderWidth = mBorderPaint.getStrokeWidth();
+
+            if (mHostClipped) {
+                // The host clips to the outline, plain rects are enough.
+                canvas.drawRect(0, 0, mWidth, mHeight, mWaveBgPaint);
+                if (isWaveShaded()) {
+                    canvas.drawRect(0, 0, mWidth, mHeight, mWavePaint);
+                } else {
+                    drawWave(canvas);
+                }
+                if (borderWidth > 0) {
+                    drawOutlineBorder(canvas, borderWidth);
+                }
+            } else {
+                drawShape(canvas, borderWidth);
+            }
+
+            boolean traced = WaveTrace.beginSection(WaveTrace.TITLES);
+            drawTitles(canvas);
+            if (traced) {
+                WaveTrace.endSection();
+            }
+        }
+    }
+
+    private void drawShape(Canvas canvas, float borderWidth) {
+        // The default type is triangle.
+        switch (mShapeType) {
+            // Draw triangle
+            case 0:
+                // Currently does not support the border settings
+                canvas.drawPath(getTrianglePath(), mWaveBgPaint);
+                break;
+            // Draw circle
+            case 1:
+                // Views are measured square, drawables may be of any size.
+                float size = Math.min(mWidth, mHeight);
+                if (borderWidth > 0) {
+                    canvas.drawCircle(mWidth / 2f, mHeight / 2f,
+                            (size - borderWidth) / 2f - 1f, mBorderPaint);
+                }
+                // Draw background
+                canvas.drawCircle(mWidth / 2f, mHeight / 2f, size / 2f - borderWidth, mWaveBgPaint);
+                break;
+            // Draw square
+            case 2:
+                if (borderWidth > 0) {
+                    canvas.drawRect(
+                            borderWidth / 2f,
+                            borderWidth / 2f,
+                            mWidth - borderWidth / 2f - 0.5f,
+                            mHeight - borderWidth / 2f - 0.5f,
+                            mBorderPaint);
+                }
+
+                canvas.drawRect(borderWidth, borderWidth, mWidth - borderWidth,
+                        mHeight - borderWidth, mWaveBgPaint);
+                break;
+            // Draw rectangle
+            case 3:
+                setBorderRect(borderWidth);
+                if (mIsRoundRectangle) {
+                    canvas.drawRoundRect(mBorderRect, mRoundRectangleXY, mRoundRectangleXY, mWaveBgPaint);
+                } else {
+                    canvas.drawRect(mBorderRect, mWaveBgPaint);
+                }
+                break;
+            // Draw custom shape
+            case 4:
+                Bitmap mask = getShapeMask();
+                if (mask == null) {
+                    return;
+                }
+                // An ALPHA_8 bitmap is drawn with the paint's color and shader, so the
+                // mask costs a single textured quad per layer, whatever the shape.
+                canvas.drawBitmap(mask, 0, 0, mWaveBgPaint);
+                break;
+            default:
+                return;
+        }
+        drawShapeWave(canvas, borderWidth);
+        if (mShapeType == ShapeType.CUSTOM.ordinal() && borderWidth > 0 && mScaledShapePath != null) {
+            canvas.drawPath(mScaledShapePath, mBorderPaint);
+        } else if (mShapeType == ShapeType.RECTANGLE.ordinal() && mRectangleBorder && borderWidth > 0) {
+            if (mIsRoundRectangle) {
+                canvas.drawRoundRect(mBorderRect, mRoundRectangleXY, mRoundRectangleXY, mBorderPaint);
+            } else {
+                canvas.drawRect(mBorderRect, mBorderPaint);
+            }
+        }
+    }
+
+    private void setBorderRect(float borderWidth) {
+        if (borderWidth > 0) {
+            mBorderRect.set(borderWidth / 2f, borderWidth / 2f,
+                    mWidth - borderWidth / 2f - 0.5f, mHeight - borderWidth / 2f - 0.5f);
+        } else {
+            mBorderRect.set(0, 0, mWidth, mHeight);
+        }
+    }
+
+    /**
+     * Fill the area of the shape covered by water with the paint, e.g. with its wave shader.
+     */
+    private void drawWaveArea(Canvas canvas, Paint paint, float borderWidth) {
+        switch (mShapeType) {
+            case 0:
+                canvas.drawPath(getTrianglePath(), paint);
+                break;
+            case 1:
+                canvas.drawCircle(mWidth / 2f, mHeight / 2f, Math.min(mWidth, mHeight) / 2f - borderWidth, paint);
+                break;
+            case 2:
+                canvas.drawRect(borderWidth, borderWidth, mWidth - borderWidth, mHeight - borderWidth, paint);
+                break;
+            case 3:
+                setBorderRect(borderWidth);
+                if (mIsRoundRectangle) {
+                    canvas.drawRoundRect(mBorderRect, mRoundRectangleXY, mRoundRectangleXY, paint);
+                } else {
+                    canvas.drawRect(mBorderRect, paint);
+                }
+                break;
+            case 4:
+                Bitmap mask = getShapeMask();
+                if (mask != null) {
+                    canvas.drawBitmap(mask, 0, 0, paint);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Draw the wave inside the shape, never through a layer or a path clip: shaded waves fill the
+     * shape once, runs of custom layers once per run. Other waves are drawn by their coverage,
+     * inside a rectangle clip, either in the fill or onto the cached shape fill.
+     */
+    private void drawShapeWave(Canvas canvas, float borderWidth) {
+        if (isWaveShaded()) {
+            drawWaveArea(canvas, mWavePaint, borderWidth);
+        } else if (mBackend instanceof LayeredWaveBackend) {
+            // Custom layers at other speeds before API 28, they keep their own colors.
+            LayeredWaveBackend layered = (LayeredWaveBackend) mBackend;
+            for (int i = 0; i < layered.getRunCount(); i++) {
+                Shader run = layered.getRunShader(i);
+                if (run != null) {
+                    mWavePaint.setShader(run);
+                    drawWaveArea(canvas, mWavePaint, borderWidth);
+                }
+            }
+            mWavePaint.setShader(mWaveShader);
+        } else if (mShapeType == ShapeType.SQUARE.ordinal()
+                || (mShapeType == ShapeType.RECTANGLE.ordinal() && !mIsRoundRectangle)) {
+            canvas.save();
+            if (mShapeType == ShapeType.SQUARE.ordinal()) {
+                canvas.clipRect(borderWidth, borderWidth, mWidth - borderWidth, mHeight - borderWidth);
+            } else {
+                canvas.clipRect(mBorderRect);
+            }
+            drawWave(canvas);
+            canvas.restore();
+        } else {
+            Shader shapeFill = getShapeFillShader(borderWidth);
+            mWavePaint.setShader(shapeFill);
+            canvas.save();
+            canvas.clipRect(0, 0, mWidth, mHeight);
+            mBackend.drawCoverage(canvas, mWavePaint);
+            canvas.restore();
+            mWavePaint.setShader(mFillShader != null ? mFillShader : mWaveShader);
+        }
+    }
+
+    /**
+     * @return The area of the shape covered by water in the fill, or in the opaque wave color for
+     * backends without shader, drawn once per shape, size and fill. The wave coverage then masks
+     * it in a single pass, so curved shapes need neither a layer nor a path clip.
+     */
+    private Shader getShapeFillShader(float borderWidth) {
+        Shader fill = mFillShader;
+        int color = mWaveColor | 0xff000000;
+        if (mShapeFillDirty || mShapeFillShader == null || mShapeFillSource != fill
+                || (fill == null && mShapeFillColor != color) || mShapeFillAntiAlias != mAntiAlias) {
+            if (mShapeFill == null || mShapeFill.getWidth() != mWidth || mShapeFill.getHeight() != mHeight) {
+                // The old bitmap is left to the GC, the last display list may still draw it.
+                mShapeFill = Bitmap.createBitmap(mWidth, mHeight, Bitmap.Config.ARGB_8888);
+                mShapeFillShader = new BitmapShader(mShapeFill, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
+            } else {
+                mShapeFill.eraseColor(Color.TRANSPARENT);
+            }
+            Paint paint = new Paint();
+            paint.setAntiAlias(mAntiAlias);
+            if (fill != null) {
+                paint.setShader(fill);
+            } else {
+                paint.setColor(color);
+            }
+            drawWaveArea(new Canvas(mShapeFill), paint, borderWidth);
+            mShapeFillDirty = false;
+            mShapeFillSource = fill;
+            mShapeFillColor = color;
+            mShapeFillAntiAlias = mAntiAlias;
+        }
+        return mShapeFillShader;
+    }
+
+    /**
+     * Put the fill on the wave paint, the backend draws it through the alpha of the wave, see
+     * {@link WaveRenderBackend#drawCoverage}. The shader is kept across frames, only a new size or
+     * fill replaces it.
+     */
+    private void updateFillShader() {
+        if (mFillShader == null || mFillWidth != mWidth || mFillHeight != mHeight) {
+            if (mTexture != null) {
+                mFillShader = new BitmapShader(mTexture, Shader.TileMode.REPEAT, Shader.TileMode.REPEAT);
+            } else {
+                boolean horizontal = mGradientOrientation == WaveLoadingView.GradientOrientation.HORIZONTAL.ordinal();
+                mFillShader = new LinearGradient(0, 0, horizontal ? mWidth : 0, horizontal ? 0 : mHeight,
+                        mGradientColors, mGradientPositions, Shader.TileMode.CLAMP);
+            }
+            mFillWidth = mWidth;
+            mFillHeight = mHeight;
+        }
+        if (mWavePaint.getShader() != mFillShader) {
+            mWavePaint.setShader(mFillShader);
+        }
+    }
+
+    /**
+     * @return True if the wave shader fills the shape in a single draw, false if the backend has
+     * to draw the wave by itself, as it does for a fill.
+     */
+    private boolean isWaveShaded() {
+        return mWaveShader != null && mFillShader == null;
+    }
+
+    static void checkRenderBackend(WaveRenderBackend.Type type) {
+        if (type == WaveRenderBackend.Type.LAYERED) {
+            throw new IllegalArgumentException("LAYERED is selected by setting wave layers");
+        }
+    }
+
+    static void checkGradient(int[] colors, float[] positions) {
+        if (colors == null || colors.length < 2) {
+            throw new IllegalArgumentException("needs at least 2 colors");
+        }
+        if (positions != null && positions.length != colors.length) {
+            throw new IllegalArgumentException("colors and positions must have the same length");
+        }
+    }
+
+    /**
+     * @param colors    At least two colors, null to go back to the wave color.
+     * @param positions Relative positions of the colors, null to space them evenly.
+     */
+    void setWaveGradient(int[] colors, float[] positions, int orientation) {
+        mVersion++;
+        mGradientColors = colors;
+        mGradientPositions = positions;
+        mGradientOrientation = orientation;
+        resetFillShader();
+    }
+
+    /**
+     * @param texture Bitmap repeated over the view, null to go back to the gradient or wave color.
+     */
+    void setWaveTexture(Bitmap texture) {
+        mVersion++;
+        mTexture = texture;
+        resetFillShader();
+    }
+
+    Bitmap getWaveTexture() {
+        return mTexture;
+    }
+
+    private void resetFillShader() {
+        mFillShader = null;
+        mWavePaint.setShader(mWaveShader);
+    }
+
+    /**
+     * Fill the current clip with the wave, in the fill if there is one.
+     */
+    private void drawWave(Canvas canvas) {
+        if (mFillShader != null) {
+            mBackend.drawCoverage(canvas, mWavePaint);
+        } else {
+            mBackend.drawWave(canvas, mWavePaint);
+        }
+    }
+
+    private void drawTitles(Canvas canvas) {
+        // I know, the code written here is very shit.
+        if (!TextUtils.isEmpty(mTopTitle)) {
+            float top = mTopTitlePaint.measureText(mTopTitle);
+            // Draw the stroke of top text
+            if (mStrokeTitles) {
+                canvas.drawText(mTopTitle, (mWidth - top) / 2,
+                        mHeight * 2 / 10.0f, mTopTitleStrokePaint);
+            }
+            // Draw the top text
+            canvas.drawText(mTopTitle, (mWidth - top) / 2,
+                    mHeight * 2 / 10.0f, mTopTitlePaint);
+            // Draw the part of the top text that is under water
+            drawSubmergedTitle(canvas, mTopTitle, 0, mTopTitle.length(), (mWidth - top) / 2,
+                    mHeight * 2 / 10.0f, mTopTitlePaint);
+        }
+
+        if (mCenterTitlePercent != PercentTitle.NONE.ordinal()) {
+            drawCenterPercent(canvas);
+        } else if (!TextUtils.isEmpty(mCenterTitle)) {
+            float middle = mCenterTitlePaint.measureText(mCenterTitle);
+            // Draw the stroke of centered text
+            if (mStrokeTitles) {
+                canvas.drawText(mCenterTitle, (mWidth - middle) / 2,
+                        mHeight / 2 - ((mCenterTitleStrokePaint.descent() + mCenterTitleStrokePaint.ascent()) / 2), mCenterTitleStrokePaint);
+            }
+            // Draw the centered text
+            canvas.drawText(mCenterTitle, (mWidth - middle) / 2,
+                    mHeight / 2 - ((mCenterTitlePaint.descent() + mCenterTitlePaint.ascent()) / 2), mCenterTitlePaint);
+            // Draw the part of the centered text that is under water
+            drawSubmergedTitle(canvas, mCenterTitle, 0, mCenterTitle.length(), (mWidth - middle) / 2,
+                    mHeight / 2 - ((mCenterTitlePaint.descent() + mCenterTitlePaint.ascent()) / 2), mCenterTitlePaint);
+        }
+
+        if (!TextUtils.isEmpty(mBottomTitle)) {
+            float bottom = mBottomTitlePaint.measureText(mBottomTitle);
+            // Draw the stroke of bottom text
+            if (mStrokeTitles) {
+                canvas.drawText(mBottomTitle, (mWidth - bottom) / 2,
+                        mHeight * 8 / 10.0f - ((mBottomTitleStrokePaint.descent() + mBottomTitleStrokePaint.ascent()) / 2), mBottomTitleStrokePaint);
+            }
+            // Draw the bottom text
+            canvas.drawText(mBottomTitle, (mWidth - bottom) / 2,
+                    mHeight * 8 / 10.0f - ((mBottomTitlePaint.descent() + mBottomTitlePaint.ascent()) / 2), mBottomTitlePaint);
+            // Draw the part of the bottom text that is under water
+            drawSubmergedTitle(canvas, mBottomTitle, 0, mBottomTitle.length(), (mWidth - bottom) / 2,
+                    mHeight * 8 / 10.0f - ((mBottomTitlePaint.descent() + mBottomTitlePaint.ascent()) / 2), mBottomTitlePaint);
+        }
+    }
+
+    /**
+     * Regenerate the wave shader if one of its inputs changed since the last call, cheap otherwise.
+     */
+    void updateWaveShader() {
+        // IllegalArgumentException: width and height must be > 0 while loading Bitmap from View
+        // http://stackoverflow.com/questions/17605662/illegalargumentexception-width-and-height-must-be-0-while-loading-bitmap-from
+        // The backend only regenerates the wave when one of its inputs actually changed.
+        if (mWidth > 0 && mHeight > 0) {
+            boolean traced = WaveTrace.beginSection(WaveTrace.UPDATE_SHADER);
+            // The shader only holds a single wave period, REPEAT tiles it across the view.
+            mWaveLength = computeWaveLength();
+            mBackend.update(mWidth, mHeight, mWaveLength, mWaveColor, waveLayers());
+            if (mWaveShader != mBackend.getShader()) {
+                setWaveShader(mBackend.getShader());
+            }
+            if (traced) {
+                WaveTrace.endSection();
+            }
+        }
+    }
+
+    private void setWaveShader(Shader shader) {
+        mWaveShader = shader;
+        if (mFillShader == null) {
+            mWavePaint.setShader(mWaveShader);
+        }
+        if (mSubmergedTitlePaint != null) {
+            mSubmergedTitlePaint.setShader(mWaveShader);
+            updateSubmergedTitleFilter();
+        }
+    }
+
+    /**
+     * @return Width of the wave bitmap for the current size, one wave period.
+     */
+    int computeWaveLength() {
+        return Math.max(1, Math.round(mWidth * mWaveLengthRatio));
+    }
+
+    /**
+     * Free the backend, shape mask, shape fill and frame cache right away. Only for renderers that are done
+     * and never drew into a display list, e.g. those of {@link #render(Bitmap[], WaveState[])}.
+     */
+    void release() {
+        setWaveShader(null);
+        mBackend.release();
+        if (mShapeMask != null) {
+            mShapeMask.recycle();
+            mShapeMask = null;
+        }
+        if (mShapeFill != null) {
+            mShapeFill.recycle();
+            mShapeFill = null;
+            mShapeFillShader = null;
+        }
+        if (mFrameCache != null) {
+            mFrameCache.recycle();
+            mFrameCache = null;
+        }
+    }
+
+    /**
+     * Switch to another way of producing the wave, the previous backend is released.
+     *
+     * @param type A WaveRenderBackend.Type ordinal.
+     */
+    void setRenderBackend(int type) {
+        mRenderBackendType = type;
+        if (mCustomLayers != null || mBackend.getType().ordinal() == type) {
+            return;
+        }
+        replaceBackend(newBackend(type));
+    }
+
+    private void replaceBackend(WaveRenderBackend backend) {
+        mVersion++;
+        // Not released: the last recorded frame may still draw its bitmap, the GC frees it.
+        mBackend = backend;
+        mBackend.setResolution(mShaderResolution);
+        updateFrontLayerOnly();
+        setWaveShader(null);
+    }
+
+    /**
+     * Draw these layers instead of the built-in ones, baked into as few bitmaps as their speeds allow.
+     *
+     * @param layers Back to front, null to go back to the built-in layers and selected backend.
+     */
+    void setCustomWaveLayers(WaveLayer[] layers) {
+        if (layers == null && mCustomLayers == null) {
+            return;
+        }
+        mCustomLayers = layers;
+        resetFillShader();
+        replaceBackend(layers != null ? new LayeredWaveBackend(layers) : newBackend(mRenderBackendType));
+    }
+
+    WaveLayer[] getCustomWaveLayers() {
+        return mCustomLayers;
+    }
+
+    /**
+     * @return The layers as an array, null for none.
+     */
+    static WaveLayer[] toLayerArray(List<WaveLayer> layers) {
+        if (layers == null || layers.isEmpty()) {
+            return null;
+        }
+        WaveLayer[] array = layers.toArray(new WaveLayer[layers.size()]);
+        for (WaveLayer layer : array) {
+            if (layer == null) {
+                throw new IllegalArgumentException("layers must not contain null");
+            }
+        }
+        return array;
+    }
+
+    static List<WaveLayer> toLayerList(WaveLayer[] layers) {
+        return layers == null ? null : Collections.unmodifiableList(Arrays.asList(layers.clone()));
+    }
+
+    /**
+     * Apply a WaveQualityGovernor level: anti-aliasing goes first, then shader resolution.
+     * The frame rate is up to the host.
+     *
+     * @param level         A WaveQualityGovernor.Level ordinal.
+     * @param lowResolution Shader resolution from LOW_RESOLUTION on.
+     */
+    void setQualityLevel(int level, float lowResolution) {
+        mQualityAntiAlias = level < WaveQualityGovernor.Level.NO_ANTI_ALIAS.ordinal();
+        mQualityResolution = level < WaveQualityGovernor.Level.LOW_RESOLUTION.ordinal() ? 1f : lowResolution;
+        updateQuality();
+    }
+
+    /**
+     * Drop detail that is invisible at small sizes. From SMALL on a single wave layer and fill
+     * only titles are drawn, from TINY on also without anti-aliasing and with a coarser shader.
+     *
+     * @param detailLevel A WaveLoadingView.DetailLevel ordinal.
+     */
+    void setDetailLevel(int detailLevel) {
+        if (mDetailLevel != detailLevel) {
+            mDetailLevel = detailLevel;
+            updateQuality();
+        }
+    }
+
+    int getDetailLevel() {
+        return mDetailLevel;
+    }
+
+    private void updateQuality() {
+        mVersion++;
+        boolean tiny = mDetailLevel >= DetailLevel.TINY.ordinal();
+        mAntiAlias = mQualityAntiAlias && !tiny;
+        mWavePaint.setAntiAlias(mAntiAlias);
+        mWaveBgPaint.setAntiAlias(mAntiAlias);
+        mBorderPaint.setAntiAlias(mAntiAlias);
+        mShaderResolution = Math.min(mQualityResolution, tiny ? TINY_SHADER_RESOLUTION : 1f);
+        mBackend.setResolution(mShaderResolution);
+        updateFrontLayerOnly();
+        mStrokeTitles = mDetailLevel < DetailLevel.SMALL.ordinal();
+    }
+
+    /**
+     * Custom layers drop to the front one at small sizes, like the built-in layers do.
+     */
+    private void updateFrontLayerOnly() {
+        if (mBackend instanceof LayeredWaveBackend) {
+            ((LayeredWaveBackend) mBackend).setFrontLayerOnly(mDetailLevel >= DetailLevel.SMALL.ordinal());
+        }
+    }
+
+    /**
+     * @return The wave layers to draw at the current detail level.
+     */
+    private float[] waveLayers() {
+        return mDetailLevel < DetailLevel.SMALL.ordinal() ? mWaveLayers : SINGLE_WAVE_LAYER;
+    }
+
+    WaveRenderBackend getRenderBackend() {
+        return mBackend;
+    }
+
+    /**
+     * @param layers Phase and alpha factor of each wave layer, see {@link WaveRenderBackend#update}.
+     */
+    void setWaveLayers(float[] layers) {
+        mVersion++;
+        mWaveLayers = layers;
+    }
+
+    /**
+     * Generate the wave bitmap for the current state into the shared cache, without installing
+     * it. Backends without bitmap have nothing to prewarm.
+     */
+    void prewarmWaveShader() {
+        if (mBackend instanceof BitmapWaveBackend && mWidth > 0 && mHeight > 0) {
+            ((BitmapWaveBackend) mBackend).prewarm(computeWaveLength(), mHeight, mWaveColor, waveLayers());
+        }
+    }
+
+    static WaveRenderBackend newBackend(int type) {
+        if (type == WaveRenderBackend.Type.VECTOR_PATH.ordinal()) {
+            return new VectorPathBackend();
+        } else if (type == WaveRenderBackend.Type.PIXEL_BUFFER.ordinal()) {
+            return new PixelBufferBackend();
+        }
+        return new BitmapShaderBackend();
+    }
+
+    /**
+     * @param hostClipped True if the canvas of the next frames is clipped to the outline, i.e.
+     *                    the host clips to its outline and draws hardware accelerated.
+     */
+    void setHostClipped(boolean hostClipped) {
+        if (mHostClipped != hostClipped) {
+            mVersion++;
+            mHostClipped = hostClipped;
+        }
+    }
+
+    /**
+     * @return Whether the shape can be expressed as an Outline: circles, squares and rectangles.
+     */
+    boolean hasOutlineShape() {
+        return mShapeType != ShapeType.TRIANGLE.ordinal() && mShapeType != ShapeType.CUSTOM.ordinal();
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    void getOutline(Outline outline) {
+        float borderWidth = mBorderPaint.getStrokeWidth();
+        int width = mWidth;
+        int height = mHeight;
+        if (mShapeType == ShapeType.CIRCLE.ordinal()) {
+            // Up to the outer edge of the border, which is drawn on top of the wave.
+            int inset = borderWidth > 0 ? 1 : 0;
+            int diameter = Math.min(width, height) - 2 * inset;
+            int left = (width - diameter) / 2;
+            int top = (height - diameter) / 2;
+            outline.setOval(left, top, left + diameter, top + diameter);
+        } else if (mShapeType == ShapeType.RECTANGLE.ordinal() && mIsRoundRectangle) {
+            int inset = Math.round(borderWidth / 2f);
+            outline.setRoundRect(inset, inset, width - inset, height - inset, mRoundRectangleXY);
+        } else {
+            outline.setRect(0, 0, width, height);
+        }
+    }
+
+    private void drawOutlineBorder(Canvas canvas, float borderWidth) {
+        if (mShapeType == ShapeType.CIRCLE.ordinal()) {
+            canvas.drawCircle(mWidth / 2f, mHeight / 2f,
+                    (Math.min(mWidth, mHeight) - borderWidth) / 2f - 1f, mBorderPaint);
+            return;
+        }
+        mBorderRect.set(borderWidth / 2f, borderWidth / 2f,
+                mWidth - borderWidth / 2f - 0.5f, mHeight - borderWidth / 2f - 0.5f);
+        if (mShapeType == ShapeType.RECTANGLE.ordinal() && mIsRoundRectangle) {
+            canvas.drawRoundRect(mBorderRect, mRoundRectangleXY, mRoundRectangleXY, mBorderPaint);
+        } else {
+            canvas.drawRect(mBorderRect, mBorderPaint);
+        }
+    }
+
+    private Path getTrianglePath() {
+        if (mTrianglePath == null || mTrianglePathWidth != mWidth || mTrianglePathHeight != mHeight
+                || mTrianglePathDirection != mTriangleDirection) {
+            Point start = new Point(0, mHeight);
+            mTrianglePath = getEquilateralTriangle(start, mWidth, mHeight, mTriangleDirection);
+            mTrianglePathWidth = mWidth;
+            mTrianglePathHeight = mHeight;
+            mTrianglePathDirection = mTriangleDirection;
+        }
+        return mTrianglePath;
+    }
+
+    private Bitmap getShapeMask() {
+        if (mShapeMaskDirty || mShapeMask == null) {
+            updateShapeMask();
+        }
+        return mShapeMask;
+    }
+
+    private void updateShapeMask() {
+        int width = mWidth;
+        int height = mHeight;
+        if (width <= 0 || height <= 0 || (mShapePath == null && mShapeDrawable == null)) {
+            return;
+        }
+        mShapeMaskDirty = false;
+        if (mShapeMask == null || mShapeMask.getWidth() != width || mShapeMask.getHeight() != height) {
+            // The old mask is left to the GC, the last display list may still draw it.
+            mShapeMask = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+        } else {
+            mShapeMask.eraseColor(Color.TRANSPARENT);
+        }
+        Canvas canvas = new Canvas(mShapeMask);
+
+        float inset = mBorderPaint.getStrokeWidth() / 2f;
+        RectF bounds = new RectF(inset, inset, width - inset, height - inset);
+        Matrix fit = new Matrix();
+        if (mShapePath != null) {
+            RectF pathBounds = new RectF();
+            mShapePath.computeBounds(pathBounds, true);
+            fit.setRectToRect(pathBounds, bounds, Matrix.ScaleToFit.CENTER);
+            if (mScaledShapePath == null) {
+                mScaledShapePath = new Path();
+            }
+            mShapePath.transform(fit, mScaledShapePath);
+            Paint maskPaint = new Paint();
+            maskPaint.setAntiAlias(true);
+            canvas.drawPath(mScaledShapePath, maskPaint);
+        } else {
+            mScaledShapePath = null;
+            int intrinsicWidth = mShapeDrawable.getIntrinsicWidth();
+            int intrinsicHeight = mShapeDrawable.getIntrinsicHeight();
+            if (intrinsicWidth > 0 && intrinsicHeight > 0) {
+                fit.setRectToRect(new RectF(0, 0, intrinsicWidth, intrinsicHeight), bounds, Matrix.ScaleToFit.CENTER);
+                fit.mapRect(bounds);
+            }
+            mShapeDrawable.setBounds(Math.round(bounds.left), Math.round(bounds.top),
+                    Math.round(bounds.right), Math.round(bounds.bottom));
+            mShapeDrawable.draw(canvas);
+        }
+    }
+
+    void setWaveBgColor(int color) {
+        mVersion++;
+        mWaveBgColor = color;
+        // The background is drawn with its own paint, the shader does not depend on it.
+        mWaveBgPaint.setColor(color);
+    }
+
+    int getWaveBgColor() {
+        return mWaveBgColor;
+    }
+
+    void setWaveColor(int color) {
+        mVersion++;
+        mWaveColor = color;
+    }
+
+    int getWaveColor() {
+        return mWaveColor;
+    }
+
+    void setBorderWidth(float width) {
+        mVersion++;
+        mBorderPaint.setStrokeWidth(width);
+        // Custom shapes are inset by half the border.
+        mShapeMaskDirty = true;
+        mShapeFillDirty = true;
+    }
+
+    float getBorderWidth() {
+        return mBorderPaint.getStrokeWidth();
+    }
+
+    void setBorderColor(int color) {
+        mVersion++;
+        mBorderPaint.setColor(color);
+    }
+
+    int getBorderColor() {
+        return mBorderPaint.getColor();
+    }
+
+    void setShapeType(int shapeType) {
+        mVersion++;
+        mShapeType = shapeType;
+        mShapeFillDirty = true;
+    }
+
+    int getShapeType() {
+        return mShapeType;
+    }
+
+    void setTriangleDirection(int direction) {
+        mVersion++;
+        mTriangleDirection = direction;
+        mShapeFillDirty = true;
+    }
+
+    void setRoundRectangle(boolean roundRectangle, int roundRectangleXY) {
+        mVersion++;
+        mIsRoundRectangle = roundRectangle;
+        mRoundRectangleXY = roundRectangleXY;
+        mShapeFillDirty = true;
+    }
+
+    /**
+     * @param rectangleBorder True to stroke the border around rectangles as well, false by default.
+     */
+    void setRectangleBorder(boolean rectangleBorder) {
+        mVersion++;
+        mRectangleBorder = rectangleBorder;
+    }
+
+    void setShapePath(Path path) {
+        mVersion++;
+        mShapePath = new Path(path);
+        mShapeDrawable = null;
+        mShapeMaskDirty = true;
+        mShapeFillDirty = true;
+        mShapeType = ShapeType.CUSTOM.ordinal();
+    }
+
+    void setShapeDrawable(Drawable drawable) {
+        mVersion++;
+        mShapeDrawable = drawable;
+        mShapePath = null;
+        mShapeMaskDirty = true;
+        mShapeFillDirty = true;
+        mShapeType = ShapeType.CUSTOM.ordinal();
+    }
+
+    void setAmplitudeRatio(float amplitudeRatio) {
+        mVersion++;
+        mAmplitudeRatio = amplitudeRatio;
+    }
+
+    float getAmplitudeRatio() {
+        return mAmplitudeRatio;
+    }
+
+    void setWaveLengthRatio(float waveLengthRatio) {
+        mVersion++;
+        mWaveLengthRatio = waveLengthRatio;
+    }
+
+    float getWaveLengthRatio() {
+        return mWaveLengthRatio;
+    }
+
+    void setProgressValue(int progress) {
+        mVersion++;
+        mProgressValue = progress;
+    }
+
+    int getProgressValue() {
+        return mProgressValue;
+    }
+
+    void setWaveShiftRatio(float waveShiftRatio) {
+        mWaveShiftRatio = waveShiftRatio;
+    }
+
+    float getWaveShiftRatio() {
+        return mWaveShiftRatio;
+    }
+
+    void setWaterLevelRatio(float waterLevelRatio) {
+        mVersion++;
+        mWaterLevelRatio = waterLevelRatio;
+    }
+
+    float getWaterLevelRatio() {
+        return mWaterLevelRatio;
+    }
+
+    void setTilt(float tilt) {
+        if (mTilt != tilt) {
+            mVersion++;
+            mTilt = tilt;
+        }
+    }
+
+    float getTilt() {
+        return mTilt;
+    }
+
+    void setTopTitle(String topTitle) {
+        mVersion++;
+        mTopTitle = topTitle;
+        if (!TextUtils.isEmpty(topTitle)) {
+            ensureTopTitlePaints();
+        }
+    }
+
+    String getTopTitle() {
+        return mTopTitle;
+    }
+
+    void setCenterTitle(String centerTitle) {
+        mVersion++;
+        mCenterTitle = centerTitle;
+        if (!TextUtils.isEmpty(centerTitle)) {
+            ensureCenterTitlePaints();
+        }
+    }
+
+    String getCenterTitle() {
+        return mCenterTitle;
+    }
+
+    void setCenterTitlePercent(int percentTitle) {
+        mVersion++;
+        mCenterTitlePercent = percentTitle;
+        if (percentTitle != PercentTitle.NONE.ordinal()) {
+            ensureCenterTitlePaints();
+        }
+    }
+
+    int getCenterTitlePercent() {
+        return mCenterTitlePercent;
+    }
+
+    void setBottomTitle(String bottomTitle) {
+        mVersion++;
+        mBottomTitle = bottomTitle;
+        if (!TextUtils.isEmpty(bottomTitle)) {
+            ensureBottomTitlePaints();
+        }
+    }
+
+    String getBottomTitle() {
+        return mBottomTitle;
+    }
+
+    void setTitleSubmergedColor(int color) {
+        mVersion++;
+        mTitleSubmergedColor = color;
+        if (Color.alpha(color) == 0) {
+            mSubmergedTitlePaint = null;
+        } else {
+            if (mSubmergedTitlePaint == null) {
+                mSubmergedTitlePaint = new Paint();
+                mSubmergedTitlePaint.setAntiAlias(true);
+                mSubmergedTitlePaint.setShader(mWaveShader);
+            }
+            updateSubmergedTitleFilter();
+        }
+    }
+
+    int getTitleSubmergedColor() {
+        return mTitleSubmergedColor;
+    }
+
+    /**
+     * Tint every paint, e.g. for {@link Drawable#setColorFilter(ColorFilter)}.
+     * Submerged titles keep their own recoloring filter.
+     */
+    void setColorFilter(ColorFilter colorFilter) {
+        mVersion++;
+        mColorFilter = colorFilter;
+        mWavePaint.setColorFilter(colorFilter);
+        mWaveBgPaint.setColorFilter(colorFilter);
+        mBorderPaint.setColorFilter(colorFilter);
+        if (mTopTitlePaint != null) {
+            mTopTitlePaint.setColorFilter(colorFilter);
+            mTopTitleStrokePaint.setColorFilter(colorFilter);
+        }
+        if (mCenterTitlePaint != null) {
+            mCenterTitlePaint.setColorFilter(colorFilter);
+            mCenterTitleStrokePaint.setColorFilter(colorFilter);
+        }
+        if (mBottomTitlePaint != null) {
+            mBottomTitlePaint.setColorFilter(colorFilter);
+            mBottomTitleStrokePaint.setColorFilter(colorFilter);
+        }
+    }
+
+    private void drawCenterPercent(Canvas canvas) {
+        int value = mCenterTitlePercent == PercentTitle.PROGRESS.ordinal()
+                ? mProgressValue : Math.round(mWaterLevelRatio * 100);
+        if (mPercentTextSize != mCenterTitlePaint.getTextSize()) {
+            measurePercentChars();
+        }
+
+        // Write "value%" into the end of the buffer.
+        final char[] chars = mPercentChars;
+        int start = chars.length;
+        chars[--start] = '%';
+        float width = mPercentCharWidths[10];
+        // From a long, Math.abs(Integer.MIN_VALUE) is still negative as an int.
+        long remaining = Math.abs((long) value);
+        do {
+            int digit = (int) (remaining % 10);
+            chars[--start] = (char) ('0' + digit);
+            width += mPercentCharWidths[digit];
+            remaining /= 10;
+        } while (remaining > 0);
+        if (value < 0) {
+            chars[--start] = '-';
+            width += mPercentCharWidths[11];
+        }
+
+        float x = (mWidth - width) / 2;
+        float y = mHeight / 2 - mPercentBaselineOffset;
+        // Draw the stroke of the percentage
+        if (mStrokeTitles) {
+            canvas.drawText(chars, start, chars.length - start, x, y, mCenterTitleStrokePaint);
+        }
+        // Draw the percentage
+        canvas.drawText(chars, start, chars.length - start, x, y, mCenterTitlePaint);
+        // Draw the part of the percentage that is under water
+        drawSubmergedTitle(canvas, mPercentText, start, chars.length, x, y, mCenterTitlePaint);
+    }
+
+    /**
+     * Draw the part of a title that is under water in the submerged title color, if one is set.
+     * The wave shader masks it in a single draw. Without one, runs of custom layers mask it once
+     * per run, and wave paths clip it to the front layer, the only one recoloring it.
+     */
+    private void drawSubmergedTitle(Canvas canvas, CharSequence text, int start, int end, float x, float y,
+                                    Paint titlePaint) {
+        if (mSubmergedTitlePaint == null) {
+            return;
+        }
+        Paint submerged = mSubmergedTitlePaint;
+        submerged.setTextSize(titlePaint.getTextSize());
+        submerged.setTypeface(titlePaint.getTypeface());
+        if (mWaveShader != null) {
+            canvas.drawText(text, start, end, x, y, submerged);
+        } else if (mBackend instanceof LayeredWaveBackend) {
+            LayeredWaveBackend layered = (LayeredWaveBackend) mBackend;
+            for (int i = 0; i < layered.getRunCount(); i++) {
+                Shader run = layered.getRunShader(i);
+                if (run != null) {
+                    submerged.setShader(run);
+                    canvas.drawText(text, start, end, x, y, submerged);
+                }
+            }
+            submerged.setShader(null);
+        } else if (mBackend instanceof VectorPathBackend) {
+            int saveCount = canvas.save();
+            ((VectorPathBackend) mBackend).clipToFrontLayer(canvas);
+            // The filter takes the alpha of the front layer as coverage.
+            submerged.setColor(mWaveColor);
+            canvas.drawText(text, start, end, x, y, submerged);
+            submerged.setColor(Color.BLACK);
+            canvas.restoreToCount(saveCount);
+        }
+    }
+
+    private void updateSubmergedTitleFilter() {
+        // Replace the wave color with the submerged title color, but keep the wave alpha as
+        // coverage. The alpha is scaled so translucent wave colors still fully recolor the text.
+        float coverage = Color.alpha(mWaveColor) == 0 ? 0 : 255f / Color.alpha(mWaveColor);
+        float alpha = Color.alpha(mTitleSubmergedColor) / 255f;
+        ColorMatrix matrix = new ColorMatrix(new float[]{
+                0, 0, 0, 0, Color.red(mTitleSubmergedColor),
+                0, 0, 0, 0, Color.green(mTitleSubmergedColor),
+                0, 0, 0, 0, Color.blue(mTitleSubmergedColor),
+                0, 0, 0, coverage * alpha, 0});
+        mSubmergedTitlePaint.setColorFilter(new ColorMatrixColorFilter(matrix));
+    }
+
+    private void measurePercentChars() {
+        mCenterTitlePaint.getTextWidths(PERCENT_CHARS, 0, PERCENT_CHARS.length, mPercentCharWidths);
+        mPercentBaselineOffset = (mCenterTitlePaint.descent() + mCenterTitlePaint.ascent()) / 2;
+        mPercentTextSize = mCenterTitlePaint.getTextSize();
+    }
+
+    // Title paints for modification, created from the style on first use.
+    // Handing one out counts as a change, since the caller is about to modify it.
+    Paint topTitlePaint() {
+        mVersion++;
+        ensureTopTitlePaints();
+        return mTopTitlePaint;
+    }
+
+    Paint topTitleStrokePaint() {
+        mVersion++;
+        ensureTopTitlePaints();
+        return mTopTitleStrokePaint;
+    }
+
+    Paint centerTitlePaint() {
+        mVersion++;
+        ensureCenterTitlePaints();
+        return mCenterTitlePaint;
+    }
+
+    Paint centerTitleStrokePaint() {
+        mVersion++;
+        ensureCenterTitlePaints();
+        return mCenterTitleStrokePaint;
+    }
+
+    Paint bottomTitlePaint() {
+        mVersion++;
+        ensureBottomTitlePaints();
+        return mBottomTitlePaint;
+    }
+
+    Paint bottomTitleStrokePaint() {
+        mVersion++;
+        ensureBottomTitlePaints();
+        return mBottomTitleStrokePaint;
+    }
+
+    // Read access without creating the paints, falls back to the style.
+    int getTopTitleColor() {
+        return mTopTitlePaint != null ? mTopTitlePaint.getColor() : mStyle.topTitleColor;
+    }
+
+    float getTopTitleSize() {
+        return mTopTitlePaint != null ? mTopTitlePaint.getTextSize() : mStyle.topTitleSize;
+    }
+
+    int getCenterTitleColor() {
+        return mCenterTitlePaint != null ? mCenterTitlePaint.getColor() : mStyle.centerTitleColor;
+    }
+
+    float getCenterTitleSize() {
+        return mCenterTitlePaint != null ? mCenterTitlePaint.getTextSize() : mStyle.centerTitleSize;
+    }
+
+    int getBottomTitleColor() {
+        return mBottomTitlePaint != null ? mBottomTitlePaint.getColor() : mStyle.bottomTitleColor;
+    }
+
+    float getBottomTitleSize() {
+        return mBottomTitlePaint != null ? mBottomTitlePaint.getTextSize() : mStyle.bottomTitleSize;
+    }
+
+    private void ensureTopTitlePaints() {
+        if (mTopTitlePaint == null) {
+            mTopTitlePaint = WaveStyle.newTitlePaint();
+            mTopTitleStrokePaint = WaveStyle.newTitleStrokePaint();
+            mTopTitlePaint.setColorFilter(mColorFilter);
+            mTopTitleStrokePaint.setColorFilter(mColorFilter);
+            applyTopTitle();
+        }
+    }
+
+    private void ensureCenterTitlePaints() {
+        if (mCenterTitlePaint == null) {
+            mCenterTitlePaint = WaveStyle.newTitlePaint();
+            mCenterTitleStrokePaint = WaveStyle.newTitleStrokePaint();
+            mCenterTitlePaint.setColorFilter(mColorFilter);
+            mCenterTitleStrokePaint.setColorFilter(mColorFilter);
+            applyCenterTitle();
+        }
+    }
+
+    private void ensureBottomTitlePaints() {
+        if (mBottomTitlePaint == null) {
+            mBottomTitlePaint = WaveStyle.newTitlePaint();
+            mBottomTitleStrokePaint = WaveStyle.newTitleStrokePaint();
+            mBottomTitlePaint.setColorFilter(mColorFilter);
+            mBottomTitleStrokePaint.setColorFilter(mColorFilter);
+            applyBottomTitle();
+        }
+    }
+
+    private void applyTopTitle() {
+        WaveStyle.applyTitle(mTopTitlePaint, mTopTitleStrokePaint, mStyle.topTitleColor,
+                mStyle.topTitleSize, mStyle.topTitleStrokeColor, mStyle.topTitleStrokeWidth);
+    }
+
+    private void applyCenterTitle() {
+        WaveStyle.applyTitle(mCenterTitlePaint, mCenterTitleStrokePaint, mStyle.centerTitleColor,
+                mStyle.centerTitleSize, mStyle.centerTitleStrokeColor, mStyle.centerTitleStrokeWidth);
+    }
+
+    private void applyBottomTitle() {
+        WaveStyle.applyTitle(mBottomTitlePaint, mBottomTitleStrokePaint, mStyle.bottomTitleColor,
+                mStyle.bottomTitleSize, mStyle.bottomTitleStrokeColor, mStyle.bottomTitleStrokeWidth);
+    }
+
+    /**
+     * Draw EquilateralTriangle
+     *
+     * @param p1        Start point
+     * @param width     The width of triangle
+     * @param height    The height of triangle
+     * @param direction The direction of triangle
+     * @return Path
+     */
+    private static Path getEquilateralTriangle(Point p1, int width, int height, int direction) {
+        Point p2 = null, p3 = null;
+        // NORTH
+        if (direction == 0) {
+            p2 = new Point(p1.x + width, p1.y);
+            p3 = new Point(p1.x + (width / 2), (int) (height - Math.sqrt(3.0) / 2 * height));
+        }
+        // SOUTH
+        else if (direction == 1) {
+            p2 = new Point(p1.x, p1.y - height);
+            p3 = new Point(p1.x + width, p1.y - height);
+            p1.x = p1.x + (width / 2);
+            p1.y = (int) (Math.sqrt(3.0) / 2 * height);
+        }
+        // EAST
+        else if (direction == 2) {
+            p2 = new Point(p1.x, p1.y - height);
+            p3 = new Point((int) (Math.sqrt(3.0) / 2 * width), p1.y / 2);
+        }
+        // WEST
+        else if (direction == 3) {
+            p2 = new Point(p1.x + width, p1.y - height);
+            p3 = new Point(p1.x + width, p1.y);
+            p1.x = (int) (width - Math.sqrt(3.0) / 2 * width);
+            p1.y = p1.y / 2;
+        }
+
+        Path path = new Path();
+        path.moveTo(p1.x, p1.y);
+        path.lineTo(p2.x, p2.y);
+        path.lineTo(p3.x, p3.y);
+
+        return path;
+    }
+}
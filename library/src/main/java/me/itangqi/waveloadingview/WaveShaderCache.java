@@ -0,0 +1,103 @@
+package me.itangqi.waveloadingview;
+
+import android.graphics.Bitmap;
+import android.os.Process;
+import android.util.LruCache;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Wave bitmaps generated ahead of time by {@link WaveLoadingView#prewarm(WaveStyle, int, int)}
+ * and {@link WaveView#prewarm(WaveStyle, int, int)}, picked up by backends whose inputs match.
+ * <p>
+ * Cached bitmaps are shared by every backend that uses them, so they are never recycled, not even
+ * when evicted; the garbage collector frees them once no view uses them anymore.
+ */
+final class WaveShaderCache {
+    // A sixteenth of the heap, a 1080p wave is about 8MB.
+    private static final LruCache<Key, Bitmap> sBitmaps =
+            new LruCache<Key, Bitmap>((int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 16)) {
+                @Override
+                protected int sizeOf(Key key, Bitmap bitmap) {
+                    return bitmap.getRowBytes() * bitmap.getHeight();
+                }
+            };
+
+    private static ExecutorService sExecutor;
+
+    private WaveShaderCache() {
+    }
+
+    static Bitmap get(int type, int width, int height, int waveColor, float[] layers) {
+        return sBitmaps.get(new Key(type, width, height, waveColor, layers));
+    }
+
+    static void put(int type, int width, int height, int waveColor, float[] layers, Bitmap bitmap) {
+        sBitmaps.put(new Key(type, width, height, waveColor, layers), bitmap);
+    }
+
+    /**
+     * Run a prewarm task on the shared background thread, one at a time.
+     */
+    static synchronized void execute(Runnable task) {
+        if (sExecutor == null) {
+            sExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            // Stay out of the way of the transition it prepares for.
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            runnable.run();
+                        }
+                    }, "WavePrewarm");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        sExecutor.execute(task);
+    }
+
+    /**
+     * Inputs of a wave bitmap: backend type, pixel size, color and layers.
+     */
+    static final class Key {
+        final int type;
+        final int width;
+        final int height;
+        final int waveColor;
+        final float[] layers;
+
+        Key(int type, int width, int height, int waveColor, float[] layers) {
+            this.type = type;
+            this.width = width;
+            this.height = height;
+            this.waveColor = waveColor;
+            this.layers = layers;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return type == key.type && width == key.width && height == key.height
+                    && waveColor == key.waveColor && Arrays.equals(layers, key.layers);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = type;
+            result = 31 * result + width;
+            result = 31 * result + height;
+            result = 31 * result + waveColor;
+            return 31 * result + Arrays.hashCode(layers);
+        }
+    }
+}
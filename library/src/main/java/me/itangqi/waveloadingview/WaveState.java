@@ -0,0 +1,139 @@
+package me.itangqi.waveloadingview;
+
+import android.graphics.Path;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+
+/**
+ * Immutable description of a single wave frame for {@link WaveRenderer#render(android.graphics.Bitmap, WaveState)}:
+ * a {@link WaveStyle} plus the progress, the phase of the wave and the titles.
+ * <pre>
+ * WaveState state = new WaveState.Builder(style)
+ *         .setProgressValue(42)
+ *         .setCenterTitle("42%")
+ *         .build();
+ * </pre>
+ */
+public final class WaveState {
+    final WaveStyle style;
+    final int progressValue;
+    final float waveShiftRatio;
+    final String topTitle;
+    final String centerTitle;
+    final String bottomTitle;
+    final Path shapePath;
+    final Drawable shapeDrawable;
+
+    private WaveState(Builder builder) {
+        style = builder.style;
+        progressValue = builder.progressValue;
+        waveShiftRatio = builder.waveShiftRatio;
+        topTitle = builder.topTitle;
+        centerTitle = builder.centerTitle;
+        bottomTitle = builder.bottomTitle;
+        shapePath = builder.shapePath;
+        shapeDrawable = builder.shapeDrawable;
+    }
+
+    public WaveStyle getStyle() {
+        return style;
+    }
+
+    public int getProgressValue() {
+        return progressValue;
+    }
+
+    public float getWaveShiftRatio() {
+        return waveShiftRatio;
+    }
+
+    public String getTopTitle() {
+        return topTitle;
+    }
+
+    public String getCenterTitle() {
+        return centerTitle;
+    }
+
+    public String getBottomTitle() {
+        return bottomTitle;
+    }
+
+    /**
+     * Builds a WaveState, the titles and the progress default to those of the style.
+     */
+    public static final class Builder {
+        private final WaveStyle style;
+        private int progressValue;
+        private float waveShiftRatio;
+        private String topTitle;
+        private String centerTitle;
+        private String bottomTitle;
+        private Path shapePath;
+        private Drawable shapeDrawable;
+
+        public Builder(@NonNull WaveStyle style) {
+            this.style = style;
+            progressValue = style.progressValue;
+            topTitle = style.topTitle;
+            centerTitle = style.centerTitle;
+            bottomTitle = style.bottomTitle;
+        }
+
+        /**
+         * @param progress Water level, drawn as is without animation.
+         */
+        public Builder setProgressValue(int progress) {
+            progressValue = progress;
+            return this;
+        }
+
+        /**
+         * @param waveShiftRatio 0.0f to 1.0f, one full period.
+         */
+        public Builder setWaveShiftRatio(float waveShiftRatio) {
+            this.waveShiftRatio = waveShiftRatio;
+            return this;
+        }
+
+        public Builder setTopTitle(String title) {
+            topTitle = title;
+            return this;
+        }
+
+        public Builder setCenterTitle(String title) {
+            centerTitle = title;
+            return this;
+        }
+
+        public Builder setBottomTitle(String title) {
+            bottomTitle = title;
+            return this;
+        }
+
+        /**
+         * @see WaveLoadingView#setShapePath(Path)
+         */
+        public Builder setShapePath(Path path) {
+            shapePath = new Path(path);
+            shapeDrawable = null;
+            return this;
+        }
+
+        /**
+         * Needed for styles with a shape drawable resource, since rendering has no Context.
+         * The drawable is drawn by the rendering thread, do not share it with a visible view.
+         *
+         * @see WaveLoadingView#setShapeDrawable(Drawable)
+         */
+        public Builder setShapeDrawable(Drawable drawable) {
+            shapeDrawable = drawable;
+            shapePath = null;
+            return this;
+        }
+
+        public WaveState build() {
+            return new WaveState(this);
+        }
+    }
+}
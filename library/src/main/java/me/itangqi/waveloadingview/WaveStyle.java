@@ -0,0 +1,804 @@
+package me.itangqi.waveloadingview;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.support.annotation.NonNull;
+import android.util.AttributeSet;
+
+import me.itangqi.library.R;
+
+/**
+ * Immutable, resolved appearance of a {@link WaveLoadingView} or {@link WaveView}.
+ * <p>
+ * Parsing the styled attributes and building the paints is the expensive part of inflating a
+ * wave view. Resolve a WaveStyle once, from XML or with a {@link Builder}, and hand it to many
+ * views: they only copy the values, and skip obtainStyledAttributes.
+ * <pre>
+ * WaveStyle style = WaveStyle.fromStyle(context, R.style.GaugeStyle);
+ * WaveLoadingView view = new WaveLoadingView(context, style);
+ * </pre>
+ * A WaveStyle holds no reference to the Context it was resolved with and may be shared freely.
+ */
+public final class WaveStyle {
+    static final float DEFAULT_AMPLITUDE_RATIO = 0.1f;
+    static final float DEFAULT_AMPLITUDE_VALUE = 50.0f;
+    static final float DEFAULT_WAVE_LENGTH_RATIO = 1.0f;
+    static final int DEFAULT_WAVE_PROGRESS_VALUE = 50;
+    static final int DEFAULT_WAVE_COLOR = Color.parseColor("#212121");
+    static final int DEFAULT_WAVE_BACKGROUND_COLOR = Color.parseColor("#00000000");
+    static final int DEFAULT_TITLE_COLOR = Color.parseColor("#212121");
+    static final int DEFAULT_STROKE_COLOR = Color.TRANSPARENT;
+    static final float DEFAULT_BORDER_WIDTH = 0;
+    static final float DEFAULT_TITLE_STROKE_WIDTH = 0;
+    // This is incorrect/not recommended by Joshua Bloch in his book Effective Java (2nd ed).
+    static final int DEFAULT_WAVE_SHAPE = WaveLoadingView.ShapeType.CIRCLE.ordinal();
+    static final int DEFAULT_TRIANGLE_DIRECTION = WaveLoadingView.TriangleDirection.NORTH.ordinal();
+    static final int DEFAULT_ROUND_RECTANGLE_X_AND_Y = 30;
+    static final float DEFAULT_TITLE_TOP_SIZE = 18.0f;
+    static final float DEFAULT_TITLE_CENTER_SIZE = 22.0f;
+    static final float DEFAULT_TITLE_BOTTOM_SIZE = 18.0f;
+    static final float DEFAULT_DETAIL_SMALL_SIZE = 56.0f;
+    static final float DEFAULT_DETAIL_TINY_SIZE = 32.0f;
+    static final float DEFAULT_REDRAW_THRESHOLD = 1.0f;
+
+    // Wave, in WaveLoadingView.ShapeType / TriangleDirection ordinals.
+    final int shapeType;
+    final int triangleDirection;
+    final int shapeDrawableRes;
+    final boolean roundRectangle;
+    final int roundRectangleXY;
+    final boolean outlineClip;
+    final int waveColor;
+    final int waveBgColor;
+    final float amplitudeRatio;
+    final float waveLengthRatio;
+    final int progressValue;
+
+    // Titles.
+    final String topTitle;
+    final String centerTitle;
+    final String bottomTitle;
+    final int centerTitlePercent;
+    final int titleSubmergedColor;
+    final int frameCacheSize;
+    final int renderBackend;
+    final boolean adaptiveQuality;
+    final boolean tiltEnabled;
+    // Fill replacing the wave color, null and 0 for none. A texture wins over a gradient.
+    final int[] waveGradientColors;
+    final int waveGradientOrientation;
+    final int waveTextureRes;
+    final int detailSmallSize;
+    final int detailTinySize;
+    final float redrawThreshold;
+    final float borderWidth;
+    final int borderColor;
+    final int topTitleColor;
+    final float topTitleSize;
+    final int topTitleStrokeColor;
+    final float topTitleStrokeWidth;
+    final int centerTitleColor;
+    final float centerTitleSize;
+    final int centerTitleStrokeColor;
+    final float centerTitleStrokeWidth;
+    final int bottomTitleColor;
+    final float bottomTitleSize;
+    final int bottomTitleStrokeColor;
+    final float bottomTitleStrokeWidth;
+
+    private WaveStyle(Builder builder) {
+        shapeType = builder.shapeType;
+        triangleDirection = builder.triangleDirection;
+        shapeDrawableRes = builder.shapeDrawableRes;
+        roundRectangle = builder.roundRectangle;
+        roundRectangleXY = builder.roundRectangleXY;
+        outlineClip = builder.outlineClip;
+        waveColor = builder.waveColor;
+        waveBgColor = builder.waveBgColor;
+        amplitudeRatio = builder.amplitudeRatio;
+        waveLengthRatio = builder.waveLengthRatio;
+        progressValue = builder.progressValue;
+        topTitle = builder.topTitle;
+        centerTitle = builder.centerTitle;
+        bottomTitle = builder.bottomTitle;
+        centerTitlePercent = builder.centerTitlePercent;
+        titleSubmergedColor = builder.titleSubmergedColor;
+        frameCacheSize = builder.frameCacheSize;
+        renderBackend = builder.renderBackend;
+        adaptiveQuality = builder.adaptiveQuality;
+        tiltEnabled = builder.tiltEnabled;
+        waveGradientColors = builder.waveGradientColors;
+        waveGradientOrientation = builder.waveGradientOrientation;
+        waveTextureRes = builder.waveTextureRes;
+        detailSmallSize = builder.detailSmallSize;
+        detailTinySize = builder.detailTinySize;
+        redrawThreshold = builder.redrawThreshold;
+        borderWidth = builder.borderWidth;
+        borderColor = builder.borderColor;
+        topTitleColor = builder.topTitleColor;
+        topTitleSize = builder.topTitleSize;
+        topTitleStrokeColor = builder.topTitleStrokeColor;
+        topTitleStrokeWidth = builder.topTitleStrokeWidth;
+        centerTitleColor = builder.centerTitleColor;
+        centerTitleSize = builder.centerTitleSize;
+        centerTitleStrokeColor = builder.centerTitleStrokeColor;
+        centerTitleStrokeWidth = builder.centerTitleStrokeWidth;
+        bottomTitleColor = builder.bottomTitleColor;
+        bottomTitleSize = builder.bottomTitleSize;
+        bottomTitleStrokeColor = builder.bottomTitleStrokeColor;
+        bottomTitleStrokeWidth = builder.bottomTitleStrokeWidth;
+    }
+
+    // Wave background and border paints of a view, built from the values.
+    Paint newWaveBgPaint() {
+        Paint paint = new Paint();
+        paint.setAntiAlias(true);
+        paint.setColor(waveBgColor);
+        return paint;
+    }
+
+    Paint newBorderPaint() {
+        Paint paint = new Paint();
+        paint.setAntiAlias(true);
+        paint.setStyle(Paint.Style.STROKE);
+        applyBorder(paint);
+        return paint;
+    }
+
+    void applyBorder(Paint paint) {
+        paint.setStrokeWidth(borderWidth);
+        paint.setColor(borderColor);
+    }
+
+    // Title paints, only built by a view once it shows that title.
+    static Paint newTitlePaint() {
+        Paint paint = new Paint();
+        paint.setStyle(Paint.Style.FILL);
+        paint.setAntiAlias(true);
+        return paint;
+    }
+
+    static Paint newTitleStrokePaint() {
+        Paint paint = new Paint();
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setAntiAlias(true);
+        return paint;
+    }
+
+    static void applyTitle(Paint paint, Paint strokePaint, int color, float size, int strokeColor, float strokeWidth) {
+        paint.setColor(color);
+        paint.setTextSize(size);
+        strokePaint.setColor(strokeColor);
+        strokePaint.setStrokeWidth(strokeWidth);
+        strokePaint.setTextSize(size);
+    }
+
+    /**
+     * Resolve the WaveLoadingView attributes of a style resource, e.g. one declared in styles.xml.
+     *
+     * @param context  Used to resolve resources and theme attributes.
+     * @param styleRes The style resource holding wlv_* items.
+     * @return WaveStyle
+     */
+    public static WaveStyle fromStyle(Context context, int styleRes) {
+        return fromAttributes(context, null, 0, styleRes);
+    }
+
+    /**
+     * Resolve the WaveLoadingView attributes the same way the XML constructor does.
+     */
+    public static WaveStyle fromAttributes(Context context, AttributeSet attrs, int defStyleAttr, int defStyleRes) {
+        Builder builder = new Builder(context);
+        // Load the styled attributes and set their properties
+        TypedArray attributes = context.obtainStyledAttributes(attrs, R.styleable.WaveLoadingView, defStyleAttr, defStyleRes);
+
+        builder.setShapeType(attributes.getInteger(R.styleable.WaveLoadingView_wlv_shapeType, DEFAULT_WAVE_SHAPE));
+        builder.setWaveColor(attributes.getColor(R.styleable.WaveLoadingView_wlv_waveColor, DEFAULT_WAVE_COLOR));
+        builder.setWaveBgColor(attributes.getColor(R.styleable.WaveLoadingView_wlv_wave_background_Color, DEFAULT_WAVE_BACKGROUND_COLOR));
+        builder.setAmplitudeRatio(attributes.getFloat(R.styleable.WaveLoadingView_wlv_waveAmplitude, DEFAULT_AMPLITUDE_VALUE) / 1000);
+        builder.setWaveLengthRatio(attributes.getFloat(R.styleable.WaveLoadingView_wlv_waveLengthRatio, DEFAULT_WAVE_LENGTH_RATIO));
+        builder.setProgressValue(attributes.getInteger(R.styleable.WaveLoadingView_wlv_progressValue, DEFAULT_WAVE_PROGRESS_VALUE));
+        builder.setRoundRectangle(attributes.getBoolean(R.styleable.WaveLoadingView_wlv_round_rectangle, false));
+        builder.setRoundRectangleXY(attributes.getInteger(R.styleable.WaveLoadingView_wlv_round_rectangle_x_and_y, DEFAULT_ROUND_RECTANGLE_X_AND_Y));
+        builder.setOutlineClip(attributes.getBoolean(R.styleable.WaveLoadingView_wlv_outlineClip, false));
+        builder.setFrameCacheSize(attributes.getInteger(R.styleable.WaveLoadingView_wlv_frameCacheSize, 0));
+        builder.setRenderBackend(attributes.getInteger(R.styleable.WaveLoadingView_wlv_renderBackend, 0));
+        builder.setAdaptiveQuality(attributes.getBoolean(R.styleable.WaveLoadingView_wlv_adaptiveQuality, false));
+        builder.setTiltEnabled(attributes.getBoolean(R.styleable.WaveLoadingView_wlv_tiltEnabled, false));
+        if (attributes.hasValue(R.styleable.WaveLoadingView_wlv_waveGradientStartColor)
+                && attributes.hasValue(R.styleable.WaveLoadingView_wlv_waveGradientEndColor)) {
+            builder.setWaveGradient(new int[]{
+                    attributes.getColor(R.styleable.WaveLoadingView_wlv_waveGradientStartColor, 0),
+                    attributes.getColor(R.styleable.WaveLoadingView_wlv_waveGradientEndColor, 0)});
+            builder.setWaveGradientOrientation(attributes.getInteger(R.styleable.WaveLoadingView_wlv_waveGradientOrientation, 0));
+        }
+        builder.setWaveTextureRes(attributes.getResourceId(R.styleable.WaveLoadingView_wlv_waveTexture, 0));
+        builder.setDetailSmallSize(attributes.getDimensionPixelSize(R.styleable.WaveLoadingView_wlv_detailSmallSize, builder.detailSmallSize));
+        builder.setDetailTinySize(attributes.getDimensionPixelSize(R.styleable.WaveLoadingView_wlv_detailTinySize, builder.detailTinySize));
+        builder.setRedrawThreshold(attributes.getDimension(R.styleable.WaveLoadingView_wlv_redrawThreshold, DEFAULT_REDRAW_THRESHOLD));
+        builder.setTriangleDirection(attributes.getInteger(R.styleable.WaveLoadingView_wlv_triangle_direction, DEFAULT_TRIANGLE_DIRECTION));
+        int shapeDrawableRes = attributes.getResourceId(R.styleable.WaveLoadingView_wlv_shapeDrawable, 0);
+        if (shapeDrawableRes != 0) {
+            builder.setShapeDrawableRes(shapeDrawableRes);
+        }
+        builder.setBorderWidth(attributes.getDimension(R.styleable.WaveLoadingView_wlv_borderWidth, builder.borderWidth));
+        builder.setBorderColor(attributes.getColor(R.styleable.WaveLoadingView_wlv_borderColor, DEFAULT_WAVE_COLOR));
+
+        // Titles under water
+        builder.setTitleSubmergedColor(attributes.getColor(R.styleable.WaveLoadingView_wlv_titleSubmergedColor, Color.TRANSPARENT));
+
+        // Top Title
+        builder.setTopTitle(attributes.getString(R.styleable.WaveLoadingView_wlv_titleTop));
+        builder.setTopTitleColor(attributes.getColor(R.styleable.WaveLoadingView_wlv_titleTopColor, DEFAULT_TITLE_COLOR));
+        builder.setTopTitleSize(attributes.getDimension(R.styleable.WaveLoadingView_wlv_titleTopSize, builder.topTitleSize));
+        builder.setTopTitleStrokeColor(attributes.getColor(R.styleable.WaveLoadingView_wlv_titleTopStrokeColor, DEFAULT_STROKE_COLOR));
+        builder.setTopTitleStrokeWidth(attributes.getDimension(R.styleable.WaveLoadingView_wlv_titleTopStrokeWidth, builder.topTitleStrokeWidth));
+
+        // Center Title
+        builder.setCenterTitle(attributes.getString(R.styleable.WaveLoadingView_wlv_titleCenter));
+        builder.setCenterTitlePercent(attributes.getInteger(R.styleable.WaveLoadingView_wlv_titleCenterPercent, WaveLoadingView.PercentTitle.NONE.ordinal()));
+        builder.setCenterTitleColor(attributes.getColor(R.styleable.WaveLoadingView_wlv_titleCenterColor, DEFAULT_TITLE_COLOR));
+        builder.setCenterTitleSize(attributes.getDimension(R.styleable.WaveLoadingView_wlv_titleCenterSize, builder.centerTitleSize));
+        builder.setCenterTitleStrokeColor(attributes.getColor(R.styleable.WaveLoadingView_wlv_titleCenterStrokeColor, DEFAULT_STROKE_COLOR));
+        builder.setCenterTitleStrokeWidth(attributes.getDimension(R.styleable.WaveLoadingView_wlv_titleCenterStrokeWidth, builder.centerTitleStrokeWidth));
+
+        // Bottom Title
+        builder.setBottomTitle(attributes.getString(R.styleable.WaveLoadingView_wlv_titleBottom));
+        builder.setBottomTitleColor(attributes.getColor(R.styleable.WaveLoadingView_wlv_titleBottomColor, DEFAULT_TITLE_COLOR));
+        builder.setBottomTitleSize(attributes.getDimension(R.styleable.WaveLoadingView_wlv_titleBottomSize, builder.bottomTitleSize));
+        builder.setBottomTitleStrokeColor(attributes.getColor(R.styleable.WaveLoadingView_wlv_titleBottomStrokeColor, DEFAULT_STROKE_COLOR));
+        builder.setBottomTitleStrokeWidth(attributes.getDimension(R.styleable.WaveLoadingView_wlv_titleBottomStrokeWidth, builder.bottomTitleStrokeWidth));
+
+        attributes.recycle();
+        return builder.build();
+    }
+
+    /**
+     * Resolve the WaveView attributes of a style resource, see {@link #fromStyle(Context, int)}.
+     *
+     * @param styleRes The style resource holding the WaveView items of yixia_attrs.
+     * @return WaveStyle
+     */
+    public static WaveStyle fromWaveViewStyle(Context context, int styleRes) {
+        return fromWaveViewAttributes(context, null, 0, styleRes);
+    }
+
+    /**
+     * Resolve the WaveView attributes the same way the WaveView XML constructor does.
+     */
+    static WaveStyle fromWaveViewAttributes(Context context, AttributeSet attrs, int defStyleAttr, int defStyleRes) {
+        Builder builder = new Builder(context);
+        // Load the styled attributes and set their properties
+        TypedArray attributes = context.obtainStyledAttributes(attrs, R.styleable.WaveView, defStyleAttr, defStyleRes);
+
+        // WaveView.ShapeType has no triangle, so its ordinals are one less than WaveLoadingView's.
+        int waveViewShape = attributes.getInteger(R.styleable.WaveView_shapeType, WaveView.ShapeType.CIRCLE.ordinal());
+        builder.setShapeType(waveViewShape + 1);
+        builder.setRoundRectangle(true);
+        builder.setWaveColor(attributes.getColor(R.styleable.WaveView_waveColor, DEFAULT_WAVE_COLOR));
+        builder.setWaveBgColor(attributes.getColor(R.styleable.WaveView_waveBackgroundColor, DEFAULT_WAVE_BACKGROUND_COLOR));
+        builder.setAmplitudeRatio(attributes.getFloat(R.styleable.WaveView_waveAmplitude, DEFAULT_AMPLITUDE_VALUE) / 1000);
+        builder.setWaveLengthRatio(attributes.getFloat(R.styleable.WaveView_waveLengthRatio, DEFAULT_WAVE_LENGTH_RATIO));
+        builder.setProgressValue(attributes.getInteger(R.styleable.WaveView_progressValue, DEFAULT_WAVE_PROGRESS_VALUE));
+        builder.setRoundRectangleXY(attributes.getInteger(R.styleable.WaveView_roundRectangleXandY, DEFAULT_ROUND_RECTANGLE_X_AND_Y));
+        builder.setBorderWidth(attributes.getDimension(R.styleable.WaveView_borderWidth, builder.borderWidth));
+        builder.setBorderColor(attributes.getColor(R.styleable.WaveView_borderColor, DEFAULT_WAVE_COLOR));
+        builder.setRenderBackend(attributes.getInteger(R.styleable.WaveView_renderBackend, 0));
+        builder.setAdaptiveQuality(attributes.getBoolean(R.styleable.WaveView_adaptiveQuality, false));
+        builder.setTiltEnabled(attributes.getBoolean(R.styleable.WaveView_tiltEnabled, false));
+
+        attributes.recycle();
+        return builder.build();
+    }
+
+    public WaveLoadingView.ShapeType getShapeType() {
+        return WaveLoadingView.ShapeType.values()[shapeType];
+    }
+
+    public WaveLoadingView.TriangleDirection getTriangleDirection() {
+        return WaveLoadingView.TriangleDirection.values()[triangleDirection];
+    }
+
+    public int getShapeDrawableRes() {
+        return shapeDrawableRes;
+    }
+
+    public boolean isRoundRectangle() {
+        return roundRectangle;
+    }
+
+    public int getRoundRectangleXY() {
+        return roundRectangleXY;
+    }
+
+    public boolean isOutlineClip() {
+        return outlineClip;
+    }
+
+    public int getWaveColor() {
+        return waveColor;
+    }
+
+    public int getWaveBgColor() {
+        return waveBgColor;
+    }
+
+    public float getAmplitudeRatio() {
+        return amplitudeRatio;
+    }
+
+    public float getWaveLengthRatio() {
+        return waveLengthRatio;
+    }
+
+    public int getProgressValue() {
+        return progressValue;
+    }
+
+    public float getBorderWidth() {
+        return borderWidth;
+    }
+
+    public int getBorderColor() {
+        return borderColor;
+    }
+
+    public String getTopTitle() {
+        return topTitle;
+    }
+
+    public String getCenterTitle() {
+        return centerTitle;
+    }
+
+    public String getBottomTitle() {
+        return bottomTitle;
+    }
+
+    public int getTitleSubmergedColor() {
+        return titleSubmergedColor;
+    }
+
+    public WaveLoadingView.PercentTitle getCenterTitlePercent() {
+        return WaveLoadingView.PercentTitle.values()[centerTitlePercent];
+    }
+
+    public int getFrameCacheSize() {
+        return frameCacheSize;
+    }
+
+    public WaveRenderBackend.Type getRenderBackend() {
+        return WaveRenderBackend.Type.values()[renderBackend];
+    }
+
+    public boolean isAdaptiveQuality() {
+        return adaptiveQuality;
+    }
+
+    public int getDetailSmallSize() {
+        return detailSmallSize;
+    }
+
+    public int getDetailTinySize() {
+        return detailTinySize;
+    }
+
+    public float getRedrawThreshold() {
+        return redrawThreshold;
+    }
+
+    public boolean isTiltEnabled() {
+        return tiltEnabled;
+    }
+
+    public int[] getWaveGradientColors() {
+        return waveGradientColors == null ? null : waveGradientColors.clone();
+    }
+
+    public WaveLoadingView.GradientOrientation getWaveGradientOrientation() {
+        return WaveLoadingView.GradientOrientation.values()[waveGradientOrientation];
+    }
+
+    public int getWaveTextureRes() {
+        return waveTextureRes;
+    }
+
+    /**
+     * Builds a WaveStyle in code. All dimensions are in pixels, like the resolved XML values.
+     */
+    public static final class Builder {
+        private int shapeType = DEFAULT_WAVE_SHAPE;
+        private int triangleDirection = DEFAULT_TRIANGLE_DIRECTION;
+        private int shapeDrawableRes;
+        private boolean roundRectangle;
+        private int roundRectangleXY = DEFAULT_ROUND_RECTANGLE_X_AND_Y;
+        private boolean outlineClip;
+        private int waveColor = DEFAULT_WAVE_COLOR;
+        private int waveBgColor = DEFAULT_WAVE_BACKGROUND_COLOR;
+        private float amplitudeRatio = DEFAULT_AMPLITUDE_VALUE / 1000;
+        private float waveLengthRatio = DEFAULT_WAVE_LENGTH_RATIO;
+        private int progressValue = DEFAULT_WAVE_PROGRESS_VALUE;
+        private String topTitle;
+        private String centerTitle;
+        private String bottomTitle;
+        private int centerTitlePercent;
+        private int titleSubmergedColor = Color.TRANSPARENT;
+        private int frameCacheSize;
+        private int renderBackend;
+        private boolean adaptiveQuality;
+        private boolean tiltEnabled;
+        private int[] waveGradientColors;
+        private int waveGradientOrientation;
+        private int waveTextureRes;
+        private int detailSmallSize;
+        private int detailTinySize;
+        private float redrawThreshold = DEFAULT_REDRAW_THRESHOLD;
+        private float borderWidth;
+        private int borderColor = DEFAULT_WAVE_COLOR;
+        private int topTitleColor = DEFAULT_TITLE_COLOR;
+        private float topTitleSize;
+        private int topTitleStrokeColor = DEFAULT_STROKE_COLOR;
+        private float topTitleStrokeWidth;
+        private int centerTitleColor = DEFAULT_TITLE_COLOR;
+        private float centerTitleSize;
+        private int centerTitleStrokeColor = DEFAULT_STROKE_COLOR;
+        private float centerTitleStrokeWidth;
+        private int bottomTitleColor = DEFAULT_TITLE_COLOR;
+        private float bottomTitleSize;
+        private int bottomTitleStrokeColor = DEFAULT_STROKE_COLOR;
+        private float bottomTitleStrokeWidth;
+
+        /**
+         * @param context Only used to convert the default dp/sp sizes to pixels.
+         */
+        public Builder(Context context) {
+            final float density = context.getResources().getDisplayMetrics().density;
+            final float scaledDensity = context.getResources().getDisplayMetrics().scaledDensity;
+
+            borderWidth = dp2px(DEFAULT_BORDER_WIDTH, density);
+            topTitleSize = sp2px(DEFAULT_TITLE_TOP_SIZE, scaledDensity);
+            topTitleStrokeWidth = dp2px(DEFAULT_TITLE_STROKE_WIDTH, density);
+            centerTitleSize = sp2px(DEFAULT_TITLE_CENTER_SIZE, scaledDensity);
+            centerTitleStrokeWidth = dp2px(DEFAULT_TITLE_STROKE_WIDTH, density);
+            bottomTitleSize = sp2px(DEFAULT_TITLE_BOTTOM_SIZE, scaledDensity);
+            bottomTitleStrokeWidth = dp2px(DEFAULT_TITLE_STROKE_WIDTH, density);
+
+            detailSmallSize = dp2px(DEFAULT_DETAIL_SMALL_SIZE, density);
+            detailTinySize = dp2px(DEFAULT_DETAIL_TINY_SIZE, density);
+        }
+
+        /**
+         * Start from an existing style, e.g. to derive a variant with another wave color.
+         */
+        public Builder(@NonNull WaveStyle style) {
+            shapeType = style.shapeType;
+            triangleDirection = style.triangleDirection;
+            shapeDrawableRes = style.shapeDrawableRes;
+            roundRectangle = style.roundRectangle;
+            roundRectangleXY = style.roundRectangleXY;
+            outlineClip = style.outlineClip;
+            waveColor = style.waveColor;
+            waveBgColor = style.waveBgColor;
+            amplitudeRatio = style.amplitudeRatio;
+            waveLengthRatio = style.waveLengthRatio;
+            progressValue = style.progressValue;
+            topTitle = style.topTitle;
+            centerTitle = style.centerTitle;
+            bottomTitle = style.bottomTitle;
+            centerTitlePercent = style.centerTitlePercent;
+            titleSubmergedColor = style.titleSubmergedColor;
+            frameCacheSize = style.frameCacheSize;
+            renderBackend = style.renderBackend;
+            adaptiveQuality = style.adaptiveQuality;
+            tiltEnabled = style.tiltEnabled;
+            waveGradientColors = style.waveGradientColors;
+            waveGradientOrientation = style.waveGradientOrientation;
+            waveTextureRes = style.waveTextureRes;
+            detailSmallSize = style.detailSmallSize;
+            detailTinySize = style.detailTinySize;
+            redrawThreshold = style.redrawThreshold;
+            borderWidth = style.borderWidth;
+            borderColor = style.borderColor;
+            topTitleColor = style.topTitleColor;
+            topTitleSize = style.topTitleSize;
+            topTitleStrokeColor = style.topTitleStrokeColor;
+            topTitleStrokeWidth = style.topTitleStrokeWidth;
+            centerTitleColor = style.centerTitleColor;
+            centerTitleSize = style.centerTitleSize;
+            centerTitleStrokeColor = style.centerTitleStrokeColor;
+            centerTitleStrokeWidth = style.centerTitleStrokeWidth;
+            bottomTitleColor = style.bottomTitleColor;
+            bottomTitleSize = style.bottomTitleSize;
+            bottomTitleStrokeColor = style.bottomTitleStrokeColor;
+            bottomTitleStrokeWidth = style.bottomTitleStrokeWidth;
+        }
+
+        public Builder setShapeType(WaveLoadingView.ShapeType shapeType) {
+            return setShapeType(shapeType.ordinal());
+        }
+
+        Builder setShapeType(int shapeType) {
+            this.shapeType = shapeType;
+            return this;
+        }
+
+        public Builder setTriangleDirection(WaveLoadingView.TriangleDirection direction) {
+            return setTriangleDirection(direction.ordinal());
+        }
+
+        Builder setTriangleDirection(int direction) {
+            this.triangleDirection = direction;
+            return this;
+        }
+
+        /**
+         * Use a drawable resource, e.g. a vector, as a {@link WaveLoadingView.ShapeType#CUSTOM} shape.
+         * Each view loads its own drawable instance from it.
+         */
+        public Builder setShapeDrawableRes(int drawableRes) {
+            this.shapeDrawableRes = drawableRes;
+            this.shapeType = WaveLoadingView.ShapeType.CUSTOM.ordinal();
+            return this;
+        }
+
+        public Builder setRoundRectangle(boolean roundRectangle) {
+            this.roundRectangle = roundRectangle;
+            return this;
+        }
+
+        public Builder setRoundRectangleXY(int roundRectangleXY) {
+            this.roundRectangleXY = roundRectangleXY;
+            return this;
+        }
+
+        /**
+         * See {@link WaveLoadingView#setOutlineClipEnabled(boolean)}.
+         */
+        public Builder setOutlineClip(boolean outlineClip) {
+            this.outlineClip = outlineClip;
+            return this;
+        }
+
+        public Builder setWaveColor(int color) {
+            this.waveColor = color;
+            return this;
+        }
+
+        public Builder setWaveBgColor(int color) {
+            this.waveBgColor = color;
+            return this;
+        }
+
+        /**
+         * @param amplitudeRatio Clamped to 0.1, see {@link WaveLoadingView#setAmplitudeRatio(int)}.
+         */
+        public Builder setAmplitudeRatio(float amplitudeRatio) {
+            this.amplitudeRatio = (amplitudeRatio > DEFAULT_AMPLITUDE_RATIO) ? DEFAULT_AMPLITUDE_RATIO : amplitudeRatio;
+            return this;
+        }
+
+        /**
+         * @param waveLengthRatio Wave length relative to the view width, invalid values fall back to 1.0.
+         */
+        public Builder setWaveLengthRatio(float waveLengthRatio) {
+            this.waveLengthRatio = waveLengthRatio > 0 ? waveLengthRatio : DEFAULT_WAVE_LENGTH_RATIO;
+            return this;
+        }
+
+        public Builder setProgressValue(int progressValue) {
+            this.progressValue = progressValue;
+            return this;
+        }
+
+        public Builder setBorderWidth(float width) {
+            this.borderWidth = width;
+            return this;
+        }
+
+        public Builder setBorderColor(int color) {
+            this.borderColor = color;
+            return this;
+        }
+
+        /**
+         * @param color Color of the titles where the water covers them, transparent to disable.
+         */
+        public Builder setTitleSubmergedColor(int color) {
+            this.titleSubmergedColor = color;
+            return this;
+        }
+
+        public Builder setTopTitle(String title) {
+            this.topTitle = title;
+            return this;
+        }
+
+        public Builder setTopTitleColor(int color) {
+            this.topTitleColor = color;
+            return this;
+        }
+
+        public Builder setTopTitleSize(float size) {
+            this.topTitleSize = size;
+            return this;
+        }
+
+        public Builder setTopTitleStrokeColor(int color) {
+            this.topTitleStrokeColor = color;
+            return this;
+        }
+
+        public Builder setTopTitleStrokeWidth(float width) {
+            this.topTitleStrokeWidth = width;
+            return this;
+        }
+
+        public Builder setCenterTitle(String title) {
+            this.centerTitle = title;
+            return this;
+        }
+
+        public Builder setCenterTitlePercent(WaveLoadingView.PercentTitle percentTitle) {
+            return setCenterTitlePercent(percentTitle.ordinal());
+        }
+
+        Builder setCenterTitlePercent(int percentTitle) {
+            this.centerTitlePercent = percentTitle;
+            return this;
+        }
+
+        public Builder setCenterTitleColor(int color) {
+            this.centerTitleColor = color;
+            return this;
+        }
+
+        public Builder setCenterTitleSize(float size) {
+            this.centerTitleSize = size;
+            return this;
+        }
+
+        public Builder setCenterTitleStrokeColor(int color) {
+            this.centerTitleStrokeColor = color;
+            return this;
+        }
+
+        public Builder setCenterTitleStrokeWidth(float width) {
+            this.centerTitleStrokeWidth = width;
+            return this;
+        }
+
+        public Builder setBottomTitle(String title) {
+            this.bottomTitle = title;
+            return this;
+        }
+
+        public Builder setBottomTitleColor(int color) {
+            this.bottomTitleColor = color;
+            return this;
+        }
+
+        public Builder setBottomTitleSize(float size) {
+            this.bottomTitleSize = size;
+            return this;
+        }
+
+        public Builder setBottomTitleStrokeColor(int color) {
+            this.bottomTitleStrokeColor = color;
+            return this;
+        }
+
+        public Builder setBottomTitleStrokeWidth(float width) {
+            this.bottomTitleStrokeWidth = width;
+            return this;
+        }
+
+        /**
+         * See {@link WaveLoadingView#setFrameCacheSize(int)}.
+         */
+        public Builder setFrameCacheSize(int frameCacheSize) {
+            this.frameCacheSize = frameCacheSize;
+            return this;
+        }
+
+        /**
+         * See {@link WaveLoadingView#setRenderBackend(WaveRenderBackend.Type)}.
+         */
+        public Builder setRenderBackend(WaveRenderBackend.Type renderBackend) {
+            WaveRenderer.checkRenderBackend(renderBackend);
+            return setRenderBackend(renderBackend.ordinal());
+        }
+
+        Builder setRenderBackend(int renderBackend) {
+            this.renderBackend = renderBackend;
+            return this;
+        }
+
+        /**
+         * Measure frame cost and lower the quality while it overruns, with {@link WaveQualityGovernor.Policy#DEFAULT}.
+         */
+        public Builder setAdaptiveQuality(boolean adaptiveQuality) {
+            this.adaptiveQuality = adaptiveQuality;
+            return this;
+        }
+
+        /**
+         * Size in pixels below which {@link WaveLoadingView.DetailLevel#SMALL} is used, 0 to never.
+         */
+        public Builder setDetailSmallSize(int detailSmallSize) {
+            this.detailSmallSize = detailSmallSize;
+            return this;
+        }
+
+        /**
+         * Size in pixels below which {@link WaveLoadingView.DetailLevel#TINY} is used, 0 to never.
+         */
+        public Builder setDetailTinySize(int detailTinySize) {
+            this.detailTinySize = detailTinySize;
+            return this;
+        }
+
+        /**
+         * Pixels the wave has to move before the view redraws, 0 to redraw on every animation step.
+         */
+        public Builder setRedrawThreshold(float redrawThreshold) {
+            this.redrawThreshold = redrawThreshold;
+            return this;
+        }
+
+        /**
+         * Tilt the water surface with the device, see {@link WaveTiltFeed}.
+         */
+        public Builder setTiltEnabled(boolean tiltEnabled) {
+            this.tiltEnabled = tiltEnabled;
+            return this;
+        }
+
+        /**
+         * Fill the wave with a gradient of evenly spaced colors instead of the wave color, see
+         * {@link WaveLoadingView#setWaveGradient(int[], float[], WaveLoadingView.GradientOrientation)}.
+         *
+         * @param colors At least two colors, null for none.
+         */
+        public Builder setWaveGradient(int[] colors) {
+            if (colors != null && colors.length < 2) {
+                throw new IllegalArgumentException("needs at least 2 colors");
+            }
+            this.waveGradientColors = colors == null ? null : colors.clone();
+            return this;
+        }
+
+        public Builder setWaveGradientOrientation(WaveLoadingView.GradientOrientation orientation) {
+            return setWaveGradientOrientation(orientation.ordinal());
+        }
+
+        Builder setWaveGradientOrientation(int orientation) {
+            this.waveGradientOrientation = orientation;
+            return this;
+        }
+
+        /**
+         * Fill the wave with a repeated bitmap instead of the wave color, see
+         * {@link WaveLoadingView#setWaveTexture(android.graphics.Bitmap)}.
+         *
+         * @param textureRes A bitmap drawable resource, 0 for none.
+         */
+        public Builder setWaveTextureRes(int textureRes) {
+            this.waveTextureRes = textureRes;
+            return this;
+        }
+
+        public WaveStyle build() {
+            return new WaveStyle(this);
+        }
+
+        private static int sp2px(float spValue, float scaledDensity) {
+            return (int) (spValue * scaledDensity + 0.5f);
+        }
+
+        private static int dp2px(float dp, float density) {
+            return (int) (dp * density + 0.5f);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package me.itangqi.waveloadingview;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.PorterDuff;
+import android.graphics.SurfaceTexture;
+import android.graphics.drawable.Drawable;
+import android.os.SystemClock;
+import android.support.v7.content.res.AppCompatResources;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.view.Surface;
+import android.view.TextureView;
+import android.view.View;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The wave of {@link WaveLoadingView}, drawn on a dedicated render thread.
+ * <p>
+ * WaveLoadingView draws on the UI thread, so its animation stutters whenever the UI thread is
+ * busy. This view renders the same shader, shapes and titles into its own surface with
+ * lockCanvas / unlockCanvasAndPost, driven by its own frame clock, so a splash or blocking load
+ * screen keeps moving smoothly. Progress and style changes may be posted from any thread, they
+ * are handed over to the render thread without locking and picked up on its next frame.
+ * Like every TextureView it needs a hardware accelerated window.
+ * <pre>
+ * WaveTextureView wave = new WaveTextureView(context, style);
+ * // From a download thread
+ * wave.setProgressValue(42);
+ * </pre>
+ */
+public class WaveTextureView extends TextureView implements TextureView.SurfaceTextureListener {
+    private static final String TAG = "WaveTextureView";
+    private static final long DEFAULT_ANIM_DURATION = 1000;
+    private static final long LEVEL_ANIM_DURATION = 1000;
+    // About 60 frames per second.
+    private static final long FRAME_DELAY = 16;
+    private static final int NO_PROGRESS = Integer.MIN_VALUE;
+
+    // Only touched by the render thread once it has been started.
+    private final WaveRenderer mRenderer;
+
+    // Handoff from any thread to the render thread.
+    private final AtomicInteger mPendingProgress = new AtomicInteger(NO_PROGRESS);
+    private final AtomicReference<PendingStyle> mPendingStyle = new AtomicReference<>();
+    private volatile long mAnimDuration = DEFAULT_ANIM_DURATION;
+    private volatile int mProgressValue;
+    // Surface width in the high and height in the low 32 bits, so both are read at once.
+    private volatile long mSurfaceSize;
+    private volatile boolean mPaused;
+
+    private RenderThread mRenderThread;
+
+    public WaveTextureView(Context context) {
+        this(context, (AttributeSet) null);
+    }
+
+    public WaveTextureView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public WaveTextureView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        WaveStyle style = WaveStyle.fromAttributes(context, attrs, defStyleAttr, 0);
+        mRenderer = new WaveRenderer(style);
+        init(context, style);
+    }
+
+    /**
+     * @param style Shared style, see {@link WaveStyle}.
+     */
+    public WaveTextureView(Context context, WaveStyle style) {
+        super(context);
+        mRenderer = new WaveRenderer(style);
+        init(context, style);
+    }
+
+    private void init(Context context, WaveStyle style) {
+        // Init Progress
+        mProgressValue = style.progressValue;
+        mRenderer.setWaterLevelRatio((float) style.progressValue / 100);
+
+        // Init Custom shape
+        if (style.shapeDrawableRes != 0) {
+            mRenderer.setShapeDrawable(AppCompatResources.getDrawable(context, style.shapeDrawableRes));
+        }
+
+        // Transparent around the shape, like WaveLoadingView.
+        setOpaque(false);
+        setSurfaceTextureListener(this);
+    }
+
+    /**
+     * Water level increases from the current level to the value. May be called from any thread,
+     * only the latest value of a burst is picked up by the next frame.
+     *
+     * @param progress Default to be 50.
+     */
+    public void setProgressValue(int progress) {
+        mProgressValue = progress;
+        mPendingProgress.set(progress);
+    }
+
+    public int getProgressValue() {
+        return mProgressValue;
+    }
+
+    /**
+     * Apply the appearance of a resolved style on the next frame, may be called from any thread.
+     * Titles and progress are left untouched, as in {@link WaveLoadingView#apply(WaveStyle)}.
+     *
+     * @param style Shared style, see {@link WaveStyle}.
+     */
+    public void apply(WaveStyle style) {
+        Drawable shape = style.shapeDrawableRes != 0
+                ? AppCompatResources.getDrawable(getContext(), style.shapeDrawableRes) : null;
+        mPendingStyle.set(new PendingStyle(style, shape));
+    }
+
+    /**
+     * Sets the length of one wave period. The default duration is 1000 milliseconds.
+     *
+     * @param duration The length of the animation, in milliseconds.
+     */
+    public void setAnimDuration(long duration) {
+        mAnimDuration = duration;
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        mPaused = visibility != View.VISIBLE;
+        if (!mPaused && mRenderThread != null) {
+            LockSupport.unpark(mRenderThread);
+        }
+    }
+
+    @Override
+    public void onSurfaceTextureAvailable(SurfaceTexture surface, int width, int height) {
+        mSurfaceSize = ((long) width << 32) | (height & 0xffffffffL);
+        mRenderThread = new RenderThread(new Surface(surface));
+        mRenderThread.start();
+    }
+
+    @Override
+    public void onSurfaceTextureSizeChanged(SurfaceTexture surface, int width, int height) {
+        mSurfaceSize = ((long) width << 32) | (height & 0xffffffffL);
+    }
+
+    @Override
+    public boolean onSurfaceTextureDestroyed(SurfaceTexture surface) {
+        if (mRenderThread != null) {
+            // The surface must not be used after returning, wait for the last frame.
+            mRenderThread.quit();
+            mRenderThread = null;
+        }
+        return true;
+    }
+
+    @Override
+    public void onSurfaceTextureUpdated(SurfaceTexture surface) {
+    }
+
+    private static final class PendingStyle {
+        final WaveStyle style;
+        final Drawable shape;
+
+        PendingStyle(WaveStyle style, Drawable shape) {
+            this.style = style;
+            this.shape = shape;
+        }
+    }
+
+    private final class RenderThread extends Thread {
+        private final Surface mSurface;
+        private volatile boolean mQuit;
+        private long mShiftStartTime;
+        // Water level animation, from mLevelFrom to mLevelTo.
+        private long mLevelStartTime = -1;
+        private float mLevelFrom;
+        private float mLevelTo;
+
+        RenderThread(Surface surface) {
+            super(TAG);
+            mSurface = surface;
+        }
+
+        void quit() {
+            mQuit = true;
+            LockSupport.unpark(this);
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            // Continue from the phase of the previous surface, if any.
+            long duration = mAnimDuration;
+            mShiftStartTime = SystemClock.uptimeMillis() - (long) (mRenderer.getWaveShiftRatio() * duration);
+            while (!mQuit) {
+                if (mPaused) {
+                    LockSupport.parkNanos(this, FRAME_DELAY * 1000000L * 10);
+                    continue;
+                }
+                long frameTime = SystemClock.uptimeMillis();
+                update(frameTime);
+                if (!drawFrame()) {
+                    break;
+                }
+                long delay = frameTime + FRAME_DELAY - SystemClock.uptimeMillis();
+                if (delay > 0) {
+                    LockSupport.parkNanos(this, delay * 1000000L);
+                }
+            }
+            mSurface.release();
+        }
+
+        private void update(long now) {
+            PendingStyle pendingStyle = mPendingStyle.getAndSet(null);
+            if (pendingStyle != null) {
+                mRenderer.apply(pendingStyle.style);
+                if (pendingStyle.shape != null) {
+                    mRenderer.setShapeDrawable(pendingStyle.shape);
+                }
+            }
+
+            long size = mSurfaceSize;
+            mRenderer.setSize((int) (size >>> 32), (int) size);
+
+            long duration = mAnimDuration;
+            if (duration > 0) {
+                mRenderer.setWaveShiftRatio((float) ((now - mShiftStartTime) % duration) / duration);
+            }
+
+            int progress = mPendingProgress.getAndSet(NO_PROGRESS);
+            if (progress != NO_PROGRESS) {
+                mRenderer.setProgressValue(progress);
+                mLevelFrom = mRenderer.getWaterLevelRatio();
+                mLevelTo = (float) progress / 100;
+                mLevelStartTime = now;
+            }
+            if (mLevelStartTime >= 0) {
+                float input = Math.min(1f, (float) (now - mLevelStartTime) / LEVEL_ANIM_DURATION);
+                // Same curve as DecelerateInterpolator.
+                float fraction = 1f - (1f - input) * (1f - input);
+                mRenderer.setWaterLevelRatio(mLevelFrom + (mLevelTo - mLevelFrom) * fraction);
+                if (input >= 1f) {
+                    mLevelStartTime = -1;
+                }
+            }
+        }
+
+        /**
+         * @return False if the surface is gone and the thread should stop.
+         */
+        private boolean drawFrame() {
+            Canvas canvas;
+            try {
+                canvas = mSurface.lockCanvas(null);
+            } catch (IllegalArgumentException | Surface.OutOfResourcesException e) {
+                Log.w(TAG, "Could not lock the surface", e);
+                return false;
+            }
+            try {
+                canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+                mRenderer.draw(canvas);
+            } finally {
+                mSurface.unlockCanvasAndPost(canvas);
+            }
+            return true;
+        }
+    }
+}
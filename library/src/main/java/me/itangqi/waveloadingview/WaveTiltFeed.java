@@ -0,0 +1,243 @@
+package me.itangqi.waveloadingview;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Build;
+import android.view.Surface;
+import android.view.WindowManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One process wide accelerometer subscription shared by every tilting wave, see
+ * {@link WaveLoadingView#setTiltEnabled(boolean)}.
+ * <p>
+ * The sensor is sampled at a modest rate with batched delivery, low-pass filtered, and only
+ * started while at least one tilting view is attached and visible. Tilt changes below
+ * {@link #MIN_CHANGE_DEGREES} are not passed on, so a device lying still causes no redraws.
+ * <p>
+ * All methods must be called on the main thread.
+ */
+public final class WaveTiltFeed {
+    // The surface never tilts further, also not when the device is upside down.
+    static final float MAX_TILT_DEGREES = 30f;
+    // Weight of a new sample in the low-pass filter.
+    static final float SMOOTHING = 0.2f;
+    static final float MIN_CHANGE_DEGREES = 0.5f;
+
+    /**
+     * Produces gravity samples, replaceable with {@link #setSource(Source)}, e.g. by a fake in tests.
+     */
+    public interface Source {
+        /**
+         * Start delivering samples to the sink until {@link #stop()}.
+         */
+        void start(Context context, Sink sink);
+
+        void stop();
+    }
+
+    /**
+     * Receives samples like {@link Sensor#TYPE_ACCELEROMETER} values in m/s², remapped to the
+     * current display rotation: x to the right of the screen, y to its top. A device held upright
+     * reports (0, 9.81, 0).
+     */
+    public interface Sink {
+        void onGravity(float x, float y, float z);
+    }
+
+    interface Listener {
+        /**
+         * @param degrees Clockwise rotation of the water surface on screen.
+         */
+        void onTiltChanged(float degrees);
+    }
+
+    private static final List<Listener> sListeners = new ArrayList<>();
+    private static Source sSource;
+    // Source delivering to sSink, null while stopped.
+    private static Source sRunningSource;
+    private static Context sContext;
+    private static boolean sHasSample;
+    private static float sGravityX;
+    private static float sGravityY;
+    private static float sTilt;
+
+    private static final Sink sSink = new Sink() {
+        @Override
+        public void onGravity(float x, float y, float z) {
+            WaveTiltFeed.onGravity(x, y);
+        }
+    };
+
+    private WaveTiltFeed() {
+    }
+
+    /**
+     * Replace the accelerometer, e.g. with a fake source in tests. A running source is stopped and
+     * the new one started in its place.
+     *
+     * @param source The source to use, null for the accelerometer.
+     */
+    public static void setSource(Source source) {
+        boolean running = sRunningSource != null;
+        stop();
+        sSource = source;
+        if (running) {
+            start();
+        }
+    }
+
+    /**
+     * @return Current clockwise rotation of the water surface in degrees.
+     */
+    public static float getTilt() {
+        return sTilt;
+    }
+
+    static void register(Context context, Listener listener) {
+        if (sListeners.contains(listener)) {
+            return;
+        }
+        sListeners.add(listener);
+        if (sListeners.size() == 1) {
+            // Views hold their Activity, the feed must not. Fake sources may not need any.
+            sContext = context == null ? null : context.getApplicationContext();
+            start();
+        }
+        listener.onTiltChanged(sTilt);
+    }
+
+    static void unregister(Listener listener) {
+        if (sListeners.remove(listener) && sListeners.isEmpty()) {
+            stop();
+            sContext = null;
+        }
+    }
+
+    private static void start() {
+        if (sSource == null) {
+            sSource = new AccelerometerSource();
+        }
+        sRunningSource = sSource;
+        sHasSample = false;
+        sRunningSource.start(sContext, sSink);
+    }
+
+    private static void stop() {
+        if (sRunningSource != null) {
+            sRunningSource.stop();
+            sRunningSource = null;
+        }
+    }
+
+    static void onGravity(float x, float y) {
+        if (sHasSample) {
+            sGravityX += SMOOTHING * (x - sGravityX);
+            sGravityY += SMOOTHING * (y - sGravityY);
+        } else {
+            sGravityX = x;
+            sGravityY = y;
+            sHasSample = true;
+        }
+        float tilt = tiltOf(sGravityX, sGravityY);
+        if (Math.abs(tilt - sTilt) < MIN_CHANGE_DEGREES && !(tilt == 0 && sTilt != 0)) {
+            return;
+        }
+        sTilt = tilt;
+        // Copy, listeners may unregister.
+        Listener[] listeners = sListeners.toArray(new Listener[sListeners.size()]);
+        for (Listener listener : listeners) {
+            listener.onTiltChanged(tilt);
+        }
+    }
+
+    /**
+     * @return The clockwise rotation that keeps the surface level in the world, fading out while
+     * the screen faces up or down, where the direction of gravity on screen is unreliable.
+     */
+    static float tiltOf(float x, float y) {
+        float inPlane = (float) Math.hypot(x, y);
+        if (inPlane == 0) {
+            return 0;
+        }
+        float degrees = (float) Math.toDegrees(Math.atan2(x, y));
+        degrees = Math.max(-MAX_TILT_DEGREES, Math.min(MAX_TILT_DEGREES, degrees));
+        return degrees * Math.min(1f, inPlane / (SensorManager.GRAVITY_EARTH / 2));
+    }
+
+    private static final class AccelerometerSource implements Source, SensorEventListener {
+        private static final int SAMPLING_PERIOD_US = 40000;
+        // Deliver samples in batches, the filter smooths them anyway.
+        private static final int MAX_REPORT_LATENCY_US = 100000;
+
+        private SensorManager mSensorManager;
+        private WindowManager mWindowManager;
+        private Sink mSink;
+
+        @Override
+        public void start(Context context, Sink sink) {
+            mSink = sink;
+            mSensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
+            mWindowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+            Sensor sensor = mSensorManager == null ? null : mSensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+            if (sensor == null) {
+                // No accelerometer, the surface stays level.
+                return;
+            }
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+                registerBatched(sensor);
+            } else {
+                mSensorManager.registerListener(this, sensor, SAMPLING_PERIOD_US);
+            }
+        }
+
+        @TargetApi(Build.VERSION_CODES.KITKAT)
+        private void registerBatched(Sensor sensor) {
+            mSensorManager.registerListener(this, sensor, SAMPLING_PERIOD_US, MAX_REPORT_LATENCY_US);
+        }
+
+        @Override
+        public void stop() {
+            if (mSensorManager != null) {
+                mSensorManager.unregisterListener(this);
+            }
+            mSensorManager = null;
+            mWindowManager = null;
+            mSink = null;
+        }
+
+        @Override
+        public void onSensorChanged(SensorEvent event) {
+            if (mSink == null) {
+                return;
+            }
+            float x = event.values[0];
+            float y = event.values[1];
+            // Sensor axes follow the natural orientation, the screen may be rotated.
+            switch (mWindowManager == null ? Surface.ROTATION_0 : mWindowManager.getDefaultDisplay().getRotation()) {
+                case Surface.ROTATION_90:
+                    mSink.onGravity(-y, x, event.values[2]);
+                    break;
+                case Surface.ROTATION_180:
+                    mSink.onGravity(-x, -y, event.values[2]);
+                    break;
+                case Surface.ROTATION_270:
+                    mSink.onGravity(y, -x, event.values[2]);
+                    break;
+                default:
+                    mSink.onGravity(x, y, event.values[2]);
+                    break;
+            }
+        }
+
+        @Override
+        public void onAccuracyChanged(Sensor sensor, int accuracy) {
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package me.itangqi.waveloadingview;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Trace;
+
+/**
+ * Switch for {@link Trace} sections around the wave work of {@link WaveLoadingView} and
+ * {@link WaveView}: drawing, shader regeneration, water level animation steps and titles. They
+ * show up in systrace and Perfetto captures of the app from API 18.
+ * <p>
+ * Off by default, a disabled section costs a single field read.
+ */
+public final class WaveTrace {
+    static final String DRAW = "Wave:onDraw";
+    static final String UPDATE_SHADER = "Wave:updateWaveShader";
+    static final String WATER_LEVEL = "Wave:waterLevelStep";
+    static final String TITLES = "Wave:drawTitles";
+
+    private static volatile boolean sEnabled;
+
+    private WaveTrace() {
+    }
+
+    /**
+     * @param enabled True to emit trace sections, e.g. in debug builds. Default to be false.
+     */
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * Start a section, to be closed by {@link #endSection()} on the same thread if, and only if,
+     * this returned true.
+     */
+    static boolean beginSection(String name) {
+        if (!sEnabled) {
+            return false;
+        }
+        begin(name);
+        return true;
+    }
+
+    static void endSection() {
+        end();
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static void begin(String name) {
+        Trace.beginSection(name);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static void end() {
+        Trace.endSection();
+    }
+}
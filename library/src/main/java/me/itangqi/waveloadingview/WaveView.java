@@ -5,23 +5,18 @@ import android.animation.ObjectAnimator;
 import android.animation.ValueAnimator;
 import android.annotation.TargetApi;
 import android.content.Context;
-import android.content.res.TypedArray;
-import android.graphics.Bitmap;
-import android.graphics.BitmapShader;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.Matrix;
-import android.graphics.Paint;
-import android.graphics.RectF;
-import android.graphics.Shader;
 import android.os.Build;
 import android.support.annotation.NonNull;
 import android.util.AttributeSet;
 import android.view.View;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
 import android.view.animation.DecelerateInterpolator;
 import android.view.animation.LinearInterpolator;
 
-import me.itangqi.library.R;
+import java.util.List;
 
 public class WaveView extends View {
     /**
@@ -39,18 +34,9 @@ public class WaveView extends View {
      * |                        |  |
      * +------------------------+__|_______
      */
-    private static final float DEFAULT_AMPLITUDE_RATIO = 0.1f;
-    private static final float DEFAULT_AMPLITUDE_VALUE = 50.0f;
-    private static final float DEFAULT_WATER_LEVEL_RATIO = 0.5f;
-    private static final float DEFAULT_WAVE_LENGTH_RATIO = 1.0f;
-    private static final float DEFAULT_WAVE_SHIFT_RATIO = 0.0f;
-    private static final int DEFAULT_WAVE_PROGRESS_VALUE = 50;
-    private static final int DEFAULT_WAVE_COLOR = Color.parseColor("#212121");
-    private static final int DEFAULT_WAVE_BACKGROUND_COLOR = Color.parseColor("#00000000");
-    private static final float DEFAULT_BORDER_WIDTH = 0;
-    // This is incorrect/not recommended by Joshua Bloch in his book Effective Java (2nd ed).
-    private static final int DEFAULT_WAVE_SHAPE = ShapeType.CIRCLE.ordinal();
-    private static final int DEFAULT_ROUND_RECTANGLE_X_AND_Y = 30;
+    private static final long DEFAULT_ANIM_DURATION = 1000;
+    // Three waves in the full wave color, each a quarter wave length ahead of the previous one.
+    private static final float[] WAVE_VIEW_LAYERS = {0f, 1f, 0.25f, 1f, 0.5f, 1f};
 
     public enum ShapeType {
         CIRCLE,
@@ -62,43 +48,50 @@ public class WaveView extends View {
     private int mCanvasSize;
     private int mCanvasHeight;
     private int mCanvasWidth;
-    private float mAmplitudeRatio;
-    private int mWaveBgColor;
-    private int mWaveColor;
     private int mShapeType;
-    private int mRoundRectangleXY;
-
-    // Properties.
-    private float mDefaultWaterLevel;
-    private float mWaterLevelRatio = 1f;
-    private float mWaveShiftRatio = DEFAULT_WAVE_SHIFT_RATIO;
-    private int mProgressValue = DEFAULT_WAVE_PROGRESS_VALUE;
-
-    // Object used to draw.
-    // Shader containing repeated waves.
-    private BitmapShader mWaveShader;
-    // Shader matrix.
-    private Matrix mShaderMatrix;
-    // Paint to draw wave.
-    private Paint mWavePaint;
-    //Paint to draw waveBackground.
-    private Paint mWaveBgPaint;
-    // Paint to draw border.
-    private Paint mBorderPaint;
-
-    // Animation.
+
+    // Wave, shape and border, drawn by the same engine as WaveLoadingView.
+    private WaveRenderer mRenderer;
+
+    // Animation, created on first attach.
     private ObjectAnimator waveShiftAnim;
     private AnimatorSet mAnimatorSet;
+    private ObjectAnimator mWaterLevelAnim;
+    private long mAnimDuration = DEFAULT_ANIM_DURATION;
+    private boolean mIsAttached;
+
+    // Lowers the quality while frames overrun, see setQualityPolicy.
+    private WaveQualityGovernor mQualityGovernor;
+
+    // Reports the progress as a ProgressBar would.
+    private final WaveAccessibility mAccessibility = new WaveAccessibility(this);
+
+    // Follows WaveTiltFeed while enabled, attached and visible.
+    private boolean mTiltEnabled;
+    private boolean mTiltRegistered;
+    private final WaveTiltFeed.Listener mTiltListener = new WaveTiltFeed.Listener() {
+        @Override
+        public void onTiltChanged(float degrees) {
+            mRenderer.setTilt(degrees);
+            requestInvalidate();
+        }
+    };
 
-    private Context mContext;
+    private final WaveQualityGovernor.Callback mQualityCallback = new WaveQualityGovernor.Callback() {
+        @Override
+        public void onLevelChanged(int level) {
+            applyQualityLevel(level);
+        }
+    };
 
-    //add for draw
-    @NonNull
-    private RectF drawRectangleRect = new RectF();
+    // Batched updates, see edit().
+    private int mBatchDepth;
+    private boolean mPendingShaderUpdate;
+    private boolean mPendingInvalidate;
 
     // Constructor & Init Method.
     public WaveView(final Context context) {
-        this(context, null);
+        this(context, (AttributeSet) null);
     }
 
     public WaveView(Context context, AttributeSet attrs) {
@@ -107,137 +100,92 @@ public class WaveView extends View {
 
     public WaveView(Context context, AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
-        init(context, attrs, defStyleAttr);
+        init(WaveStyle.fromWaveViewAttributes(context, attrs, defStyleAttr, 0));
     }
 
-    private void init(Context context, AttributeSet attrs, int defStyleAttr) {
-        mContext = context;
-        // Init Wave.
-        mShaderMatrix = new Matrix();
-        mWavePaint = new Paint();
-        // The ANTI_ALIAS_FLAG bit AntiAliasing smooths out the edges of what is being drawn,
-        // but is has no impact on the interior of the shape.
-        mWavePaint.setAntiAlias(true);
-        mWaveBgPaint = new Paint();
-        mWaveBgPaint.setAntiAlias(true);
-        // Init Animation
-        initAnimation();
+    /**
+     * Create a view from an already resolved style, skipping attribute parsing entirely.
+     * Titles and triangles are not supported by WaveView, a triangle falls back to a circle.
+     *
+     * @param style Shared style, see {@link WaveStyle}.
+     */
+    public WaveView(Context context, WaveStyle style) {
+        super(context);
+        init(style);
+    }
 
-        // Load the styled attributes and set their properties
-        TypedArray attributes = context.obtainStyledAttributes(attrs, R.styleable.WaveView, defStyleAttr, 0);
+    private void init(WaveStyle style) {
+        // Init Wave.
+        mRenderer = new WaveRenderer(style);
+        mRenderer.setWaveLayers(WAVE_VIEW_LAYERS);
+        // Titles, gradients and the frame cache are WaveLoadingView only.
+        mRenderer.setTopTitle(null);
+        mRenderer.setCenterTitle(null);
+        mRenderer.setBottomTitle(null);
+        mRenderer.setCenterTitlePercent(WaveLoadingView.PercentTitle.NONE.ordinal());
+        mRenderer.setTitleSubmergedColor(Color.TRANSPARENT);
+        mRenderer.setWaveGradient(null, null, style.waveGradientOrientation);
+        mRenderer.setFrameCacheSize(0);
 
         // Init ShapeType
-        mShapeType = attributes.getInteger(R.styleable.WaveView_shapeType, DEFAULT_WAVE_SHAPE);
+        mShapeType = toShapeType(style.shapeType);
+        mRenderer.setShapeType(toRendererShapeType(mShapeType));
+        mRenderer.setRectangleBorder(true);
 
-        // Init Wave
-        mWaveColor = attributes.getColor(R.styleable.WaveView_waveColor, DEFAULT_WAVE_COLOR);
-        mWaveBgColor = attributes.getColor(R.styleable.WaveView_waveBackgroundColor, DEFAULT_WAVE_BACKGROUND_COLOR);
-
-        mWaveBgPaint.setColor(mWaveBgColor);
-
-        // Init AmplitudeRatio
-        float amplitudeRatioAttr = attributes.getFloat(R.styleable.WaveView_waveAmplitude, DEFAULT_AMPLITUDE_VALUE) / 1000;
-        mAmplitudeRatio = (amplitudeRatioAttr > DEFAULT_AMPLITUDE_RATIO) ? DEFAULT_AMPLITUDE_RATIO : amplitudeRatioAttr;
+        // Init RoundRectangle
+        mRenderer.setRoundRectangle(true, style.roundRectangleXY);
 
         // Init Progress
-        mProgressValue = attributes.getInteger(R.styleable.WaveView_progressValue, DEFAULT_WAVE_PROGRESS_VALUE);
-        setProgressValue(mProgressValue);
+        setProgressValue(style.progressValue);
 
-        // Init RoundRectangle
-        mRoundRectangleXY = attributes.getInteger(R.styleable.WaveView_roundRectangleXandY, DEFAULT_ROUND_RECTANGLE_X_AND_Y);
+        // Init Adaptive quality
+        if (style.adaptiveQuality) {
+            setQualityPolicy(WaveQualityGovernor.Policy.DEFAULT);
+        }
 
-        // Init Border
-        mBorderPaint = new Paint();
-        mBorderPaint.setAntiAlias(true);
-        mBorderPaint.setStyle(Paint.Style.STROKE);
-        mBorderPaint.setStrokeWidth(attributes.getDimension(R.styleable.WaveView_borderWidth, dp2px(DEFAULT_BORDER_WIDTH)));
-        mBorderPaint.setColor(attributes.getColor(R.styleable.WaveView_borderColor, DEFAULT_WAVE_COLOR));
+        // Init Tilt
+        setTiltEnabled(style.tiltEnabled);
+    }
 
-        attributes.recycle();
+    /**
+     * Map a WaveLoadingView.ShapeType ordinal, as stored in WaveStyle, to a WaveView one.
+     */
+    private static int toShapeType(int waveLoadingViewShapeType) {
+        if (waveLoadingViewShapeType == WaveLoadingView.ShapeType.SQUARE.ordinal()) {
+            return ShapeType.SQUARE.ordinal();
+        } else if (waveLoadingViewShapeType == WaveLoadingView.ShapeType.RECTANGLE.ordinal()) {
+            return ShapeType.RECTANGLE.ordinal();
+        }
+        return ShapeType.CIRCLE.ordinal();
     }
 
-    @Override
-    public void onDraw(Canvas canvas) {
-        mCanvasSize = canvas.getWidth();
-        if (canvas.getHeight() < mCanvasSize) {
-            mCanvasSize = canvas.getHeight();
+    /**
+     * Map a WaveView.ShapeType ordinal to the WaveLoadingView one drawn by the renderer.
+     */
+    private static int toRendererShapeType(int shapeType) {
+        if (shapeType == ShapeType.SQUARE.ordinal()) {
+            return WaveLoadingView.ShapeType.SQUARE.ordinal();
+        } else if (shapeType == ShapeType.RECTANGLE.ordinal()) {
+            return WaveLoadingView.ShapeType.RECTANGLE.ordinal();
         }
+        return WaveLoadingView.ShapeType.CIRCLE.ordinal();
+    }
 
-        // Draw Wave.
-        // Modify paint shader according to mShowWave state.
-        if (mWaveShader != null) {
-            // First call after mShowWave, assign it to our paint.
-            if (mWavePaint.getShader() == null) {
-                mWavePaint.setShader(mWaveShader);
+    @Override
+    public void onDraw(Canvas canvas) {
+        boolean traced = WaveTrace.beginSection(WaveTrace.DRAW);
+        try {
+            if (mQualityGovernor == null) {
+                mRenderer.draw(canvas);
+                return;
             }
-
-            // Sacle shader according to waveLengthRatio and amplitudeRatio.
-            // This decides the size(waveLengthRatio for width, amplitudeRatio for height) of waves.
-            mShaderMatrix.setScale(1, mAmplitudeRatio / DEFAULT_AMPLITUDE_RATIO, 0, mDefaultWaterLevel);
-            // Translate shader according to waveShiftRatio and waterLevelRatio.
-            // This decides the start position(waveShiftRatio for x, waterLevelRatio for y) of waves.
-            mShaderMatrix.postTranslate(mWaveShiftRatio * getWidth(),
-                    (DEFAULT_WATER_LEVEL_RATIO - mWaterLevelRatio) * getHeight());
-
-            // Assign matrix to invalidate the shader.
-            mWaveShader.setLocalMatrix(mShaderMatrix);
-
-            // Get borderWidth.
-            float borderWidth = mBorderPaint.getStrokeWidth();
-
-            switch (mShapeType) {
-                // Draw circle
-                case 0:
-                    if (borderWidth > 0) {
-                        canvas.drawCircle(getWidth() / 2f, getHeight() / 2f,
-                                (getWidth() - borderWidth) / 2f - 1f, mBorderPaint);
-                    }
-
-                    float radius = getWidth() / 2f - borderWidth;
-                    // Draw background
-                    canvas.drawCircle(getWidth() / 2f, getHeight() / 2f, radius, mWaveBgPaint);
-                    canvas.drawCircle(getWidth() / 2f, getHeight() / 2f, radius, mWavePaint);
-                    break;
-                // Draw square
-                case 1:
-                    if (borderWidth > 0) {
-                        canvas.drawRect(
-                                borderWidth / 2f,
-                                borderWidth / 2f,
-                                getWidth() - borderWidth / 2f - 0.5f,
-                                getHeight() - borderWidth / 2f - 0.5f,
-                                mBorderPaint);
-                    }
-
-                    canvas.drawRect(borderWidth, borderWidth, getWidth() - borderWidth,
-                            getHeight() - borderWidth, mWaveBgPaint);
-                    canvas.drawRect(borderWidth, borderWidth, getWidth() - borderWidth,
-                            getHeight() - borderWidth, mWavePaint);
-                    break;
-                // Draw rectangle
-                case 2:
-                    if (borderWidth > 0) {
-                        drawRectangleRect.left = borderWidth / 2f;
-                        drawRectangleRect.top = borderWidth / 2f;
-                        drawRectangleRect.right = getWidth() - borderWidth / 2f - 0.5f;
-                        drawRectangleRect.bottom = getHeight() - borderWidth / 2f - 0.5f;
-                        canvas.drawRoundRect(drawRectangleRect, mRoundRectangleXY, mRoundRectangleXY, mWaveBgPaint);
-                        canvas.drawRoundRect(drawRectangleRect, mRoundRectangleXY, mRoundRectangleXY, mWavePaint);
-                        canvas.drawRoundRect(drawRectangleRect, mRoundRectangleXY, mRoundRectangleXY, mBorderPaint);
-                    } else {
-                        drawRectangleRect.left = 0;
-                        drawRectangleRect.top = 0;
-                        drawRectangleRect.right = getWidth();
-                        drawRectangleRect.bottom = getHeight();
-                        canvas.drawRoundRect(drawRectangleRect, mRoundRectangleXY, mRoundRectangleXY, mWaveBgPaint);
-                        canvas.drawRoundRect(drawRectangleRect, mRoundRectangleXY, mRoundRectangleXY, mWavePaint);
-                    }
-                    break;
-                default:
-                    break;
+            long start = System.nanoTime();
+            mRenderer.draw(canvas);
+            mQualityGovernor.onFrame(start);
+        } finally {
+            if (traced) {
+                WaveTrace.endSection();
             }
-        } else {
-            mWavePaint.setShader(null);
         }
     }
 
@@ -253,59 +201,158 @@ public class WaveView extends View {
             if (h > mCanvasSize)
                 mCanvasSize = h;
         }
-        updateWaveShader();
+        mRenderer.setSize(w, h);
+        mRenderer.updateWaveShader();
     }
 
-    private void updateWaveShader() {
-        // IllegalArgumentException: width and height must be > 0 while loading Bitmap from View
-        // http://stackoverflow.com/questions/17605662/illegalargumentexception-width-and-height-must-be-0-while-loading-bitmap-from
-        int width = getMeasuredWidth();
-        int height = getMeasuredHeight();
-        if (width > 0 && height > 0) {
-            double defaultAngularFrequency = 2.0f * Math.PI / DEFAULT_WAVE_LENGTH_RATIO / width;
-            float defaultAmplitude = height * DEFAULT_AMPLITUDE_RATIO;
-            mDefaultWaterLevel = height * DEFAULT_WATER_LEVEL_RATIO;
+    /**
+     * Generate the wave shader of a view of the default style with this size and color on a
+     * background thread, ahead of time, see {@link WaveLoadingView#prewarm(Context, int, int, int)}.
+     *
+     * @param width     Width in pixels the view will have.
+     * @param height    Height in pixels the view will have.
+     * @param waveColor Wave color the view will have.
+     */
+    public static void prewarm(Context context, int width, int height, int waveColor) {
+        prewarm(new WaveStyle.Builder(context).setWaveColor(waveColor).build(), width, height);
+    }
 
-            Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-            Canvas canvas = new Canvas(bitmap);
+    /**
+     * Prewarm the shader of views declared with a style resource, see
+     * {@link #prewarm(Context, int, int, int)} and {@link WaveStyle#fromWaveViewStyle(Context, int)}.
+     *
+     * @param styleRes The style resource holding WaveView items.
+     */
+    public static void prewarmStyle(Context context, int styleRes, int width, int height) {
+        prewarm(WaveStyle.fromWaveViewStyle(context, styleRes), width, height);
+    }
 
-            Paint wavePaint = new Paint();
-            wavePaint.setStrokeWidth(2);
-            wavePaint.setAntiAlias(true);
+    /**
+     * Prewarm the shader of views with this style and size, see {@link #prewarm(Context, int, int, int)}.
+     */
+    public static void prewarm(final WaveStyle style, final int width, final int height) {
+        WaveShaderCache.execute(new Runnable() {
+            @Override
+            public void run() {
+                WaveRenderBackend backend = WaveRenderer.newBackend(style.renderBackend);
+                if (backend instanceof BitmapWaveBackend && width > 0 && height > 0) {
+                    int waveLength = Math.max(1, Math.round(width * style.waveLengthRatio));
+                    ((BitmapWaveBackend) backend).prewarm(waveLength, height, style.waveColor, WAVE_VIEW_LAYERS);
+                }
+            }
+        });
+    }
 
-            // Draw default waves into the bitmap.
-            // y=Asin(ωx+φ)+h
-            final int endX = width + 1;
-            final int endY = height + 1;
+    /**
+     * Choose how the wave is produced, trading memory against CPU, see {@link WaveRenderBackend}.
+     *
+     * @param type Default to be {@link WaveRenderBackend.Type#BITMAP_SHADER}.
+     */
+    public void setRenderBackend(WaveRenderBackend.Type type) {
+        WaveRenderer.checkRenderBackend(type);
+        mRenderer.setRenderBackend(type.ordinal());
+        requestShaderUpdate();
+        requestInvalidate();
+    }
 
-            float[] waveY = new float[endX];
+    public WaveRenderBackend.Type getRenderBackend() {
+        return mRenderer.getRenderBackend().getType();
+    }
 
-//            wavePaint.setColor(adjustAlpha(mWaveColor, 0.3f));
-            wavePaint.setColor(mWaveColor);
-            for (int beginX = 0; beginX < endX; beginX++) {
-                double wx = beginX * defaultAngularFrequency;
-                float beginY = (float) (mDefaultWaterLevel + defaultAmplitude * Math.sin(wx));
-                canvas.drawLine(beginX, beginY, beginX, endY, wavePaint);
-                waveY[beginX] = beginY;
-            }
+    /**
+     * Replace the three built-in wave layers with a list of layers, each with its own color, size,
+     * phase and speed, e.g. for a parallax effect. Layers moving at the same speed are baked into
+     * one bitmap, so extra layers cost little and layers at the default speed and size are filled in
+     * a single draw. Layers at other speeds take a draw each before API 28. Custom layers always
+     * draw from bitmaps, reported as {@link WaveRenderBackend.Type#LAYERED} whatever
+     * {@link #setRenderBackend(WaveRenderBackend.Type)} selected.
+     *
+     * @param layers Back to front, null or empty to go back to the built-in layers.
+     */
+    public void setWaveLayers(List<WaveLayer> layers) {
+        mRenderer.setCustomWaveLayers(WaveRenderer.toLayerArray(layers));
+        requestShaderUpdate();
+        requestInvalidate();
+    }
 
-//            wavePaint.setColor(mWaveColor);
-            final int wave2Shift = width / 4;
-            for (int beginX = 0; beginX < endX; beginX++) {
-                canvas.drawLine(beginX, waveY[(beginX + wave2Shift) % endX], beginX, endY, wavePaint);
-            }
+    public List<WaveLayer> getWaveLayers() {
+        return WaveRenderer.toLayerList(mRenderer.getCustomWaveLayers());
+    }
 
-            final int wave3Shift = width / 2;
-            for (int beginX = 0; beginX < endX; beginX++) {
-                canvas.drawLine(beginX, waveY[(beginX + wave3Shift) % endX], beginX, endY, wavePaint);
+    /**
+     * Tilt the water surface with the device, sloshing around the water level. All tilting views
+     * share one low-pass filtered accelerometer subscription, which only runs while one of them
+     * is attached and visible, see {@link WaveTiltFeed}.
+     *
+     * @param tiltEnabled Default to be false.
+     */
+    public void setTiltEnabled(boolean tiltEnabled) {
+        if (mTiltEnabled != tiltEnabled) {
+            mTiltEnabled = tiltEnabled;
+            updateTiltRegistration();
+            if (!tiltEnabled) {
+                mRenderer.setTilt(0);
+                requestInvalidate();
             }
+        }
+    }
 
-            // Use the bitamp to create the shader.
-            mWaveShader = new BitmapShader(bitmap, Shader.TileMode.REPEAT, Shader.TileMode.CLAMP);
-            mWavePaint.setShader(mWaveShader);
+    public boolean isTiltEnabled() {
+        return mTiltEnabled;
+    }
+
+    /**
+     * Follow the tilt only while it can be seen.
+     */
+    private void updateTiltRegistration() {
+        boolean register = mTiltEnabled && mIsAttached && getWindowVisibility() == VISIBLE && isShown();
+        if (register != mTiltRegistered) {
+            mTiltRegistered = register;
+            if (register) {
+                WaveTiltFeed.register(getContext(), mTiltListener);
+            } else {
+                WaveTiltFeed.unregister(mTiltListener);
+            }
         }
     }
 
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updateTiltRegistration();
+    }
+
+    @Override
+    protected void onVisibilityChanged(@NonNull View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updateTiltRegistration();
+    }
+
+    /**
+     * Measure the frame cost and lower the quality while frames overrun the budget of the policy,
+     * see {@link WaveQualityGovernor}.
+     *
+     * @param policy Thresholds, e.g. {@link WaveQualityGovernor.Policy#DEFAULT}. Null, the default, keeps full quality.
+     */
+    public void setQualityPolicy(WaveQualityGovernor.Policy policy) {
+        mQualityGovernor = policy != null ? new WaveQualityGovernor(policy, mQualityCallback) : null;
+        applyQualityLevel(WaveQualityGovernor.Level.FULL.ordinal());
+    }
+
+    /**
+     * @return The governor, to observe the current level and frame cost, or null without a policy.
+     */
+    public WaveQualityGovernor getQualityGovernor() {
+        return mQualityGovernor;
+    }
+
+    private void applyQualityLevel(int level) {
+        float lowResolution = mQualityGovernor != null ? mQualityGovernor.getPolicy().getLowResolution() : 1f;
+        mRenderer.setQualityLevel(level, lowResolution);
+        requestShaderUpdate();
+        requestInvalidate();
+    }
+
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
         int width = measureWidth(widthMeasureSpec);
@@ -360,35 +407,32 @@ public class WaveView extends View {
 
 
     public void setWaveBgColor(int color) {
-        this.mWaveBgColor = color;
-        mWaveBgPaint.setColor(this.mWaveBgColor);
-        updateWaveShader();
-        invalidate();
+        // The background is drawn with its own paint, the shader does not depend on it.
+        mRenderer.setWaveBgColor(color);
+        requestInvalidate();
     }
 
     public void setWaveColor(int color) {
-        mWaveColor = color;
-        // Need to recreate shader when color changed ?
-//        mWaveShader = null;
-        updateWaveShader();
-        invalidate();
+        mRenderer.setWaveColor(color);
+        requestShaderUpdate();
+        requestInvalidate();
     }
 
     public void setBorderWidth(float width) {
-        mBorderPaint.setStrokeWidth(width);
-        invalidate();
+        mRenderer.setBorderWidth(width);
+        requestInvalidate();
     }
 
     public void setBorderColor(int color) {
-        mBorderPaint.setColor(color);
-        updateWaveShader();
-        invalidate();
+        mRenderer.setBorderColor(color);
+        requestInvalidate();
     }
 
     public void setShapeType(ShapeType shapeType) {
         mShapeType = shapeType.ordinal();
+        mRenderer.setShapeType(toRendererShapeType(mShapeType));
         requestLayout();
-        invalidate();
+        requestInvalidate();
     }
 
     public int getShapeType() {
@@ -401,9 +445,26 @@ public class WaveView extends View {
      * @param amplitudeRatio Default to be 0.05. Result of amplitudeRatio + waterLevelRatio should be less than 1.
      */
     public void setAmplitudeRatio(int amplitudeRatio) {
-        if (this.mAmplitudeRatio != (float) amplitudeRatio / 1000) {
-            this.mAmplitudeRatio = (float) amplitudeRatio / 1000;
-            invalidate();
+        if (mRenderer.getAmplitudeRatio() != (float) amplitudeRatio / 1000) {
+            mRenderer.setAmplitudeRatio((float) amplitudeRatio / 1000);
+            requestInvalidate();
+        }
+    }
+
+    /**
+     * Set horizontal size of wave according to waveLengthRatio.
+     * The shader bitmap is sized to a single wave period, so shorter waves also generate faster.
+     *
+     * @param waveLengthRatio Wave length relative to the view width. Default to be 1.0.
+     */
+    public void setWaveLengthRatio(float waveLengthRatio) {
+        if (waveLengthRatio <= 0) {
+            throw new IllegalArgumentException("waveLengthRatio must be > 0");
+        }
+        if (mRenderer.getWaveLengthRatio() != waveLengthRatio) {
+            mRenderer.setWaveLengthRatio(waveLengthRatio);
+            requestShaderUpdate();
+            requestInvalidate();
         }
     }
 
@@ -413,35 +474,140 @@ public class WaveView extends View {
      * @param progress Default to be 50.
      */
     public void setProgressValue(int progress) {
-        mProgressValue = progress;
-        ObjectAnimator waterLevelAnim = ObjectAnimator.ofFloat(this, "waterLevelRatio", mWaterLevelRatio, ((float) mProgressValue / 100));
-        waterLevelAnim.setDuration(1000);
-        waterLevelAnim.setInterpolator(new DecelerateInterpolator());
-        AnimatorSet animatorSetProgress = new AnimatorSet();
-        animatorSetProgress.play(waterLevelAnim);
-        animatorSetProgress.start();
+        mRenderer.setProgressValue(progress);
+        mAccessibility.onProgressChanged(progress);
+        float waterLevelRatio = (float) progress / 100;
+        if (!mIsAttached) {
+            // Nobody can watch the water rise yet, so apply the level directly.
+            if (mWaterLevelAnim != null) {
+                mWaterLevelAnim.cancel();
+            }
+            setWaterLevelRatio(waterLevelRatio);
+            return;
+        }
+        if (mWaterLevelAnim == null) {
+            mWaterLevelAnim = ObjectAnimator.ofFloat(this, "waterLevelRatio", mRenderer.getWaterLevelRatio(), waterLevelRatio);
+            mWaterLevelAnim.setDuration(1000);
+            mWaterLevelAnim.setInterpolator(new DecelerateInterpolator());
+        } else {
+            mWaterLevelAnim.cancel();
+            mWaterLevelAnim.setFloatValues(mRenderer.getWaterLevelRatio(), waterLevelRatio);
+        }
+        mWaterLevelAnim.start();
     }
 
+    /**
+     * Horizontal offset of the waves, in units of one wave length.
+     *
+     * @param waveShiftRatio 0.0f to 1.0f, one full period.
+     */
     public void setWaveShiftRatio(float waveShiftRatio) {
-        if (this.mWaveShiftRatio != waveShiftRatio) {
-            this.mWaveShiftRatio = waveShiftRatio;
-            invalidate();
+        if (mRenderer.getWaveShiftRatio() != waveShiftRatio) {
+            mRenderer.setWaveShiftRatio(waveShiftRatio);
+            if (mQualityGovernor == null || mQualityGovernor.shouldDrawWaveFrame(System.nanoTime())) {
+                invalidate();
+            }
         }
     }
 
     public void setWaterLevelRatio(float waterLevelRatio) {
-        if (this.mWaterLevelRatio != waterLevelRatio) {
-            this.mWaterLevelRatio = waterLevelRatio;
+        if (mRenderer.getWaterLevelRatio() != waterLevelRatio) {
+            boolean traced = WaveTrace.beginSection(WaveTrace.WATER_LEVEL);
+            mRenderer.setWaterLevelRatio(waterLevelRatio);
             invalidate();
+            if (traced) {
+                WaveTrace.endSection();
+            }
         }
     }
 
-    public void startAnimation() {
-        if (mAnimatorSet != null) {
-            mAnimatorSet.start();
+    /**
+     * Start a batch of property changes. Nothing happens until {@link Editor#apply()}, which
+     * regenerates the wave shader at most once, only if its inputs changed, and invalidates once.
+     * <pre>
+     * waveView.edit()
+     *         .setWaveColor(Color.BLUE)
+     *         .setBorderColor(Color.WHITE)
+     *         .setAmplitudeRatio(60)
+     *         .apply();
+     * </pre>
+     *
+     * @return Editor
+     */
+    public Editor edit() {
+        return new Editor();
+    }
+
+    /**
+     * Apply the appearance of a resolved style in a single batch, see {@link #edit()}.
+     * Progress is content rather than appearance and is left untouched.
+     *
+     * @param style Shared style, see {@link WaveStyle}.
+     */
+    public void apply(WaveStyle style) {
+        beginBatch();
+        try {
+            int shapeType = toShapeType(style.shapeType);
+            if (mShapeType != shapeType) {
+                setShapeType(ShapeType.values()[shapeType]);
+            }
+            mRenderer.setRoundRectangle(true, style.roundRectangleXY);
+            setWaveColor(style.waveColor);
+            setWaveBgColor(style.waveBgColor);
+            mRenderer.setAmplitudeRatio(style.amplitudeRatio);
+            setWaveLengthRatio(style.waveLengthRatio);
+            mRenderer.setBorderWidth(style.borderWidth);
+            mRenderer.setBorderColor(style.borderColor);
+            setRenderBackend(style.getRenderBackend());
+            if (style.adaptiveQuality != (mQualityGovernor != null)) {
+                setQualityPolicy(style.adaptiveQuality ? WaveQualityGovernor.Policy.DEFAULT : null);
+            }
+            setTiltEnabled(style.tiltEnabled);
+            requestInvalidate();
+        } finally {
+            endBatch();
+        }
+    }
+
+    private void beginBatch() {
+        mBatchDepth++;
+    }
+
+    private void endBatch() {
+        if (--mBatchDepth > 0) {
+            return;
+        }
+        if (mPendingShaderUpdate) {
+            mPendingShaderUpdate = false;
+            mRenderer.updateWaveShader();
+        }
+        if (mPendingInvalidate) {
+            mPendingInvalidate = false;
+            invalidate();
+        }
+    }
+
+    private void requestShaderUpdate() {
+        if (mBatchDepth > 0) {
+            mPendingShaderUpdate = true;
+        } else {
+            mRenderer.updateWaveShader();
         }
     }
 
+    private void requestInvalidate() {
+        if (mBatchDepth > 0) {
+            mPendingInvalidate = true;
+        } else {
+            invalidate();
+        }
+    }
+
+    public void startAnimation() {
+        initAnimation();
+        mAnimatorSet.start();
+    }
+
     public void endAnimation() {
         if (mAnimatorSet != null) {
             mAnimatorSet.end();
@@ -480,14 +646,20 @@ public class WaveView extends View {
      * @param duration The length of the animation, in milliseconds.
      */
     public void setAnimDuration(long duration) {
-        waveShiftAnim.setDuration(duration);
+        mAnimDuration = duration;
+        if (waveShiftAnim != null) {
+            waveShiftAnim.setDuration(duration);
+        }
     }
 
     private void initAnimation() {
+        if (mAnimatorSet != null) {
+            return;
+        }
         // Wave waves infinitely.
         waveShiftAnim = ObjectAnimator.ofFloat(this, "waveShiftRatio", 0f, 1f);
         waveShiftAnim.setRepeatCount(ValueAnimator.INFINITE);
-        waveShiftAnim.setDuration(1000);
+        waveShiftAnim.setDuration(mAnimDuration);
         waveShiftAnim.setInterpolator(new LinearInterpolator());
         mAnimatorSet = new AnimatorSet();
         mAnimatorSet.play(waveShiftAnim);
@@ -495,46 +667,134 @@ public class WaveView extends View {
 
     @Override
     protected void onAttachedToWindow() {
+        mIsAttached = true;
+        updateTiltRegistration();
         startAnimation();
         super.onAttachedToWindow();
     }
 
     @Override
     protected void onDetachedFromWindow() {
+        mIsAttached = false;
+        updateTiltRegistration();
         cancelAnimation();
+        mAccessibility.cancel();
+        if (mWaterLevelAnim != null) {
+            // Jump to the target level rather than freezing halfway.
+            mWaterLevelAnim.end();
+        }
         super.onDetachedFromWindow();
     }
 
-    /**
-     * Transparent the given color by the factor
-     * The more the factor closer to zero the more the color gets transparent
-     *
-     * @param color  The color to transparent
-     * @param factor 1.0f to 0.0f
-     * @return int - A transplanted color
-     */
-    private int adjustAlpha(int color, float factor) {
-        int alpha = Math.round(Color.alpha(color) * factor);
-        int red = Color.red(color);
-        int green = Color.green(color);
-        int blue = Color.blue(color);
-        return Color.argb(alpha, red, green, blue);
+    @Override
+    public void onInitializeAccessibilityEvent(AccessibilityEvent event) {
+        super.onInitializeAccessibilityEvent(event);
+        WaveAccessibility.onInitializeAccessibilityEvent(event, mRenderer.getProgressValue());
+    }
+
+    @Override
+    public void onInitializeAccessibilityNodeInfo(AccessibilityNodeInfo info) {
+        super.onInitializeAccessibilityNodeInfo(info);
+        WaveAccessibility.onInitializeAccessibilityNodeInfo(info, mRenderer.getProgressValue());
     }
 
     /**
-     * Paint.setTextSize(float textSize) default unit is px.
-     *
-     * @param spValue The real size of text
-     * @return int - A transplanted sp
+     * Collects property changes and applies them at once, see {@link WaveView#edit()}.
      */
-    private int sp2px(float spValue) {
-        final float fontScale = mContext.getResources().getDisplayMetrics().scaledDensity;
-        return (int) (spValue * fontScale + 0.5f);
-    }
+    public final class Editor {
+        private static final int WAVE_COLOR = 1 << 0;
+        private static final int WAVE_BG_COLOR = 1 << 1;
+        private static final int BORDER_COLOR = 1 << 2;
+        private static final int BORDER_WIDTH = 1 << 3;
+        private static final int AMPLITUDE_RATIO = 1 << 4;
+        private static final int WAVE_LENGTH_RATIO = 1 << 5;
+        private static final int SHAPE_TYPE = 1 << 6;
+
+        private int mChanged;
+        private int mPendingWaveColor;
+        private int mPendingWaveBgColor;
+        private int mPendingBorderColor;
+        private float mPendingBorderWidth;
+        private int mPendingAmplitudeRatio;
+        private float mPendingWaveLengthRatio;
+        private ShapeType mPendingShapeType;
+
+        private Editor() {
+        }
 
-    private int dp2px(float dp) {
-        final float scale = mContext.getResources().getDisplayMetrics().density;
-        return (int) (dp * scale + 0.5f);
-    }
+        public Editor setWaveColor(int color) {
+            mPendingWaveColor = color;
+            mChanged |= WAVE_COLOR;
+            return this;
+        }
+
+        public Editor setWaveBgColor(int color) {
+            mPendingWaveBgColor = color;
+            mChanged |= WAVE_BG_COLOR;
+            return this;
+        }
+
+        public Editor setBorderColor(int color) {
+            mPendingBorderColor = color;
+            mChanged |= BORDER_COLOR;
+            return this;
+        }
+
+        public Editor setBorderWidth(float width) {
+            mPendingBorderWidth = width;
+            mChanged |= BORDER_WIDTH;
+            return this;
+        }
+
+        public Editor setAmplitudeRatio(int amplitudeRatio) {
+            mPendingAmplitudeRatio = amplitudeRatio;
+            mChanged |= AMPLITUDE_RATIO;
+            return this;
+        }
+
+        public Editor setWaveLengthRatio(float waveLengthRatio) {
+            mPendingWaveLengthRatio = waveLengthRatio;
+            mChanged |= WAVE_LENGTH_RATIO;
+            return this;
+        }
 
-}
\ No newline at end of file
+        public Editor setShapeType(ShapeType shapeType) {
+            mPendingShapeType = shapeType;
+            mChanged |= SHAPE_TYPE;
+            return this;
+        }
+
+        /**
+         * Apply all changes, regenerating the shader at most once and invalidating once.
+         */
+        public void apply() {
+            beginBatch();
+            try {
+                if ((mChanged & WAVE_COLOR) != 0) {
+                    WaveView.this.setWaveColor(mPendingWaveColor);
+                }
+                if ((mChanged & WAVE_BG_COLOR) != 0) {
+                    WaveView.this.setWaveBgColor(mPendingWaveBgColor);
+                }
+                if ((mChanged & BORDER_COLOR) != 0) {
+                    WaveView.this.setBorderColor(mPendingBorderColor);
+                }
+                if ((mChanged & BORDER_WIDTH) != 0) {
+                    WaveView.this.setBorderWidth(mPendingBorderWidth);
+                }
+                if ((mChanged & AMPLITUDE_RATIO) != 0) {
+                    WaveView.this.setAmplitudeRatio(mPendingAmplitudeRatio);
+                }
+                if ((mChanged & WAVE_LENGTH_RATIO) != 0) {
+                    WaveView.this.setWaveLengthRatio(mPendingWaveLengthRatio);
+                }
+                if ((mChanged & SHAPE_TYPE) != 0) {
+                    WaveView.this.setShapeType(mPendingShapeType);
+                }
+                requestInvalidate();
+            } finally {
+                endBatch();
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package me.itangqi.waveloadingview;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * The banded wave rasterizer of {@link PixelBufferBackend}: bands must not change the pixels, and
+ * at 4K they should pay off on a machine with more than one core.
+ */
+public class PixelBufferBenchmark {
+    // Odd sizes, so the bands are not all of the same height.
+    private static final int CHECK_WIDTH = 1001;
+    private static final int CHECK_HEIGHT = 717;
+    private static final int CHECK_BANDS = 7;
+    private static final int WIDTH = 3840;
+    private static final int HEIGHT = 2160;
+    private static final int WAVE_COLOR = 0xff212121;
+    private static final float[] LAYERS = {0f, 0.3f, 0.25f, 1f};
+    private static final int RUNS = 5;
+
+    @Test
+    public void bandsProduceTheSamePixels() throws Exception {
+        int[] single = new int[CHECK_WIDTH * CHECK_HEIGHT];
+        PixelBufferBackend.rasterize(single, CHECK_WIDTH, CHECK_HEIGHT, WAVE_COLOR, LAYERS, 1, null);
+        int[] banded = new int[CHECK_WIDTH * CHECK_HEIGHT];
+        // Own workers, so the bands are filled in parallel even on a single core machine.
+        ExecutorService workers = Executors.newFixedThreadPool(CHECK_BANDS - 1);
+        try {
+            PixelBufferBackend.rasterize(banded, CHECK_WIDTH, CHECK_HEIGHT, WAVE_COLOR, LAYERS, CHECK_BANDS, workers);
+        } finally {
+            workers.shutdownNow();
+        }
+        assertArrayEquals(single, banded);
+    }
+
+    @Ignore("Benchmark, takes seconds, run on demand")
+    @Test
+    public void bandsSpeedUpLargeBitmaps() throws Exception {
+        int maxBands = PixelBufferBackend.bandCount(WIDTH * HEIGHT);
+        assumeTrue(maxBands > 1);
+        int[] pixels = new int[WIDTH * HEIGHT];
+        // Warm up the JIT and the worker pool.
+        PixelBufferBackend.rasterize(pixels, WIDTH, HEIGHT, WAVE_COLOR, LAYERS, maxBands);
+
+        double single = medianMillis(pixels, 1);
+        double banded = medianMillis(pixels, maxBands);
+        assertTrue(String.format(Locale.US, "%dx%d: %.1f ms in 1 band, %.1f ms in %d bands",
+                WIDTH, HEIGHT, single, banded, maxBands), banded < single);
+    }
+
+    private static double medianMillis(int[] pixels, int bands) {
+        double[] millis = new double[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            PixelBufferBackend.rasterize(pixels, WIDTH, HEIGHT, WAVE_COLOR, LAYERS, bands);
+            millis[i] = (System.nanoTime() - start) / 1e6;
+        }
+        Arrays.sort(millis);
+        return millis[RUNS / 2];
+    }
+}
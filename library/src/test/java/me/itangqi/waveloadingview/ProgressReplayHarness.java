@@ -0,0 +1,259 @@
+package me.itangqi.waveloadingview;
+
+import android.animation.ValueAnimator;
+import android.app.Activity;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import org.robolectric.Robolectric;
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.annotation.RealObject;
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.shadows.ShadowValueAnimator;
+import org.robolectric.util.Scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a {@link ProgressTrace} against {@link WaveLoadingView#setProgressValue(int)} under
+ * Robolectric, with the paused main looper as the clock, and reports what the update path cost.
+ * <p>
+ * Main thread events are applied directly. Worker events that fall within one display frame are
+ * posted to the main looper by a real thread per source, all released at once so they race. The
+ * wave animation is cancelled so the counts only cover progress. Run with
+ * {@link CountingShadowValueAnimator} to count animators.
+ */
+final class ProgressReplayHarness {
+    // Long enough for the water level animation to finish after the last update.
+    private static final long SETTLE_MILLIS = 2000;
+    // Worker posts within one display frame of each other are released together.
+    private static final long BATCH_MILLIS = 16;
+
+    static final class Report {
+        String trace;
+        int updates;
+        int workerUpdates;
+        int animatorAllocations;
+        int invalidations;
+        int mainLooperMessages;
+        // Water levels set, one per frame of the water level animation.
+        int levelSteps;
+        int latestProgress;
+        int lastDeliveredProgress;
+        int finalProgress;
+        float finalWaterLevel;
+
+        /**
+         * @return Distance of the settled water level from the latest observed progress, 0 to 1.
+         */
+        float levelError() {
+            return Math.abs(finalWaterLevel - latestProgress / 100f);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s: %d updates (%d from workers), %d animator(s), "
+                            + "%d invalidations, %d main looper messages, %d level steps, "
+                            + "final %d%% (latest %d%%, last delivered %d%%), level error %.4f",
+                    trace, updates, workerUpdates, animatorAllocations, invalidations,
+                    mainLooperMessages, levelSteps, finalProgress, latestProgress, lastDeliveredProgress,
+                    levelError());
+        }
+    }
+
+    /**
+     * Counts every ValueAnimator created, ObjectAnimators included.
+     */
+    @Implements(ValueAnimator.class)
+    public static class CountingShadowValueAnimator extends ShadowValueAnimator {
+        static volatile int sCreated;
+
+        @RealObject
+        private ValueAnimator mRealAnimator;
+
+        @Implementation
+        public void __constructor__() {
+            sCreated++;
+            Shadow.invokeConstructor(ValueAnimator.class, mRealAnimator);
+        }
+    }
+
+    /**
+     * Counts invalidations, the only work the update path asks of the view system, and the water
+     * levels the animator sets.
+     */
+    static final class CountingWaveLoadingView extends WaveLoadingView {
+        int invalidations;
+        int levelSteps;
+
+        CountingWaveLoadingView(Context context) {
+            super(context);
+        }
+
+        @Override
+        public void invalidate() {
+            invalidations++;
+            super.invalidate();
+        }
+
+        @Override
+        public void setWaterLevelRatio(float waterLevelRatio) {
+            levelSteps++;
+            super.setWaterLevelRatio(waterLevelRatio);
+        }
+    }
+
+    private final Scheduler mScheduler;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final CountingWaveLoadingView mView;
+    private int mMessages;
+    // Written on the main looper only.
+    private int mLastDelivered;
+
+    ProgressReplayHarness() throws Exception {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        mView = new CountingWaveLoadingView(activity);
+        activity.setContentView(mView);
+        if (mView.getWindowToken() == null) {
+            throw new IllegalStateException("The view must be attached to animate the water level");
+        }
+        mView.cancelAnimation();
+
+        // Everything posted from now on waits for the harness to run it.
+        ShadowLooper.pauseMainLooper();
+        mScheduler = ShadowLooper.getShadowMainLooper().getScheduler();
+        runUntil(mScheduler.getCurrentTime());
+        mView.invalidations = 0;
+        mView.levelSteps = 0;
+        mMessages = 0;
+    }
+
+    WaveLoadingView getView() {
+        return mView;
+    }
+
+    Report replay(ProgressTrace trace) throws Exception {
+        List<ExecutorService> workers = new ArrayList<>();
+        for (int i = 0; i < trace.sourceCount(); i++) {
+            workers.add(Executors.newSingleThreadExecutor());
+        }
+        Report report = new Report();
+        report.trace = trace.name;
+        int invalidations = mView.invalidations;
+        int messages = mMessages;
+        int levelSteps = mView.levelSteps;
+        long start = mScheduler.getCurrentTime();
+        // An animator left from an earlier replay is reused, not allocated.
+        int animators = CountingShadowValueAnimator.sCreated;
+        try {
+            List<ProgressTrace.Event> batch = new ArrayList<>();
+            for (ProgressTrace.Event event : trace.events) {
+                if (!batch.isEmpty() && (event.source == ProgressTrace.MAIN
+                        || event.timeMillis >= batch.get(0).timeMillis + BATCH_MILLIS)) {
+                    postConcurrently(batch, workers);
+                    batch.clear();
+                }
+                report.updates++;
+                if (event.source == ProgressTrace.MAIN) {
+                    runUntil(start + event.timeMillis);
+                    setProgressValue(event.progress);
+                } else {
+                    if (batch.isEmpty()) {
+                        runUntil(start + event.timeMillis);
+                    }
+                    report.workerUpdates++;
+                    batch.add(event);
+                }
+            }
+            postConcurrently(batch, workers);
+            runUntil(start + trace.durationMillis() + SETTLE_MILLIS);
+        } finally {
+            for (ExecutorService worker : workers) {
+                worker.shutdownNow();
+            }
+        }
+        report.animatorAllocations = CountingShadowValueAnimator.sCreated - animators;
+        report.invalidations = mView.invalidations - invalidations;
+        report.mainLooperMessages = mMessages - messages;
+        report.levelSteps = mView.levelSteps - levelSteps;
+        report.latestProgress = trace.latestProgress();
+        report.lastDeliveredProgress = mLastDelivered;
+        report.finalProgress = mView.getProgressValue();
+        report.finalWaterLevel = mView.getWaterLevelRatio();
+        return report;
+    }
+
+    /**
+     * Post the batch from its workers at once and wait until all of them have posted, the
+     * messages themselves run on the next step of the clock. Each worker keeps its own order.
+     */
+    private void postConcurrently(List<ProgressTrace.Event> batch, List<ExecutorService> workers)
+            throws InterruptedException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch posted = new CountDownLatch(batch.size());
+        for (final ProgressTrace.Event event : batch) {
+            workers.get(event.source).execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    mMainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            setProgressValue(event.progress);
+                        }
+                    });
+                    posted.countDown();
+                }
+            });
+        }
+        release.countDown();
+        if (!posted.await(1, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Workers did not post within a second");
+        }
+    }
+
+    private void setProgressValue(int progress) {
+        mLastDelivered = progress;
+        mView.setProgressValue(progress);
+    }
+
+    /**
+     * Run every main looper message due by the given uptime, one at a time so each is counted,
+     * leaving the clock there.
+     */
+    private void runUntil(long uptimeMillis) {
+        final boolean[] reached = new boolean[1];
+        mMainHandler.postAtTime(new Runnable() {
+            @Override
+            public void run() {
+                reached[0] = true;
+            }
+        }, uptimeMillis);
+        while (!reached[0]) {
+            if (!mScheduler.runOneTask()) {
+                throw new IllegalStateException("Main looper drained before " + uptimeMillis);
+            }
+            if (reached[0]) {
+                // The marker is not a message of the view.
+                break;
+            }
+            mMessages++;
+        }
+    }
+}
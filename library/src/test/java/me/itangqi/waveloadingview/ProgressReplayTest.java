@@ -0,0 +1,83 @@
+package me.itangqi.waveloadingview;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import me.itangqi.library.BuildConfig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Realistic progress feeds replayed against the update path, with the cost of each feed bounded.
+ * Failed assertions carry the whole report, compare them before and after a change to the
+ * progress pipeline.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23,
+        shadows = ProgressReplayHarness.CountingShadowValueAnimator.class)
+public class ProgressReplayTest {
+    private static final long SEED = 42;
+    private static final float LEVEL_TOLERANCE = 0.001f;
+    // Animation and commit callbacks of the frame, and the post that starts the animation.
+    private static final int MESSAGES_PER_LEVEL_STEP = 3;
+
+    private ProgressReplayHarness mHarness;
+
+    @Before
+    public void setUp() throws Exception {
+        mHarness = new ProgressReplayHarness();
+    }
+
+    @Test
+    public void burstyFeedSettlesOnTheLatestProgress() throws Exception {
+        ProgressReplayHarness.Report report = mHarness.replay(ProgressTrace.bursty(SEED));
+        assertEquals(report.toString(), report.latestProgress, report.finalProgress);
+        assertTrue(report.toString(), report.levelError() < LEVEL_TOLERANCE);
+        // The water level animator is retargeted, not recreated per update.
+        assertEquals(report.toString(), 1, report.animatorAllocations);
+        assertBoundedCost(report);
+    }
+
+    @Test
+    public void sparsePollingSettlesOnTheLatestProgress() throws Exception {
+        ProgressReplayHarness.Report report = mHarness.replay(ProgressTrace.polling(SEED, 60));
+        assertEquals(report.toString(), report.latestProgress, report.finalProgress);
+        assertTrue(report.toString(), report.levelError() < LEVEL_TOLERANCE);
+        assertEquals(report.toString(), 1, report.animatorAllocations);
+        assertBoundedCost(report);
+    }
+
+    @Test
+    public void outOfOrderFeedSettlesOnTheLastDelivered() throws Exception {
+        ProgressReplayHarness.Report report = mHarness.replay(ProgressTrace.outOfOrder(SEED, 4));
+        // Every worker update is one main looper message.
+        assertTrue(report.toString(), report.mainLooperMessages >= report.workerUpdates);
+        // The view trusts delivery order, whichever racing worker posted last wins.
+        assertEquals(report.toString(), report.lastDeliveredProgress, report.finalProgress);
+        assertEquals(report.toString(), report.lastDeliveredProgress / 100f, report.finalWaterLevel, LEVEL_TOLERANCE);
+        assertEquals(report.toString(), 1, report.animatorAllocations);
+        assertBoundedCost(report);
+    }
+
+    /**
+     * At most one invalidation per update and per water level step, and no main looper messages
+     * beyond the worker posts and the frames of the water level animation and their traversals.
+     */
+    private static void assertBoundedCost(ProgressReplayHarness.Report report) {
+        assertTrue(report.toString(), report.invalidations <= report.updates + report.levelSteps);
+        assertTrue(report.toString(), report.mainLooperMessages <= report.workerUpdates
+                + MESSAGES_PER_LEVEL_STEP * report.levelSteps + report.invalidations);
+    }
+
+    @Test
+    public void traceSurvivesTheCsvRoundTrip() throws Exception {
+        ProgressTrace original = ProgressTrace.outOfOrder(SEED, 2);
+        ProgressTrace parsed = ProgressTrace.parse(original.name, original.toString());
+        assertEquals(original.toString(), parsed.toString());
+        assertEquals(original.latestProgress(), parsed.latestProgress());
+    }
+}
@@ -0,0 +1,188 @@
+package me.itangqi.waveloadingview;
+
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A timed feed of progress updates for {@link ProgressReplayHarness}, synthesized from a seed or
+ * recorded from a real source with a {@link Recorder}.
+ * <p>
+ * Events are kept in delivery order. The sequence number is the order in which the progress was
+ * observed, so a feed whose sequence is not ascending delivers stale values after newer ones.
+ */
+final class ProgressTrace {
+    // Updates delivered straight on the main thread, anything else is posted from a worker.
+    static final int MAIN = 0;
+
+    static final class Event {
+        final long timeMillis;
+        final int progress;
+        final int source;
+        final int sequence;
+
+        Event(long timeMillis, int progress, int source, int sequence) {
+            this.timeMillis = timeMillis;
+            this.progress = progress;
+            this.source = source;
+            this.sequence = sequence;
+        }
+    }
+
+    final String name;
+    final List<Event> events;
+
+    private ProgressTrace(String name, List<Event> events) {
+        Collections.sort(events, new Comparator<Event>() {
+            @Override
+            public int compare(Event a, Event b) {
+                // Stable, so events at the same time keep their order.
+                return a.timeMillis < b.timeMillis ? -1 : (a.timeMillis == b.timeMillis ? 0 : 1);
+            }
+        });
+        this.name = name;
+        this.events = Collections.unmodifiableList(events);
+    }
+
+    /**
+     * @return The most recently observed progress, what the view should end up showing.
+     */
+    int latestProgress() {
+        Event latest = null;
+        for (Event event : events) {
+            if (latest == null || event.sequence > latest.sequence) {
+                latest = event;
+            }
+        }
+        return latest == null ? 0 : latest.progress;
+    }
+
+    int sourceCount() {
+        int sources = 0;
+        for (Event event : events) {
+            sources = Math.max(sources, event.source + 1);
+        }
+        return sources;
+    }
+
+    long durationMillis() {
+        return events.isEmpty() ? 0 : events.get(events.size() - 1).timeMillis;
+    }
+
+    /**
+     * A download reporting every 5ms (200Hz) while data arrives, in bursts separated by stalls.
+     */
+    static ProgressTrace bursty(long seed) {
+        Random random = new Random(seed);
+        List<Event> events = new ArrayList<>();
+        long time = 0;
+        float progress = 0;
+        int sequence = 0;
+        while (progress < 100) {
+            int burst = 20 + random.nextInt(80);
+            for (int i = 0; i < burst && progress < 100; i++) {
+                progress = Math.min(100, progress + random.nextFloat() * 0.2f);
+                events.add(new Event(time, (int) progress, MAIN, sequence++));
+                time += 5;
+            }
+            time += 100 + random.nextInt(400);
+        }
+        return new ProgressTrace("bursty 200Hz", events);
+    }
+
+    /**
+     * A status endpoint polled once a second.
+     */
+    static ProgressTrace polling(long seed, int polls) {
+        Random random = new Random(seed);
+        List<Event> events = new ArrayList<>();
+        float progress = 0;
+        for (int i = 0; i < polls; i++) {
+            progress = Math.min(100, progress + random.nextFloat() * 200f / polls);
+            events.add(new Event(i * 1000L, (int) progress, MAIN, i));
+        }
+        return new ProgressTrace("polling 1Hz", events);
+    }
+
+    /**
+     * Worker threads observing a shared progress every 10ms, each posting what it saw after its
+     * own random latency, so updates arrive out of order.
+     */
+    static ProgressTrace outOfOrder(long seed, int workers) {
+        Random random = new Random(seed);
+        List<Event> events = new ArrayList<>();
+        float progress = 0;
+        int sequence = 0;
+        for (long time = 0; progress < 100; time += 10) {
+            progress = Math.min(100, progress + random.nextFloat() * 0.5f);
+            int worker = 1 + random.nextInt(workers);
+            long latency = random.nextInt(60);
+            events.add(new Event(time + latency, (int) progress, worker, sequence++));
+        }
+        return new ProgressTrace("out of order x" + workers, events);
+    }
+
+    /**
+     * Parse a trace written by {@link #toString()}, one {@code time,progress,source,sequence}
+     * line per event.
+     */
+    static ProgressTrace parse(String name, String csv) {
+        List<Event> events = new ArrayList<>();
+        for (String line : csv.split("\n")) {
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] fields = line.split(",");
+            if (fields.length != 4) {
+                throw new IllegalArgumentException("Expected time,progress,source,sequence: " + line);
+            }
+            events.add(new Event(Long.parseLong(fields[0].trim()), Integer.parseInt(fields[1].trim()),
+                    Integer.parseInt(fields[2].trim()), Integer.parseInt(fields[3].trim())));
+        }
+        return new ProgressTrace(name, events);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder csv = new StringBuilder();
+        for (Event event : events) {
+            csv.append(event.timeMillis).append(',').append(event.progress).append(',')
+                    .append(event.source).append(',').append(event.sequence).append('\n');
+        }
+        return csv.toString();
+    }
+
+    /**
+     * Captures a live feed, e.g. from a download callback in an instrumentation test, for replay.
+     * Calls from the thread that created it are recorded as {@link #MAIN}, other threads get their
+     * own source in order of appearance.
+     */
+    static final class Recorder {
+        private final Thread mMainThread = Thread.currentThread();
+        private final List<Thread> mWorkers = new ArrayList<>();
+        private final List<Event> mEvents = new ArrayList<>();
+        private final long mStartMillis = SystemClock.uptimeMillis();
+
+        synchronized void record(int progress) {
+            Thread thread = Thread.currentThread();
+            int source = MAIN;
+            if (thread != mMainThread) {
+                source = mWorkers.indexOf(thread) + 1;
+                if (source == 0) {
+                    mWorkers.add(thread);
+                    source = mWorkers.size();
+                }
+            }
+            mEvents.add(new Event(SystemClock.uptimeMillis() - mStartMillis, progress, source, mEvents.size()));
+        }
+
+        synchronized ProgressTrace toTrace(String name) {
+            return new ProgressTrace(name, new ArrayList<>(mEvents));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package me.itangqi.waveloadingview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Feeds the governor frames on a fake clock.
+ */
+public class WaveQualityGovernorTest {
+    private static final long FRAME_60 = 1000000000L / 60;
+    private static final long FRAME_30 = 1000000000L / 30;
+    private static final long CHEAP_DRAW = 1000000L;
+
+    private final WaveQualityGovernor.Callback mCallback = new WaveQualityGovernor.Callback() {
+        @Override
+        public void onLevelChanged(int level) {
+        }
+    };
+
+    @Test
+    public void cheapFramesAtTheViewFrameRateKeepFullQuality() {
+        WaveQualityGovernor governor = new WaveQualityGovernor(WaveQualityGovernor.Policy.DEFAULT, mCallback);
+        // A small view drawing its wave at 30 fps on a 60 fps display.
+        governor.setFrameInterval(FRAME_30);
+        drawFrames(governor, 600, FRAME_30);
+        assertEquals(WaveQualityGovernor.Level.FULL, governor.getLevel());
+    }
+
+    @Test
+    public void cheapFramesAtHalfTheExpectedFrameRateStepDown() {
+        WaveQualityGovernor governor = new WaveQualityGovernor(WaveQualityGovernor.Policy.DEFAULT, mCallback);
+        drawFrames(governor, 600, FRAME_30);
+        // Down to the capped frame rate, which expects 30 fps.
+        assertEquals(WaveQualityGovernor.Level.CAPPED_FRAME_RATE, governor.getLevel());
+    }
+
+    @Test
+    public void skippedStepsAreNotDroppedFrames() {
+        WaveQualityGovernor governor = new WaveQualityGovernor(WaveQualityGovernor.Policy.DEFAULT, mCallback);
+        long now = 0;
+        for (int i = 0; i < 600; i++) {
+            // Every other step moves the wave less than a pixel and is not drawn.
+            governor.onFrameSkipped(now);
+            now += FRAME_60;
+            governor.onFrame(now, now + CHEAP_DRAW);
+            now += FRAME_60;
+        }
+        assertEquals(WaveQualityGovernor.Level.FULL, governor.getLevel());
+    }
+
+    private static void drawFrames(WaveQualityGovernor governor, int count, long intervalNanos) {
+        long now = 0;
+        for (int i = 0; i < count; i++) {
+            governor.onFrame(now, now + CHEAP_DRAW);
+            now += intervalNanos;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package me.itangqi.waveloadingview;
+
+import android.content.Context;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowPaint;
+
+import me.itangqi.library.BuildConfig;
+import me.itangqi.library.R;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Counts the paints created while inflating wave views from XML, the cost a long list pays per row.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23, shadows = WaveStyleInflationTest.CountingShadowPaint.class)
+public class WaveStyleInflationTest {
+    // Wave, background and border.
+    private static final int VIEW_PAINTS = 3;
+    // Fill and stroke, for each title shown.
+    private static final int TITLE_PAINTS = 2;
+
+    @Implements(Paint.class)
+    public static class CountingShadowPaint extends ShadowPaint {
+        static int sCreated;
+
+        @Implementation
+        @Override
+        public void __constructor__(int flags) {
+            sCreated++;
+            super.__constructor__(flags);
+        }
+
+        @Implementation
+        @Override
+        public void __constructor__(Paint otherPaint) {
+            sCreated++;
+            super.__constructor__(otherPaint);
+        }
+    }
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        CountingShadowPaint.sCreated = 0;
+    }
+
+    @Test
+    public void builderCreatesNoPaints() {
+        new WaveStyle.Builder(mContext).setBorderWidth(4).setTopTitleColor(0xffff0000);
+        assertEquals(0, CountingShadowPaint.sCreated);
+    }
+
+    @Test
+    public void styleCreatesNoPaints() {
+        WaveStyle.fromAttributes(mContext, emptyAttributes(), 0, 0);
+        assertEquals(0, CountingShadowPaint.sCreated);
+    }
+
+    @Test
+    public void waveLoadingViewWithoutTitlesCreatesNoTitlePaints() {
+        new WaveLoadingView(mContext, emptyAttributes());
+        assertTrue("created " + CountingShadowPaint.sCreated, CountingShadowPaint.sCreated <= VIEW_PAINTS);
+    }
+
+    @Test
+    public void waveLoadingViewCreatesPaintsOnlyForTheTitlesShown() {
+        new WaveLoadingView(mContext, emptyAttributes());
+        int withoutTitles = CountingShadowPaint.sCreated;
+        CountingShadowPaint.sCreated = 0;
+        AttributeSet attrs = Robolectric.buildAttributeSet()
+                .addAttribute(R.attr.wlv_titleTop, "Top")
+                .build();
+        new WaveLoadingView(mContext, attrs);
+        assertEquals(withoutTitles + TITLE_PAINTS, CountingShadowPaint.sCreated);
+    }
+
+    @Test
+    public void waveViewCreatesNoTitlePaints() {
+        new WaveView(mContext, emptyAttributes());
+        assertTrue("created " + CountingShadowPaint.sCreated, CountingShadowPaint.sCreated <= VIEW_PAINTS);
+    }
+
+    private static AttributeSet emptyAttributes() {
+        return Robolectric.buildAttributeSet().build();
+    }
+}
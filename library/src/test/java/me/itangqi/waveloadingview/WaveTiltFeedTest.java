@@ -0,0 +1,120 @@
+package me.itangqi.waveloadingview;
+
+import android.content.Context;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives the shared tilt feed with a fake source instead of the accelerometer.
+ */
+public class WaveTiltFeedTest {
+    private static final float G = 9.81f;
+
+    private FakeSource mSource;
+    private final RecordingListener mFirst = new RecordingListener();
+    private final RecordingListener mSecond = new RecordingListener();
+
+    @Before
+    public void setUp() {
+        mSource = new FakeSource();
+        WaveTiltFeed.setSource(mSource);
+    }
+
+    @After
+    public void tearDown() {
+        WaveTiltFeed.unregister(mFirst);
+        WaveTiltFeed.unregister(mSecond);
+        WaveTiltFeed.setSource(null);
+    }
+
+    @Test
+    public void oneSubscriptionForAllListeners() {
+        WaveTiltFeed.register(null, mFirst);
+        WaveTiltFeed.register(null, mSecond);
+        assertEquals(1, mSource.starts);
+        assertTrue(mSource.running());
+
+        WaveTiltFeed.unregister(mFirst);
+        assertTrue(mSource.running());
+        WaveTiltFeed.unregister(mSecond);
+        assertFalse(mSource.running());
+    }
+
+    @Test
+    public void fansOutFilteredTilt() {
+        WaveTiltFeed.register(null, mFirst);
+        WaveTiltFeed.register(null, mSecond);
+        mSource.sink.onGravity(0, G, 0);
+        // Left edge down by 20 degrees, approached through the low-pass filter.
+        for (int i = 0; i < 100; i++) {
+            mSource.sink.onGravity(G * (float) Math.sin(Math.toRadians(20)), G * (float) Math.cos(Math.toRadians(20)), 0);
+        }
+        assertEquals(20f, mFirst.last(), WaveTiltFeed.MIN_CHANGE_DEGREES);
+        assertEquals(mFirst.last(), mSecond.last(), 0f);
+        // Filtered, not jumping to the target at once.
+        assertTrue(mFirst.degrees.size() > 3);
+    }
+
+    @Test
+    public void ignoresJitter() {
+        WaveTiltFeed.register(null, mFirst);
+        mSource.sink.onGravity(0, G, 0);
+        int updates = mFirst.degrees.size();
+        for (int i = 0; i < 100; i++) {
+            mSource.sink.onGravity(i % 2 == 0 ? 0.02f : -0.02f, G, 0);
+        }
+        assertEquals(updates, mFirst.degrees.size());
+    }
+
+    @Test
+    public void clampsAndFadesWhenFlat() {
+        assertEquals(WaveTiltFeed.MAX_TILT_DEGREES, WaveTiltFeed.tiltOf(G, 0), 0f);
+        assertEquals(-WaveTiltFeed.MAX_TILT_DEGREES, WaveTiltFeed.tiltOf(-G, 0), 0f);
+        assertEquals(0f, WaveTiltFeed.tiltOf(0, 0), 0f);
+        assertTrue(Math.abs(WaveTiltFeed.tiltOf(0.5f, 0.5f)) < 10f);
+    }
+
+    private static final class FakeSource implements WaveTiltFeed.Source {
+        WaveTiltFeed.Sink sink;
+        int starts;
+
+        @Override
+        public void start(Context context, WaveTiltFeed.Sink sink) {
+            assertNotNull(sink);
+            this.sink = sink;
+            starts++;
+        }
+
+        @Override
+        public void stop() {
+            sink = null;
+        }
+
+        boolean running() {
+            return sink != null;
+        }
+    }
+
+    private static final class RecordingListener implements WaveTiltFeed.Listener {
+        final List<Float> degrees = new ArrayList<>();
+
+        @Override
+        public void onTiltChanged(float degrees) {
+            this.degrees.add(degrees);
+        }
+
+        float last() {
+            return degrees.get(degrees.size() - 1);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package me.itangqi.waveloadingview;
+
+import android.annotation.TargetApi;
+import android.graphics.Color;
+import android.graphics.Path;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Debug;
+import android.support.v7.app.AppCompatActivity;
+import android.view.Choreographer;
+import android.widget.CheckBox;
+import android.widget.CompoundButton;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import org.adw.library.widgets.discreteseekbar.DiscreteSeekBar;
+
+import java.util.Locale;
+
+/**
+ * A grid of WaveLoadingViews in every built-in shape, with a frame time and allocation HUD, to
+ * reproduce and compare performance scenarios. Enable "Trace sections" before a systrace or
+ * Perfetto capture to see the wave work.
+ */
+public class StressActivity extends AppCompatActivity {
+    private static final int[] COLORS = {0xFFE91E63, 0xFF2196F3, 0xFF4CAF50, 0xFFFF9800, 0xFF9C27B0};
+
+    private LinearLayout mGrid;
+    private TextView mHud;
+    private int mViewCount = 16;
+    private boolean mTitles = true;
+    private FrameHud mFrameHud;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.stress_main);
+
+        mGrid = (LinearLayout) findViewById(R.id.ll_grid);
+        mHud = (TextView) findViewById(R.id.tv_hud);
+
+        // View count
+        ((DiscreteSeekBar) findViewById(R.id.seekbar_view_count)).setOnProgressChangeListener(new DiscreteSeekBar.OnProgressChangeListener() {
+            @Override
+            public void onProgressChanged(DiscreteSeekBar seekBar, int value, boolean fromUser) {
+                mViewCount = value;
+            }
+
+            @Override
+            public void onStartTrackingTouch(DiscreteSeekBar seekBar) {
+            }
+
+            @Override
+            public void onStopTrackingTouch(DiscreteSeekBar seekBar) {
+                // Rebuild once the thumb is released, not for every step.
+                buildGrid();
+            }
+        });
+
+        // Titles
+        ((CheckBox) findViewById(R.id.cb_titles)).setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton compoundButton, boolean b) {
+                mTitles = b;
+                buildGrid();
+            }
+        });
+
+        // Trace sections
+        ((CheckBox) findViewById(R.id.cb_trace)).setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton compoundButton, boolean b) {
+                WaveTrace.setEnabled(b);
+            }
+        });
+
+        // The cell size depends on the laid out grid.
+        mGrid.post(new Runnable() {
+            @Override
+            public void run() {
+                buildGrid();
+            }
+        });
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            mFrameHud = new FrameHud(mHud);
+            mFrameHud.start();
+        } else {
+            mHud.setText("Frame times need API 16");
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        if (mFrameHud != null) {
+            mFrameHud.stop();
+            mFrameHud = null;
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        WaveTrace.setEnabled(false);
+    }
+
+    private void buildGrid() {
+        mGrid.removeAllViews();
+        int columns = (int) Math.ceil(Math.sqrt(mViewCount));
+        int rows = (int) Math.ceil((double) mViewCount / columns);
+        int cellSize = Math.min(mGrid.getWidth() / columns, mGrid.getHeight() / rows);
+        if (cellSize <= 0) {
+            return;
+        }
+        WaveLoadingView.ShapeType[] shapes = WaveLoadingView.ShapeType.values();
+        LinearLayout row = null;
+        for (int i = 0; i < mViewCount; i++) {
+            if (i % columns == 0) {
+                row = new LinearLayout(this);
+                row.setOrientation(LinearLayout.HORIZONTAL);
+                mGrid.addView(row, new LinearLayout.LayoutParams(LinearLayout.LayoutParams.MATCH_PARENT, cellSize));
+            }
+            WaveLoadingView view = new WaveLoadingView(this);
+            WaveLoadingView.ShapeType shape = shapes[i % shapes.length];
+            if (shape == WaveLoadingView.ShapeType.CUSTOM) {
+                view.setShapePath(droplet());
+            } else {
+                view.setShapeType(shape);
+            }
+            view.setWaveColor(COLORS[i % COLORS.length]);
+            view.setBorderWidth(2);
+            view.setBorderColor(COLORS[i % COLORS.length]);
+            view.setProgressValue(20 + (i * 37) % 70);
+            if (mTitles) {
+                view.setTopTitle("Top");
+                view.setCenterTitlePercent(WaveLoadingView.PercentTitle.INTEGER);
+                view.setBottomTitle("Bottom");
+                view.setTopTitleStrokeWidth(2);
+                view.setTopTitleStrokeColor(Color.WHITE);
+            }
+            row.addView(view, new LinearLayout.LayoutParams(cellSize, cellSize));
+        }
+    }
+
+    private static Path droplet() {
+        Path path = new Path();
+        path.moveTo(50, 0);
+        path.cubicTo(50, 30, 90, 50, 90, 70);
+        path.cubicTo(90, 92, 70, 100, 50, 100);
+        path.cubicTo(30, 100, 10, 92, 10, 70);
+        path.cubicTo(10, 50, 50, 30, 50, 0);
+        path.close();
+        return path;
+    }
+
+    /**
+     * Shows frame intervals, janky frames and the allocation rate of the last second.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static final class FrameHud implements Choreographer.FrameCallback {
+        // A frame taking longer than this missed at least one vsync at 60Hz.
+        private static final long JANK_NANOS = 17000000L;
+        private static final long REPORT_NANOS = 1000000000L;
+
+        private final TextView mHud;
+        private boolean mRunning;
+        private long mLastFrameNanos;
+        private long mReportStartNanos;
+        private int mFrames;
+        private int mJankyFrames;
+        private long mMaxFrameNanos;
+        private long mReportStartAllocated = -1;
+        private long mReportStartGcCount = -1;
+
+        FrameHud(TextView hud) {
+            mHud = hud;
+        }
+
+        void start() {
+            mRunning = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        void stop() {
+            mRunning = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (!mRunning) {
+                return;
+            }
+            if (mLastFrameNanos == 0) {
+                mReportStartNanos = frameTimeNanos;
+                mReportStartAllocated = allocatedBytes();
+                mReportStartGcCount = gcCount();
+            } else {
+                long frameNanos = frameTimeNanos - mLastFrameNanos;
+                mFrames++;
+                if (frameNanos > JANK_NANOS) {
+                    mJankyFrames++;
+                }
+                mMaxFrameNanos = Math.max(mMaxFrameNanos, frameNanos);
+            }
+            mLastFrameNanos = frameTimeNanos;
+
+            long elapsed = frameTimeNanos - mReportStartNanos;
+            if (elapsed >= REPORT_NANOS && mFrames > 0) {
+                long allocated = allocatedBytes();
+                long gcCount = gcCount();
+                String allocation;
+                if (allocated >= 0 && mReportStartAllocated >= 0) {
+                    allocation = String.format(Locale.US, "alloc %d KB/s  gc %d",
+                            (allocated - mReportStartAllocated) * REPORT_NANOS / elapsed / 1024,
+                            gcCount - mReportStartGcCount);
+                } else {
+                    Runtime runtime = Runtime.getRuntime();
+                    allocation = String.format(Locale.US, "heap %d KB",
+                            (runtime.totalMemory() - runtime.freeMemory()) / 1024);
+                }
+                mHud.setText(String.format(Locale.US, "%.1f fps  avg %.1f ms  max %.1f ms  janky %d\n%s",
+                        mFrames * 1e9 / elapsed, elapsed / 1e6 / mFrames, mMaxFrameNanos / 1e6,
+                        mJankyFrames, allocation));
+                mReportStartNanos = frameTimeNanos;
+                mReportStartAllocated = allocated;
+                mReportStartGcCount = gcCount;
+                mFrames = 0;
+                mJankyFrames = 0;
+                mMaxFrameNanos = 0;
+            }
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        /**
+         * @return Bytes allocated by the process so far, -1 before API 23.
+         */
+        private static long allocatedBytes() {
+            return runtimeStat("art.gc.bytes-allocated");
+        }
+
+        private static long gcCount() {
+            return runtimeStat("art.gc.gc-count");
+        }
+
+        private static long runtimeStat(String name) {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+                return -1;
+            }
+            String value = Debug.getRuntimeStat(name);
+            try {
+                return value == null ? -1 : Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+    }
+}